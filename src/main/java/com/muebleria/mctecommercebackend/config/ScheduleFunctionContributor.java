@@ -0,0 +1,32 @@
+package com.muebleria.mctecommercebackend.config;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registra en Hibernate la función {@code schedule_covers(bitmap, mask)}, que vale 1 si el mapa de bits
+ * del horario ({@code users.schedule_bitmap}) tiene marcados todos los minutos de la máscara.
+ * <p>
+ * Se evalúa como {@code (bitmap | mask) = bitmap}, de modo que la máscara aparece una sola vez en la
+ * sentencia. MySQL aplica {@code |} byte a byte cuando ambos operandos son cadenas binarias de la misma
+ * longitud; H2 no tiene ese operador y usa {@code BITOR}, que admite cadenas binarias. Así el filtro se
+ * resuelve en la base de datos sin cargar las reglas. Se registra mediante
+ * {@code META-INF/services/org.hibernate.boot.model.FunctionContributor}.
+ */
+public class ScheduleFunctionContributor implements FunctionContributor {
+
+    public static final String SCHEDULE_COVERS = "schedule_covers";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        String covered = functionContributions.getDialect() instanceof H2Dialect
+                ? "bitor(?1, ?2) = ?1"
+                : "(?1 | ?2) = ?1";
+        functionContributions.getFunctionRegistry().registerPattern(
+                SCHEDULE_COVERS,
+                "(case when " + covered + " then 1 else 0 end)",
+                functionContributions.getTypeConfiguration().getBasicTypeRegistry().resolve(StandardBasicTypes.INTEGER));
+    }
+}
@@ -0,0 +1,141 @@
+package com.muebleria.mctecommercebackend.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.muebleria.mctecommercebackend.model.Branch;
+import com.muebleria.mctecommercebackend.model.DriverDetail;
+import com.muebleria.mctecommercebackend.model.UserProfile;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caché de segundo nivel de Hibernate para sucursales, perfiles y datos de chófer.
+ * <p>
+ * El proveedor es JCache sobre Caffeine, en el propio proceso. Cada región se crea aquí con su
+ * tamaño máximo y caducidad ({@code muebleria.app.*CacheMaxSize} y {@code *CacheTtlMs}) y Hibernate
+ * recibe el {@code CacheManager} ya configurado; una región que no esté en esta lista hace fallar el
+ * arranque en lugar de crearse sin límites. Con {@code muebleria.app.secondLevelCacheEnabled=false}
+ * no hay caché ni estadísticas, para poder medir la diferencia bajo carga en cada entorno.
+ * <p>
+ * Las escrituras por entidad actualizan la región. Los UPDATE masivos en JPQL vacían la región de la
+ * entidad afectada al confirmarse, y las consultas nativas declaran sus tablas para no invalidar más
+ * de la cuenta. {@code BranchRepository.advanceOrderSequence}, que se ejecuta en cada reserva de
+ * números de pedido, no invalida ninguna región y desaloja solo la sucursal afectada.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    @Value("${muebleria.app.secondLevelCacheEnabled:true}")
+    private boolean enabled;
+
+    @Value("${muebleria.app.branchCacheMaxSize:1000}")
+    private long branchMaxSize;
+
+    @Value("${muebleria.app.branchCacheTtlMs:3600000}")
+    private long branchTtlMs;
+
+    @Value("${muebleria.app.userProfileCacheMaxSize:10000}")
+    private long userProfileMaxSize;
+
+    @Value("${muebleria.app.userProfileCacheTtlMs:600000}")
+    private long userProfileTtlMs;
+
+    @Value("${muebleria.app.driverDetailCacheMaxSize:2000}")
+    private long driverDetailMaxSize;
+
+    @Value("${muebleria.app.driverDetailCacheTtlMs:600000}")
+    private long driverDetailTtlMs;
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheProperties() {
+        return properties -> {
+            if (!enabled) {
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                return;
+            }
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            // Hibernate cierra este CacheManager al cerrar la SessionFactory.
+            properties.put(ConfigSettings.CACHE_MANAGER, createCacheManager());
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+        };
+    }
+
+    /**
+     * Aciertos, fallos y tasa de aciertos de cada región, visibles en /actuator/metrics.
+     */
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> {
+            if (!enabled) {
+                return;
+            }
+            Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            for (String region : regions().keySet()) {
+                CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+                FunctionCounter.builder("hibernate.cache.region.requests", regionStatistics, CacheRegionStatistics::getHitCount)
+                        .tag("region", region).tag("result", "hit").register(registry);
+                FunctionCounter.builder("hibernate.cache.region.requests", regionStatistics, CacheRegionStatistics::getMissCount)
+                        .tag("region", region).tag("result", "miss").register(registry);
+                Gauge.builder("hibernate.cache.region.hit.ratio", regionStatistics, SecondLevelCacheConfig::hitRatio)
+                        .tag("region", region).register(registry);
+            }
+        };
+    }
+
+    private Map<String, CaffeineConfiguration<Object, Object>> regions() {
+        Map<String, CaffeineConfiguration<Object, Object>> regions = new LinkedHashMap<>();
+        regions.put(Branch.CACHE_REGION, region(branchMaxSize, branchTtlMs));
+        regions.put(UserProfile.CACHE_REGION, region(userProfileMaxSize, userProfileTtlMs));
+        regions.put(DriverDetail.CACHE_REGION, region(driverDetailMaxSize, driverDetailTtlMs));
+        return regions;
+    }
+
+    private CacheManager createCacheManager() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        regions().forEach((name, configuration) -> {
+            // Tras un reinicio en caliente (devtools) la región anterior puede seguir registrada.
+            if (cacheManager.getCache(name) != null) {
+                cacheManager.destroyCache(name);
+            }
+            cacheManager.createCache(name, configuration);
+        });
+        return cacheManager;
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, long ttlMs) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+        // Hibernate ya guarda copias desensambladas: no hace falta que JCache las vuelva a copiar.
+        configuration.setStoreByValue(false);
+        return configuration;
+    }
+
+    private static double hitRatio(CacheRegionStatistics statistics) {
+        long hits = statistics.getHitCount();
+        long requests = hits + statistics.getMissCount();
+        return (requests == 0) ? 0 : (double) hits / requests;
+    }
+}
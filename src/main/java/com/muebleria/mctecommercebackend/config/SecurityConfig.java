@@ -4,8 +4,12 @@ import com.muebleria.mctecommercebackend.security.jwt.AuthEntryPointJwt;
 import com.muebleria.mctecommercebackend.security.jwt.AuthTokenFilter;
 import com.muebleria.mctecommercebackend.security.jwt.JwtAccessDeniedHandler;
 import com.muebleria.mctecommercebackend.security.jwt.TimeAccessFilter;
+import com.muebleria.mctecommercebackend.security.password.BoundedPasswordEncoder;
+import com.muebleria.mctecommercebackend.security.password.CalibratedBCryptPasswordEncoder;
 import com.muebleria.mctecommercebackend.security.user.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -16,7 +20,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity; // Asegura que esta anotación esté presente
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy; // Para sesiones sin estado
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter; // Para añadir nuestro filtro JWT
@@ -24,6 +28,8 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
+import java.util.Map;
+
 @Configuration // Indica que esta clase es una clase de configuración
 @EnableWebSecurity // Habilita la configuración de seguridad web de Spring Security
 @EnableMethodSecurity // Habilita la seguridad a nivel de método (ej. @PreAuthorize)
@@ -44,11 +50,40 @@ public class SecurityConfig {
     @Autowired
     private AuthTokenFilter authTokenFilter;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Hilos dedicados a BCrypt; 0 usa uno por núcleo.
+    @Value("${muebleria.app.passwordHashThreads:0}")
+    private int passwordHashThreads;
+
+    // Peticiones de hash que pueden esperar en cola antes de responder 503.
+    @Value("${muebleria.app.passwordHashQueueCapacity:64}")
+    private int passwordHashQueueCapacity;
+
+    @Value("${muebleria.app.passwordHashRetryAfterSeconds:2}")
+    private long passwordHashRetryAfterSeconds;
+
+    // Tiempo objetivo de un hash BCrypt; el coste se calibra al arrancar dentro de [min, max].
+    @Value("${muebleria.app.passwordHashTargetMs:80}")
+    private long passwordHashTargetMs;
+
+    @Value("${muebleria.app.passwordHashMinCost:10}")
+    private int passwordHashMinCost;
+
+    @Value("${muebleria.app.passwordHashMaxCost:14}")
+    private int passwordHashMaxCost;
+
+    // Coste fijo (0 = calibrar); útil para que todos los nodos usen el mismo valor.
+    @Value("${muebleria.app.passwordHashCost:0}")
+    private int passwordHashCost;
+
     @Bean // Configura el proveedor de autenticación
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService); // Usa nuestro UserDetailsService
         authProvider.setPasswordEncoder(passwordEncoder()); // Usa nuestro PasswordEncoder
+        authProvider.setUserDetailsPasswordService(userDetailsService); // Rehash al iniciar sesión si cambió el coste
         return authProvider;
     }
 
@@ -59,7 +94,20 @@ public class SecurityConfig {
 
     @Bean // Define el codificador de contraseñas
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        // BCrypt se ejecuta en su propio pool acotado para no bloquear los hilos de Tomcat en una oleada de logins
+        int threads = passwordHashThreads > 0 ? passwordHashThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegatingPasswordEncoder(), threads, passwordHashQueueCapacity,
+                passwordHashRetryAfterSeconds, meterRegistry);
+    }
+
+    // Los hashes nuevos se guardan como "{bcrypt}$2a$<coste>$..."; los antiguos sin prefijo se siguen aceptando
+    // y se rehashean con el coste calibrado en el siguiente login correcto.
+    private PasswordEncoder delegatingPasswordEncoder() {
+        CalibratedBCryptPasswordEncoder bcrypt = CalibratedBCryptPasswordEncoder.create(
+                passwordHashCost, passwordHashTargetMs, passwordHashMinCost, passwordHashMaxCost);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
 
     @Bean // Configura la cadena de filtros de seguridad HTTP
@@ -78,6 +126,10 @@ public class SecurityConfig {
                         // Permitir el endpoint de autenticación (login)
                         .requestMatchers("/api/auth/**").permitAll()
 
+                        // Actuator: la salud es pública, las métricas solo para desarrolladores
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("DEVELOPER")
+
                         // Todas las demás solicitudes requieren autenticación
                         .anyRequest().authenticated()
                 );
@@ -2,13 +2,18 @@ package com.muebleria.mctecommercebackend.controller;
 
 import com.muebleria.mctecommercebackend.dto.JwtResponse;
 import com.muebleria.mctecommercebackend.dto.LoginRequest;
+import com.muebleria.mctecommercebackend.dto.RefreshTokenRequest;
+import com.muebleria.mctecommercebackend.exception.PasswordHashingBusyException;
 import com.muebleria.mctecommercebackend.security.jwt.JwtUtils;
+import com.muebleria.mctecommercebackend.security.revocation.TokenRevocationRegistry;
 import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.service.RefreshTokenService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -31,6 +36,12 @@ public class AuthController {
     @Autowired
     JwtUtils jwtUtils;
 
+    @Autowired
+    RefreshTokenService refreshTokenService;
+
+    @Autowired
+    TokenRevocationRegistry revocationRegistry;
+
     @PostMapping("/login")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
 
@@ -52,7 +63,8 @@ public class AuthController {
                     userDetails.getUsername(),
                     roles.isEmpty() ? null : roles.get(0),
                     userDetails.getFirstName(),
-                    userDetails.getLastName()
+                    userDetails.getLastName(),
+                    refreshTokenService.createRefreshToken(userDetails.getId())
             ));
 
         } catch (LockedException e) {
@@ -62,6 +74,47 @@ public class AuthController {
             errorResponse.put("error", "Acceso Denegado");
             errorResponse.put("message", e.getMessage()); // Usamos el mensaje de la excepción.
             return new ResponseEntity<>(errorResponse, HttpStatus.FORBIDDEN);
+        } catch (InternalAuthenticationServiceException e) {
+            // Si el pool de BCrypt está lleno mientras se carga el usuario, Spring envuelve la excepción;
+            // la desenvolvemos para que GlobalExceptionHandler responda 503 con Retry-After.
+            if (e.getCause() instanceof PasswordHashingBusyException busy) {
+                throw busy;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Canjea un token de refresco por un nuevo JWT sin volver a verificar la contraseña.
+     * El token de refresco se rota en cada uso: la respuesta trae uno nuevo y el anterior deja de servir.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(@Valid @RequestBody RefreshTokenRequest refreshRequest) {
+        try {
+            return ResponseEntity.ok(refreshTokenService.refresh(refreshRequest.getRefreshToken()));
+        } catch (LockedException e) {
+            // Fuera de horario: mismo error que en el login.
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Acceso Denegado");
+            errorResponse.put("message", e.getMessage());
+            return new ResponseEntity<>(errorResponse, HttpStatus.FORBIDDEN);
+        }
+    }
+
+    /**
+     * Cierra la sesión actual: revoca el JWT de la cabecera Authorization hasta su expiración
+     * y, si se envía, la familia del token de refresco.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                       @RequestBody(required = false) RefreshTokenRequest refreshRequest) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            jwtUtils.verifyJwtToken(authorization.substring(7)).ifPresent(jwt ->
+                    revocationRegistry.revoke(jwt.getTokenId(), jwt.getUserId(), jwt.getExpiration()));
+        }
+        if (refreshRequest != null && refreshRequest.getRefreshToken() != null && !refreshRequest.getRefreshToken().isBlank()) {
+            refreshTokenService.revoke(refreshRequest.getRefreshToken());
         }
+        return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+}
@@ -1,10 +1,14 @@
 package com.muebleria.mctecommercebackend.controller;
 
 import com.muebleria.mctecommercebackend.dto.BranchDTO;
+import com.muebleria.mctecommercebackend.dto.BranchDirectoryDTO;
 import com.muebleria.mctecommercebackend.dto.BranchListDTO;
-import com.muebleria.mctecommercebackend.dto.BranchSummaryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchRosterEntryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchSummarySnapshot;
 import com.muebleria.mctecommercebackend.dto.BranchUpdateDTO;
+import com.muebleria.mctecommercebackend.dto.CursorPageDTO;
 import com.muebleria.mctecommercebackend.exception.ResourceNotFoundException;
+import com.muebleria.mctecommercebackend.model.Role;
 import com.muebleria.mctecommercebackend.model.UserStatus;
 import com.muebleria.mctecommercebackend.service.BranchService;
 import jakarta.validation.Valid;
@@ -12,17 +16,24 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/branches")
 public class BranchController {
 
+    static final String APPROXIMATE_TOTAL_HEADER = "X-Total-Count-Approximate";
+
     private final BranchService branchService;
 
     @Autowired
@@ -50,16 +61,68 @@ public class BranchController {
     public ResponseEntity<Page<BranchListDTO>> getAllBranches(
             @PageableDefault(size = 20, sort = "name") Pageable pageable,
             @RequestParam(defaultValue = "ACTIVE") UserStatus status,
+            @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "false") boolean approximate) {
+        Page<BranchListDTO> branches = branchService.findAll(pageable, status, search, approximate);
+        if (approximate) {
+            return ResponseEntity.ok().header(APPROXIMATE_TOTAL_HEADER, "true").body(branches);
+        }
+        return ResponseEntity.ok(branches);
+    }
+
+    /**
+     * Modo cursor del listado: se activa con el parámetro {@code cursor} (vacío para la primera página).
+     * Ordena por nombre y no calcula el total, así que el coste no crece con la profundidad.
+     */
+    @GetMapping(params = "cursor")
+    @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN', 'GESTOR_SUCURSAL')")
+    public ResponseEntity<CursorPageDTO<BranchListDTO>> getBranchesByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "ACTIVE") UserStatus status,
             @RequestParam(required = false) String search) {
-        Page<BranchListDTO> branches = branchService.findAll(pageable, status, search);
+        CursorPageDTO<BranchListDTO> branches = branchService.findAllByCursor(cursor, size, status, search);
         return ResponseEntity.ok(branches);
     }
 
+    /**
+     * Directorio con búsqueda por palabras y recuentos por estado y ciudad; se sirve desde memoria.
+     */
+    @GetMapping("/directory")
+    @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN', 'GESTOR_SUCURSAL')")
+    public ResponseEntity<BranchDirectoryDTO> getBranchDirectory(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String state,
+            @RequestParam(required = false) String city,
+            @RequestParam(defaultValue = "ACTIVE") UserStatus status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(branchService.searchDirectory(q, state, city, status, page, size));
+    }
+
+    /**
+     * Lista resumida para los desplegables. Se envía el JSON ya serializado con el ETag de su versión;
+     * Spring compara {@code If-None-Match} con ese ETag y responde 304 sin cuerpo si coinciden.
+     */
     @GetMapping("/summary")
     @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN', 'GESTOR_SUCURSAL')")
-    public ResponseEntity<List<BranchSummaryDTO>> getAllBranchSummaries() {
-        List<BranchSummaryDTO> branches = branchService.findAllSummaries();
-        return ResponseEntity.ok(branches);
+    public ResponseEntity<byte[]> getAllBranchSummaries() {
+        BranchSummarySnapshot snapshot = branchService.getSummarySnapshot();
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getJson());
+    }
+
+    @GetMapping("/{id}/roster")
+    @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN', 'GESTOR_SUCURSAL')")
+    public ResponseEntity<List<BranchRosterEntryDTO>> getAllowedRoster(
+            @PathVariable Long id,
+            @RequestParam(required = false) Set<Role> roles,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        List<BranchRosterEntryDTO> roster = branchService.findAllowedRoster(id, roles, at);
+        return ResponseEntity.ok(roster);
     }
 
     @PutMapping("/{id}")
@@ -12,12 +12,16 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -38,7 +42,11 @@ public class UserController {
             @RequestParam(defaultValue = "ACTIVE") UserStatus status,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) String role,
-            @RequestParam(required = false) Long branchId
+            @RequestParam(required = false) Long branchId,
+            @RequestParam(required = false) DayOfWeek availableDay,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime availableFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime availableTo,
+            @RequestParam(defaultValue = "false") boolean approximate
     ) {
 
         Pageable finalPageable = pageable;
@@ -48,10 +56,47 @@ public class UserController {
         }
 
         // Pasamos los nuevos parámetros al servicio
-        Page<UserSummaryDTO> usersPage = userService.findAll(finalPageable, status, search, role, branchId);
+        Page<UserSummaryDTO> usersPage = userService.findAll(finalPageable, status, search, role, branchId,
+                availableDay, availableFrom, availableTo, approximate);
+        if (approximate) {
+            return ResponseEntity.ok().header(BranchController.APPROXIMATE_TOTAL_HEADER, "true").body(usersPage);
+        }
         return ResponseEntity.ok(usersPage);
     }
 
+    /**
+     * Modo cursor del listado: se activa con el parámetro {@code cursor} (vacío para la primera página).
+     * Ordena por nombre de usuario y no calcula el total, así que el coste no crece con la profundidad.
+     */
+    @GetMapping(params = "cursor")
+    @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN')")
+    public ResponseEntity<CursorPageDTO<UserSummaryDTO>> getUsersByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "ACTIVE") UserStatus status,
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String role,
+            @RequestParam(required = false) Long branchId,
+            @RequestParam(required = false) DayOfWeek availableDay,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime availableFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime availableTo
+    ) {
+        CursorPageDTO<UserSummaryDTO> users = userService.findAllByCursor(cursor, size, status, search, role, branchId,
+                availableDay, availableFrom, availableTo);
+        return ResponseEntity.ok(users);
+    }
+
+    /**
+     * Autocompletado por nombre de usuario, nombre, apellidos o correo, resuelto en memoria.
+     */
+    @GetMapping("/suggest")
+    @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN')")
+    public ResponseEntity<List<UserSuggestionDTO>> suggestUsers(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(userService.suggest(query, limit));
+    }
+
     @PostMapping
     @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN')")
     public ResponseEntity<UserDTO> createUser(@Valid @RequestBody UserDTO userDTO) {
@@ -95,6 +140,13 @@ public class UserController {
         return ResponseEntity.ok(restoredUser);
     }
 
+    @PostMapping("/{id}/revoke-sessions")
+    @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN')")
+    public ResponseEntity<Void> revokeAllSessions(@PathVariable Long id) {
+        userService.revokeAllSessions(id);
+        return ResponseEntity.noContent().build();
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('DEVELOPER', 'ADMIN')")
     public ResponseEntity<UserDTO> updateUser(@PathVariable Long id, @Valid @RequestBody UserUpdateDTO userUpdateDTO) {
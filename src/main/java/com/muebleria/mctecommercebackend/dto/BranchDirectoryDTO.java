@@ -0,0 +1,24 @@
+package com.muebleria.mctecommercebackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Página del directorio de sucursales junto con los recuentos por estado y por ciudad
+ * de los resultados, para construir los filtros sin llamadas adicionales.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BranchDirectoryDTO {
+    private List<BranchListDTO> content;
+    private int page;
+    private int size;
+    private long totalElements;
+    private Map<String, Long> stateFacets;
+    private Map<String, Long> cityFacets;
+}
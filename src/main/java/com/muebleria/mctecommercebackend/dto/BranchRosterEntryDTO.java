@@ -0,0 +1,16 @@
+package com.muebleria.mctecommercebackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BranchRosterEntryDTO {
+    private Long id;
+    private String fullName;
+    private String username;
+    private String role;
+    private boolean bypassAccessRules;
+}
@@ -0,0 +1,19 @@
+package com.muebleria.mctecommercebackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Versión inmutable de la lista resumida de sucursales activas, con su JSON ya serializado
+ * y el ETag con el que se sirve.
+ */
+@Getter
+@AllArgsConstructor
+public class BranchSummarySnapshot {
+    private final long version;
+    private final String etag;
+    private final List<BranchSummaryDTO> summaries;
+    private final byte[] json;
+}
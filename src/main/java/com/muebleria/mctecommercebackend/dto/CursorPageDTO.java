@@ -0,0 +1,21 @@
+package com.muebleria.mctecommercebackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de un listado en modo cursor. Para pedir la siguiente se envía {@code nextCursor}
+ * como parámetro {@code cursor}; es {@code null} cuando no hay más resultados.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+    private boolean hasNext;
+}
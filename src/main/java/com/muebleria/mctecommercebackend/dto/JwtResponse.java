@@ -15,4 +15,5 @@ public class JwtResponse {
     private String role;
     private String firstName;
     private String lastName;
+    private String refreshToken; // Token opaco para obtener un nuevo JWT en /api/auth/refresh
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.muebleria.mctecommercebackend.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshTokenRequest {
+
+    @NotBlank(message = "El token de refresco no puede estar vacío.")
+    private String refreshToken;
+}
@@ -0,0 +1,16 @@
+package com.muebleria.mctecommercebackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSuggestionDTO {
+    private Long id;
+    private String username;
+    private String fullName;
+    private String role;
+    private boolean active;
+}
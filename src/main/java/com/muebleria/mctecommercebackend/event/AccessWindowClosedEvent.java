@@ -0,0 +1,20 @@
+package com.muebleria.mctecommercebackend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Evento publicado cuando se cierra la ventana de acceso de un usuario con horario
+ * (por ejemplo, al terminar el turno). Se publica desde el hilo del planificador de ventanas,
+ * por lo que los listeners deben ser rápidos o asíncronos.
+ */
+@Getter
+@AllArgsConstructor
+public class AccessWindowClosedEvent {
+
+    private final Long userId;
+    private final String username;
+    private final Instant closedAt;
+}
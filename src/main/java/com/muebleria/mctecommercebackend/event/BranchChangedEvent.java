@@ -0,0 +1,16 @@
+package com.muebleria.mctecommercebackend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado por {@code BranchServiceImpl} cada vez que se crea, modifica, elimina o restaura
+ * una sucursal. Los componentes que guardan datos de sucursales en memoria lo escuchan
+ * después del commit para invalidar su copia.
+ */
+@Getter
+@AllArgsConstructor
+public class BranchChangedEvent {
+
+    private final Long branchId;
+}
@@ -0,0 +1,17 @@
+package com.muebleria.mctecommercebackend.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Evento publicado por los servicios cada vez que se modifica un usuario
+ * (cuenta, perfil, detalles de chófer o reglas de acceso).
+ * Los componentes que mantienen datos del usuario en memoria lo escuchan
+ * después del commit para invalidar su copia.
+ */
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+
+    private final Long userId;
+}
@@ -1,7 +1,9 @@
 package com.muebleria.mctecommercebackend.exception;
 
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -56,6 +58,40 @@ public class GlobalExceptionHandler {
         return error;
     }
 
+    /**
+     * Maneja los tokens de refresco inválidos, expirados, revocados o reutilizados.
+     * Corresponde a un 401 Unauthorized: el cliente debe volver a iniciar sesión.
+     *
+     * @param ex La excepción {@link InvalidRefreshTokenException}.
+     * @return Un mapa que contiene el mensaje de error.
+     */
+    @ResponseStatus(HttpStatus.UNAUTHORIZED)
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public Map<String, String> handleInvalidRefreshTokenException(InvalidRefreshTokenException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "No autorizado");
+        error.put("message", ex.getMessage());
+        return error;
+    }
+
+    /**
+     * Maneja la saturación del pool de verificación de contraseñas.
+     * Corresponde a un 503 Service Unavailable con la cabecera Retry-After,
+     * para que el cliente reintente en lugar de esperar con la conexión abierta.
+     *
+     * @param ex La excepción {@link PasswordHashingBusyException}.
+     * @return Una respuesta de error con estado 503.
+     */
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingBusyException(PasswordHashingBusyException ex) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Servicio no disponible");
+        error.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
     /**
      * Maneja las excepciones de Entidad No Encontrada lanzadas por JPA/Hibernate.
      * Esto ocurre comúnmente al intentar acceder a una relación 'lazy' de una entidad
@@ -0,0 +1,19 @@
+package com.muebleria.mctecommercebackend.exception;
+
+/**
+ * Se lanza cuando la cola de verificación de contraseñas está llena.
+ * Se responde con 503 Service Unavailable y la cabecera Retry-After.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingBusyException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
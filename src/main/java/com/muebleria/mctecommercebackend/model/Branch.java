@@ -3,6 +3,8 @@ package com.muebleria.mctecommercebackend.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -12,8 +14,12 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @Table(name = "branches")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Branch.CACHE_REGION)
 public class Branch {
 
+    // Región de la caché de segundo nivel; las sucursales cambian pocas veces al mes.
+    public static final String CACHE_REGION = "branch";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "branch_id")
@@ -49,7 +55,9 @@ public class Branch {
     @Column(name = "order_prefix", nullable = false, unique = true, length = 10)
     private String orderPrefix;
 
-    @Column(name = "last_order_sequence_number", nullable = false)
+    // Marca de agua de los números de pedido. Solo la avanza OrderNumberAllocator con un UPDATE atómico;
+    // si el save() de la entidad la escribiera, podría bajarla y repetir números ya entregados.
+    @Column(name = "last_order_sequence_number", nullable = false, updatable = false)
     private int lastOrderSequenceNumber = 0;
 
     @Column(name = "is_deleted", nullable = false)
@@ -3,6 +3,8 @@ package com.muebleria.mctecommercebackend.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDate;
@@ -12,8 +14,12 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @Table(name = "driver_details")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = DriverDetail.CACHE_REGION)
 public class DriverDetail {
 
+    // Región de la caché de segundo nivel para los datos de chófer.
+    public static final String CACHE_REGION = "driverDetail";
+
     @Id
     @Column(name = "user_id")
     private Long id;
@@ -0,0 +1,31 @@
+package com.muebleria.mctecommercebackend.model;
+
+/**
+ * Nombres de los planes de carga ({@code @NamedEntityGraph}) declarados en las entidades.
+ * <p>
+ * Cada caso de uso de lectura carga sus relaciones con uno de estos planes y nada más: con
+ * {@code spring.jpa.open-in-view=false} la sesión se cierra al salir del servicio, así que una
+ * relación que no esté en el plan no se inicializa sola en el controlador. Lo que quede fuera
+ * del plan dentro de una transacción se agrupa con {@code hibernate.default_batch_fetch_size}.
+ * <ul>
+ *   <li>Detalle y perfil de usuario, y la respuesta tras modificarlo: {@link #USER_DETAIL}.</li>
+ *   <li>Login, caché de principales, refresco de sesión e índice de búsqueda: {@link #USER_PRINCIPAL}.</li>
+ *   <li>Personal por sucursal ({@code BranchRosterIndex}): {@link #USER_DETAIL}.</li>
+ *   <li>Listados: proyecciones a DTO ({@code ProjectionQueries}), sin entidades que cargar.</li>
+ *   <li>Detalle de sucursal: solo columnas propias; los usuarios de auditoría se leen por ID.</li>
+ * </ul>
+ * Todos los planes de {@link User} incluyen el perfil y los datos de chófer: son relaciones uno
+ * a uno inversas que Hibernate no puede dejar como proxy y, si no van en el JOIN, las consulta
+ * una a una al cargar cada usuario.
+ */
+public final class FetchPlans {
+
+    /** Usuario con sucursal, perfil, datos de chófer y reglas de acceso. */
+    public static final String USER_DETAIL = "User.detail";
+
+    /** Usuario con sucursal, perfil y datos de chófer, sin reglas de acceso. */
+    public static final String USER_PRINCIPAL = "User.principal";
+
+    private FetchPlans() {
+    }
+}
@@ -0,0 +1,52 @@
+package com.muebleria.mctecommercebackend.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Token de refresco opaco. Solo se guarda el SHA-256 del valor entregado al cliente.
+ * <p>
+ * Cada uso lo revoca y emite uno nuevo de la misma familia; si se presenta un token ya revocado,
+ * se da por robado y se revoca toda la familia.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "refresh_tokens")
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "refresh_token_id")
+    private Long id;
+
+    // SHA-256 en hexadecimal del token; tiene índice único para buscarlo en una sola consulta.
+    @Column(name = "token_hash", nullable = false, unique = true, length = 64)
+    private String tokenHash;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    // Todos los tokens que nacen de un mismo login comparten la familia.
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    // Momento del login que originó la familia; se usa para invalidarla tras un cambio de contraseña.
+    @Column(name = "auth_time", nullable = false)
+    private LocalDateTime authTime;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at")
+    private LocalDateTime revokedAt;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -14,6 +14,17 @@ import java.util.Set;
 @Setter
 @Entity
 @Table(name = "users")
+@NamedEntityGraph(name = FetchPlans.USER_DETAIL, attributeNodes = {
+        @NamedAttributeNode("managedBranch"),
+        @NamedAttributeNode("profile"),
+        @NamedAttributeNode("driverDetail"),
+        @NamedAttributeNode("accessRules")
+})
+@NamedEntityGraph(name = FetchPlans.USER_PRINCIPAL, attributeNodes = {
+        @NamedAttributeNode("managedBranch"),
+        @NamedAttributeNode("profile"),
+        @NamedAttributeNode("driverDetail")
+})
 public class User {
 
     // --- Campos existentes (sin cambios) ---
@@ -31,6 +42,24 @@ public class User {
     @Column(name = "password_changed_at")
     private LocalDateTime passwordChangedAt;
 
+    // Solo se modifica con UserRepository.incrementSecurityVersion para que el incremento sea atómico.
+    @Column(name = "security_version", nullable = false, updatable = false)
+    private long securityVersion = 0;
+
+    // Copia compacta del horario (ver CompactSchedule). Solo se modifica con
+    // UserRepository.updateCompactSchedule, en la misma transacción que cambia las reglas.
+    @Column(name = "schedule_timezone", length = 60, updatable = false)
+    private String scheduleTimezone;
+
+    @Column(name = "schedule_bitmap", columnDefinition = "BINARY(1260)", updatable = false)
+    private byte[] scheduleBitmap;
+
+    @Column(name = "access_rules_assigned", nullable = false, updatable = false)
+    private boolean accessRulesAssigned = false;
+
+    @Column(name = "schedule_compact", nullable = false, updatable = false)
+    private boolean scheduleCompact = false;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "role", nullable = false, length = 50)
     private Role role;
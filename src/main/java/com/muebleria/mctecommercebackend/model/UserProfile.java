@@ -3,6 +3,8 @@ package com.muebleria.mctecommercebackend.model;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDate;
@@ -12,8 +14,12 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @Table(name = "user_profiles")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = UserProfile.CACHE_REGION)
 public class UserProfile {
 
+    // Región de la caché de segundo nivel (ver SecondLevelCacheConfig).
+    public static final String CACHE_REGION = "userProfile";
+
     @Id
     @Column(name = "user_id")
     private Long id;
@@ -0,0 +1,8 @@
+package com.muebleria.mctecommercebackend.repository;
+
+/**
+ * Nombre de usuario y nombre del perfil de un usuario, para mostrar quién creó, modificó o eliminó un registro.
+ * {@code firstName} y {@code lastName} son nulos si el usuario no tiene perfil.
+ */
+public record AuditNameView(Long id, String username, String firstName, String lastName) {
+}
@@ -0,0 +1,38 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import com.muebleria.mctecommercebackend.dto.BranchListDTO;
+import com.muebleria.mctecommercebackend.model.Branch;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Fragmento de {@link BranchRepository} para el listado de sucursales.
+ */
+public interface BranchListRepository {
+
+    /**
+     * Página de {@link BranchListDTO} filtrada con la especificación, seleccionando solo sus columnas.
+     */
+    Page<BranchListDTO> findListItems(Specification<Branch> spec, Pageable pageable);
+
+    /**
+     * Igual que {@link #findListItems(Specification, Pageable)}, pero el total lo proporciona el llamador
+     * (por ejemplo, desde una caché) y solo se pide si la página no permite deducirlo.
+     */
+    Page<BranchListDTO> findListItems(Specification<Branch> spec, Pageable pageable, LongSupplier total);
+
+    /**
+     * Cuenta las coincidencias hasta {@code cap}; por encima devuelve {@code cap + 1}.
+     */
+    long countUpTo(Specification<Branch> spec, int cap);
+
+    /**
+     * Hasta {@code limit} sucursales ordenadas por nombre e ID, a partir de la posición {@code after}
+     * (o desde el principio si es {@code null}).
+     */
+    List<BranchListDTO> findListItemsAfter(Specification<Branch> spec, KeysetCursor after, int limit);
+}
@@ -0,0 +1,63 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import com.muebleria.mctecommercebackend.dto.BranchListDTO;
+import com.muebleria.mctecommercebackend.model.Branch;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+class BranchListRepositoryImpl implements BranchListRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<BranchListDTO> findListItems(Specification<Branch> spec, Pageable pageable) {
+        return findListItems(spec, pageable, null);
+    }
+
+    @Override
+    public Page<BranchListDTO> findListItems(Specification<Branch> spec, Pageable pageable, LongSupplier total) {
+        return ProjectionQueries.page(entityManager, Branch.class, spec, pageable,
+                BranchListRepositoryImpl::selection, BranchListRepositoryImpl::toListItem, total);
+    }
+
+    @Override
+    public long countUpTo(Specification<Branch> spec, int cap) {
+        return ProjectionQueries.countUpTo(entityManager, Branch.class, spec, cap);
+    }
+
+    @Override
+    public List<BranchListDTO> findListItemsAfter(Specification<Branch> spec, KeysetCursor after, int limit) {
+        return ProjectionQueries.seek(entityManager, Branch.class, spec, "name", after, limit,
+                BranchListRepositoryImpl::selection, BranchListRepositoryImpl::toListItem);
+    }
+
+    private static List<Selection<?>> selection(Root<Branch> root, CriteriaBuilder cb) {
+        return List.of(
+                root.get("id").alias("id"),
+                root.get("name").alias("name"),
+                root.get("neighborhood").alias("neighborhood"),
+                root.get("city").alias("city"),
+                root.get("state").alias("state"));
+    }
+
+    private static BranchListDTO toListItem(Tuple row) {
+        BranchListDTO dto = new BranchListDTO();
+        dto.setId(row.get("id", Long.class));
+        dto.setName(row.get("name", String.class));
+        dto.setNeighborhood(row.get("neighborhood", String.class));
+        dto.setCity(row.get("city", String.class));
+        dto.setState(row.get("state", String.class));
+        return dto;
+    }
+}
@@ -1,9 +1,13 @@
 package com.muebleria.mctecommercebackend.repository;
 
 import com.muebleria.mctecommercebackend.model.Branch;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -11,7 +15,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BranchRepository extends JpaRepository<Branch, Long>, JpaSpecificationExecutor<Branch> {
+public interface BranchRepository extends JpaRepository<Branch, Long>, JpaSpecificationExecutor<Branch>, BranchListRepository {
 
     Optional<Branch> findByName(String name);
 
@@ -27,5 +31,44 @@ public interface BranchRepository extends JpaRepository<Branch, Long>, JpaSpecif
      * @return Un Optional con la sucursal, si existe.
      */
     @Query(value = "SELECT * FROM branches WHERE branch_id = :id", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "branches"))
     Optional<Branch> findByIdIncludingDeleted(@Param("id") Long id);
-}
\ No newline at end of file
+
+    /**
+     * Todas las sucursales, eliminadas incluidas, para construir {@code BranchDirectoryIndex}.
+     * Las consultas nativas declaran su tabla: sin ella Hibernate supone que tocan todas.
+     */
+    @Query(value = "SELECT * FROM branches", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "branches"))
+    List<Branch> findAllIncludingDeleted();
+
+    /**
+     * Espacio de consulta de {@link #advanceOrderSequence}. No coincide con la tabla de ninguna entidad,
+     * así que el UPDATE no vacía ninguna región de la caché de segundo nivel.
+     */
+    String ORDER_SEQUENCE_SPACE = "branches_order_sequence";
+
+    /**
+     * Avanza de forma atómica la marca de agua de los números de pedido. El UPDATE bloquea la fila
+     * hasta el final de la transacción.
+     * <p>
+     * Es nativo y declara {@link #ORDER_SEQUENCE_SPACE} para que Hibernate no vacíe la región entera de
+     * sucursales en cada commit: la columna no se escribe desde la entidad y la marca de agua se lee con
+     * {@link #findOrderSequenceState}, nunca de la caché. El llamador desaloja solo esa sucursal de la
+     * caché tras el commit.
+     *
+     * @return Filas modificadas: 0 si la sucursal no existe o está eliminada.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE branches SET last_order_sequence_number = last_order_sequence_number + :count " +
+            "WHERE branch_id = :id AND is_deleted = false", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = ORDER_SEQUENCE_SPACE))
+    int advanceOrderSequence(@Param("id") Long id, @Param("count") int count);
+
+    /**
+     * Prefijo y marca de agua actuales, leídos de la fila y no de la entidad en memoria.
+     */
+    @Query("SELECT new com.muebleria.mctecommercebackend.repository.OrderSequenceState(b.orderPrefix, b.lastOrderSequenceNumber) " +
+            "FROM Branch b WHERE b.id = :id")
+    Optional<OrderSequenceState> findOrderSequenceState(@Param("id") Long id);
+}
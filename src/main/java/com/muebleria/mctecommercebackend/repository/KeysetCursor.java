@@ -0,0 +1,41 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posición de un listado paginado por clave: el valor de la columna de orden y el ID de la última fila
+ * entregada. Para el cliente es un token opaco ({@link #encode()}); la página siguiente empieza justo
+ * después de esa fila, sin OFFSET ni COUNT.
+ */
+public record KeysetCursor(String key, Long id) {
+
+    private static final char SEPARATOR = '\n';
+
+    public String encode() {
+        String raw = id + String.valueOf(SEPARATOR) + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token de continuación. Un token vacío o nulo es el inicio del listado ({@code null}).
+     *
+     * @throws IllegalArgumentException si el token no es uno emitido por {@link #encode()}.
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator <= 0) {
+                throw new IllegalArgumentException("El cursor de paginación no es válido.");
+            }
+            return new KeysetCursor(raw.substring(separator + 1), Long.parseLong(raw.substring(0, separator)));
+        } catch (IllegalArgumentException e) {
+            // Incluye NumberFormatException y los errores de Base64.
+            throw new IllegalArgumentException("El cursor de paginación no es válido.");
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.muebleria.mctecommercebackend.repository;
+
+/**
+ * Prefijo de pedidos de una sucursal y último número de secuencia reservado.
+ */
+public record OrderSequenceState(String orderPrefix, int lastOrderSequenceNumber) {
+}
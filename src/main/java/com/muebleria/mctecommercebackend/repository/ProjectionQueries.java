@@ -0,0 +1,137 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Consultas paginadas que aplican una {@link Specification} pero seleccionan solo las columnas
+ * de un DTO, en lugar de cargar entidades completas y sus relaciones fila a fila.
+ * La usan los fragmentos de repositorio de los listados, tanto en modo página (OFFSET y COUNT)
+ * como en modo cursor ({@link KeysetCursor}).
+ */
+final class ProjectionQueries {
+
+    private ProjectionQueries() {
+    }
+
+    /**
+     * @param selection Construye la selección (y las uniones que necesite) sobre la raíz de la consulta.
+     *                  Se llama antes de aplicar la especificación, que puede reutilizar esas uniones.
+     * @param mapper    Convierte cada fila en el DTO.
+     * @param total     Total de filas (por ejemplo, de una caché); si es {@code null} se cuenta con COUNT.
+     *                  Solo se invoca cuando la página no permite deducirlo.
+     */
+    static <T, R> Page<R> page(EntityManager entityManager, Class<T> entityType, Specification<T> spec, Pageable pageable,
+                               BiFunction<Root<T>, CriteriaBuilder, List<Selection<?>>> selection,
+                               Function<Tuple, R> mapper, LongSupplier total) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entityType);
+        query.multiselect(selection.apply(root, cb));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        List<R> content = typedQuery.getResultList().stream().map(mapper).toList();
+
+        LongSupplier totalSupplier = (total != null) ? total : () -> count(entityManager, entityType, spec);
+        return PageableExecutionUtils.getPage(content, pageable, totalSupplier);
+    }
+
+    /**
+     * Lista ordenada por {@code keyAttribute} e ID que empieza después de {@code after} (o desde el principio
+     * si es {@code null}), con un máximo de {@code limit} filas. El filtro de búsqueda por clave sustituye a
+     * OFFSET y no se ejecuta ninguna consulta COUNT.
+     */
+    static <T, R> List<R> seek(EntityManager entityManager, Class<T> entityType, Specification<T> spec,
+                               String keyAttribute, KeysetCursor after, int limit,
+                               BiFunction<Root<T>, CriteriaBuilder, List<Selection<?>>> selection,
+                               Function<Tuple, R> mapper) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<T> root = query.from(entityType);
+        query.multiselect(selection.apply(root, cb));
+
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (after != null) {
+            Path<String> key = root.get(keyAttribute);
+            Path<Long> id = root.get("id");
+            Predicate seek = cb.or(
+                    cb.greaterThan(key, after.key()),
+                    cb.and(cb.equal(key, after.key()), cb.greaterThan(id, after.id())));
+            predicate = (predicate != null) ? cb.and(predicate, seek) : seek;
+        }
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.asc(root.get(keyAttribute)), cb.asc(root.get("id")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList().stream()
+                .map(mapper)
+                .toList();
+    }
+
+    /**
+     * Cuenta las filas que cumplen la especificación, pero deja de contar al llegar a {@code cap}:
+     * lee como mucho {@code cap + 1} IDs en lugar de recorrer todas las coincidencias.
+     *
+     * @return El número exacto si es menor o igual que {@code cap}; si no, {@code cap + 1}.
+     */
+    static <T> long countUpTo(EntityManager entityManager, Class<T> entityType, Specification<T> spec, int cap) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object> query = cb.createQuery();
+        Root<T> root = query.from(entityType);
+        query.select(root.get("id"));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).setMaxResults(cap + 1).getResultList().size();
+    }
+
+    private static <T> long count(EntityManager entityManager, Class<T> entityType, Specification<T> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<T> root = query.from(entityType);
+        query.select(cb.count(root));
+        Predicate predicate = toPredicate(spec, root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private static <T> Predicate toPredicate(Specification<T> spec, Root<T> root, CriteriaQuery<?> query, CriteriaBuilder cb) {
+        return (spec != null) ? spec.toPredicate(root, query, cb) : null;
+    }
+}
@@ -0,0 +1,47 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import com.muebleria.mctecommercebackend.model.RefreshToken;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    /**
+     * Busca un token por su hash y bloquea la fila, para que dos refrescos simultáneos
+     * con el mismo token no puedan rotarlo dos veces.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM RefreshToken t WHERE t.tokenHash = :tokenHash")
+    Optional<RefreshToken> findByTokenHashForUpdate(String tokenHash);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.familyId = :familyId AND t.revokedAt IS NULL")
+    int revokeFamily(String familyId, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.revokedAt = :now WHERE t.user.id = :userId AND t.revokedAt IS NULL")
+    int revokeAllForUser(Long userId, LocalDateTime now);
+
+    /**
+     * Borra los tokens de las familias que ya han expirado por completo. Las familias con algún token
+     * vigente se conservan enteras, revocados incluidos, para seguir detectando la reutilización de
+     * un token ya rotado. La tabla derivada evita el error de MySQL al leer la tabla que se borra.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM refresh_tokens WHERE expires_at <= :now AND family_id NOT IN " +
+            "(SELECT family_id FROM (SELECT family_id FROM refresh_tokens WHERE expires_at > :now) live)",
+            nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "refresh_tokens"))
+    int deleteExpired(LocalDateTime now);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.DayOfWeek;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +17,9 @@ public interface UserAccessRuleRepository extends JpaRepository<UserAccessRule,
     @Query("SELECT r FROM UserAccessRule r WHERE r.user.id = :userId")
     List<UserAccessRule> findByUserId(Long userId);
 
+    @Query("SELECT r FROM UserAccessRule r WHERE r.user.id IN :userIds")
+    List<UserAccessRule> findByUserIdIn(Collection<Long> userIds);
+
     Optional<UserAccessRule> findByUserIdAndDayOfWeek(Long userId, DayOfWeek dayOfWeek);
 
     @Modifying
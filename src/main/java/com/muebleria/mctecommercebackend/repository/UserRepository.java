@@ -1,36 +1,52 @@
 package com.muebleria.mctecommercebackend.repository;
 
+import com.muebleria.mctecommercebackend.model.FetchPlans;
 import com.muebleria.mctecommercebackend.model.Role;
 import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.security.schedule.CompactSchedule;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User> {
+public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificationExecutor<User>, UserSummaryRepository {
 
-    @EntityGraph(attributePaths = "managedBranch")
+    /**
+     * Usuario para el login ({@code UserDetailsServiceImpl}).
+     */
+    @EntityGraph(FetchPlans.USER_PRINCIPAL)
     Optional<User> findByUsername(String username);
 
+    /**
+     * Usuario para las vistas de detalle y perfil, y para devolverlo tras modificarlo.
+     */
+    @EntityGraph(FetchPlans.USER_DETAIL)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findDetailById(@Param("id") Long id);
+
+    @EntityGraph(FetchPlans.USER_DETAIL)
+    @Query("SELECT u FROM User u WHERE u.username = :username")
+    Optional<User> findDetailByUsername(@Param("username") String username);
+
     boolean existsByUsername(String username);
 
     Page<User> findByIsDeletedFalse(Pageable pageable);
 
     Page<User> findByRoleNotAndIsDeletedFalse(Role role, Pageable pageable);
 
-    @Override
-    @Query(
-            value = "SELECT * FROM users WHERE user_id = :id",
-            nativeQuery = true
-    )
-    Optional<User> findById(Long id);
-
     /**
      * Busca una página de usuarios eliminados lógicamente usando una consulta nativa simple.
      * La ordenación compleja se manejará en el controlador.
@@ -40,8 +56,85 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
             countQuery = "SELECT count(*) FROM users WHERE is_deleted = true",
             nativeQuery = true
     )
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "users"))
     Page<User> findAllDeleted(Pageable pageable);
 
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.accessRules WHERE u.id = :id")
     Optional<User> findByIdWithAccessRules(Long id);
-}
\ No newline at end of file
+
+    /**
+     * Carga en una sola consulta lo que necesita la cadena de seguridad (sucursal y perfil)
+     * para construir un {@code UserPrincipalSnapshot}. El horario va en la propia fila del usuario.
+     */
+    @EntityGraph(FetchPlans.USER_PRINCIPAL)
+    Optional<User> findPrincipalByUsername(String username);
+
+    @EntityGraph(FetchPlans.USER_PRINCIPAL)
+    Optional<User> findPrincipalById(Long id);
+
+    /**
+     * Usuario con su sucursal, perfil y reglas de acceso, para {@code BranchRosterIndex}.
+     */
+    @EntityGraph(FetchPlans.USER_DETAIL)
+    Optional<User> findStaffById(Long id);
+
+    /**
+     * Personal activo con alguno de los roles indicados, con su sucursal, perfil y reglas de acceso,
+     * para construir el índice de {@code BranchRosterIndex}.
+     */
+    @EntityGraph(FetchPlans.USER_DETAIL)
+    @Query("SELECT DISTINCT u FROM User u WHERE u.role IN :roles AND u.isDeleted = false AND u.active = true AND u.managedBranch IS NOT NULL")
+    List<User> findRosterStaff(@Param("roles") Collection<Role> roles);
+
+    /**
+     * Todos los usuarios, eliminados incluidos, con su perfil, para construir {@code UserSearchIndex}.
+     */
+    @EntityGraph(FetchPlans.USER_PRINCIPAL)
+    @Query("SELECT u FROM User u")
+    List<User> findAllForSearchIndex();
+
+    /**
+     * Nombres de auditoría de varios usuarios en una sola consulta, eliminados incluidos,
+     * para {@code AuditNameResolver}.
+     */
+    @Query("SELECT new com.muebleria.mctecommercebackend.repository.AuditNameView(u.id, u.username, p.firstName, p.lastName) " +
+            "FROM User u LEFT JOIN u.profile p WHERE u.id IN :ids")
+    List<AuditNameView> findAuditNames(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT u.securityVersion FROM User u WHERE u.id = :id")
+    Optional<Long> findSecurityVersionById(@Param("id") Long id);
+
+    /**
+     * Incrementa de forma atómica la versión de seguridad del usuario, invalidando todos sus JWT.
+     * Primero se vacían los cambios pendientes para no perderlos con la actualización masiva.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.securityVersion = u.securityVersion + 1 WHERE u.id = :id")
+    int incrementSecurityVersion(@Param("id") Long id);
+
+    /**
+     * Guarda la copia compacta del horario. Primero se vacían los cambios pendientes
+     * para que la actualización masiva no los pierda.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.scheduleTimezone = :timezone, u.scheduleBitmap = :bitmap, " +
+            "u.accessRulesAssigned = :assigned, u.scheduleCompact = :compact WHERE u.id = :id")
+    int updateCompactSchedule(@Param("id") Long id, @Param("timezone") String timezone, @Param("bitmap") byte[] bitmap,
+                              @Param("assigned") boolean accessRulesAssigned, @Param("compact") boolean compact);
+
+    default int updateCompactSchedule(Long id, CompactSchedule schedule) {
+        return updateCompactSchedule(id, schedule.timezone(), schedule.bitmap(),
+                schedule.accessRulesAssigned(), schedule.compact());
+    }
+
+    @Query("SELECT u.id FROM User u WHERE u.scheduleCompact = false")
+    List<Long> findIdsWithoutCompactSchedule();
+
+    /**
+     * Sustituye el hash de la contraseña sin tocar passwordChangedAt ni la versión de seguridad:
+     * es la misma contraseña con otro coste, así que las sesiones abiertas siguen siendo válidas.
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.password = :passwordHash WHERE u.id = :id")
+    int updatePasswordHash(@Param("id") Long id, @Param("passwordHash") String passwordHash);
+}
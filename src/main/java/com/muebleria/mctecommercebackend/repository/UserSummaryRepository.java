@@ -0,0 +1,57 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import com.muebleria.mctecommercebackend.dto.UserSummaryDTO;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserProfile;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Fragmento de {@link UserRepository} para el listado de usuarios.
+ */
+public interface UserSummaryRepository {
+
+    /**
+     * Página de {@link UserSummaryDTO} filtrada con la especificación, en una sola consulta con el perfil
+     * y la sucursal unidos. La especificación puede reutilizar la unión con {@code profile} mediante
+     * {@link #profileJoin(Root)}.
+     */
+    Page<UserSummaryDTO> findSummaries(Specification<User> spec, Pageable pageable);
+
+    /**
+     * Igual que {@link #findSummaries(Specification, Pageable)}, pero el total lo proporciona el llamador
+     * (por ejemplo, desde una caché) y solo se pide si la página no permite deducirlo.
+     */
+    Page<UserSummaryDTO> findSummaries(Specification<User> spec, Pageable pageable, LongSupplier total);
+
+    /**
+     * Cuenta las coincidencias hasta {@code cap}; por encima devuelve {@code cap + 1}.
+     */
+    long countUpTo(Specification<User> spec, int cap);
+
+    /**
+     * Hasta {@code limit} resúmenes ordenados por nombre de usuario e ID, a partir de la posición
+     * {@code after} (o desde el principio si es {@code null}).
+     */
+    List<UserSummaryDTO> findSummariesAfter(Specification<User> spec, KeysetCursor after, int limit);
+
+    /**
+     * Devuelve la unión con el perfil si la consulta ya la tiene, o crea una unión externa.
+     * Así los filtros por nombre no añaden una segunda unión a la consulta de proyección.
+     */
+    @SuppressWarnings("unchecked")
+    static Join<User, UserProfile> profileJoin(Root<User> root) {
+        return root.getJoins().stream()
+                .filter(join -> "profile".equals(join.getAttribute().getName()))
+                .map(join -> (Join<User, UserProfile>) join)
+                .findFirst()
+                .orElseGet(() -> root.join("profile", JoinType.LEFT));
+    }
+}
@@ -0,0 +1,79 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import com.muebleria.mctecommercebackend.dto.UserSummaryDTO;
+import com.muebleria.mctecommercebackend.model.Branch;
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserProfile;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.function.LongSupplier;
+
+class UserSummaryRepositoryImpl implements UserSummaryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<UserSummaryDTO> findSummaries(Specification<User> spec, Pageable pageable) {
+        return findSummaries(spec, pageable, null);
+    }
+
+    @Override
+    public Page<UserSummaryDTO> findSummaries(Specification<User> spec, Pageable pageable, LongSupplier total) {
+        return ProjectionQueries.page(entityManager, User.class, spec, pageable,
+                UserSummaryRepositoryImpl::selection, UserSummaryRepositoryImpl::toSummary, total);
+    }
+
+    @Override
+    public long countUpTo(Specification<User> spec, int cap) {
+        return ProjectionQueries.countUpTo(entityManager, User.class, spec, cap);
+    }
+
+    @Override
+    public List<UserSummaryDTO> findSummariesAfter(Specification<User> spec, KeysetCursor after, int limit) {
+        return ProjectionQueries.seek(entityManager, User.class, spec, "username", after, limit,
+                UserSummaryRepositoryImpl::selection, UserSummaryRepositoryImpl::toSummary);
+    }
+
+    private static List<Selection<?>> selection(Root<User> root, CriteriaBuilder cb) {
+        Join<User, UserProfile> profile = UserSummaryRepository.profileJoin(root);
+        Join<User, Branch> branch = root.join("managedBranch", JoinType.LEFT);
+        return List.of(
+                root.get("id").alias("id"),
+                root.get("username").alias("username"),
+                root.get("role").alias("role"),
+                root.get("active").alias("active"),
+                root.get("isDeleted").alias("deleted"),
+                profile.get("firstName").alias("firstName"),
+                profile.get("lastName").alias("lastName"),
+                branch.get("name").alias("branchName"));
+    }
+
+    private static UserSummaryDTO toSummary(Tuple row) {
+        String firstName = row.get("firstName", String.class);
+        String fullName = (firstName != null)
+                ? firstName + " " + row.get("lastName", String.class)
+                : "N/A";
+        return new UserSummaryDTO(
+                row.get("id", Long.class),
+                fullName,
+                row.get("username", String.class),
+                row.get("role", Role.class).name(),
+                row.get("active", Boolean.class),
+                row.get("branchName", String.class),
+                row.get("deleted", Boolean.class)
+        );
+    }
+}
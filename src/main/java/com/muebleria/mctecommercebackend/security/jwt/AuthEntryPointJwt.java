@@ -1,10 +1,11 @@
 package com.muebleria.mctecommercebackend.security.jwt;
 
+import com.muebleria.mctecommercebackend.security.jwt.SecurityErrorResponseWriter.Rejection;
+import com.muebleria.mctecommercebackend.security.jwt.SecurityLogAggregator.Reason;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
@@ -15,13 +16,16 @@ import java.io.IOException;
 @Component
 public class AuthEntryPointJwt implements AuthenticationEntryPoint {
 
-    private static final Logger logger = LoggerFactory.getLogger(AuthEntryPointJwt.class);
+    @Autowired
+    private SecurityErrorResponseWriter errorResponseWriter;
+    @Autowired
+    private SecurityLogAggregator securityLog; // Todas las peticiones rechazadas acaban aquí: se resumen por intervalo
 
     @Override
     public void commence(HttpServletRequest request, HttpServletResponse response,
                          AuthenticationException authException) throws IOException, ServletException {
-        logger.error("Error de autenticación no autorizada: {}", authException.getMessage());
-        // Envía una respuesta 401 Unauthorized
-        response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Error: No autorizado");
+        securityLog.record(Reason.UNAUTHORIZED, request.getRequestURI() + ": " + authException.getMessage());
+        // Envía una respuesta 401 Unauthorized sin re-despachar a /error
+        errorResponseWriter.write(response, Rejection.UNAUTHORIZED);
     }
 }
\ No newline at end of file
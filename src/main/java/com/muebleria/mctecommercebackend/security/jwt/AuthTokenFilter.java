@@ -1,9 +1,12 @@
 package com.muebleria.mctecommercebackend.security.jwt;
 
-import com.muebleria.mctecommercebackend.model.User;
-import com.muebleria.mctecommercebackend.repository.UserRepository;
-import com.muebleria.mctecommercebackend.security.user.UserDetailsServiceImpl;
-import io.jsonwebtoken.Claims;
+import com.muebleria.mctecommercebackend.security.jwt.SecurityLogAggregator.Reason;
+import com.muebleria.mctecommercebackend.security.revocation.TokenRevocationRegistry;
+import com.muebleria.mctecommercebackend.security.user.CurrentActor;
+import com.muebleria.mctecommercebackend.security.user.PrincipalCache;
+import com.muebleria.mctecommercebackend.security.user.SecurityVersionRegistry;
+import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.security.user.UserPrincipalSnapshot;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -13,15 +16,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.ZoneId;
-import java.util.Date;
+import java.time.Instant;
 
 @Component
 public class AuthTokenFilter extends OncePerRequestFilter {
@@ -29,9 +30,15 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtils jwtUtils;
     @Autowired
-    private UserDetailsServiceImpl userDetailsService;
+    private PrincipalCache principalCache; // Copias en memoria de los usuarios, sin ir a la BD en cada petición
     @Autowired
-    private UserRepository userRepository; // Necesitamos el repositorio para buscar el usuario
+    private SecurityVersionRegistry securityVersionRegistry; // Versión de seguridad vigente de cada usuario
+    @Autowired
+    private TokenRevocationRegistry revocationRegistry; // Tokens cerrados con logout (filtro de Bloom + BD)
+    @Autowired
+    private SecurityLogAggregator securityLog; // Rechazos resumidos por intervalo en lugar de una línea por petición
+    @Autowired
+    private CurrentActor currentActor; // Usuario de la petición para los servicios (proxy de ámbito de petición)
 
     private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
@@ -40,38 +47,75 @@ public class AuthTokenFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+            // Una sola verificación por token: las peticiones repetidas se resuelven desde la caché de JwtUtils.
+            VerifiedJwt verifiedJwt = (jwt != null) ? jwtUtils.verifyJwtToken(jwt).orElse(null) : null;
+            if (verifiedJwt != null && revocationRegistry.isRevoked(verifiedJwt.getTokenId())) {
+                // Token cerrado con logout: se ignora y la petición continúa sin autenticar.
+                securityLog.record(Reason.REVOKED, verifiedJwt.getSubject());
+            } else if (verifiedJwt != null && verifiedJwt.hasAuthorizationClaims()) {
+                authenticateFromClaims(verifiedJwt, request);
+            } else if (verifiedJwt != null) {
+                // Token emitido antes de los claims de autorización: se valida contra la copia del usuario.
+                String username = verifiedJwt.getSubject();
+                UserPrincipalSnapshot principal = principalCache.getByUsername(username).orElse(null);
 
                 // --- INICIO DE LA LÓGICA DE VALIDACIÓN DE SESIÓN ---
-                User user = userRepository.findByUsername(username).orElse(null);
-                Claims claims = jwtUtils.getClaimsFromJwtToken(jwt); // Necesitamos un método para obtener los claims
-                Date issuedAt = claims.getIssuedAt();
+                Instant issuedAt = verifiedJwt.getIssuedAt();
 
-                // Si el token fue emitido ANTES del último cambio de contraseña, es inválido.
-                if (user != null && user.getPasswordChangedAt() != null &&
-                        issuedAt.before(Date.from(user.getPasswordChangedAt().atZone(ZoneId.systemDefault()).toInstant()))) {
-
-                    logger.warn("Token inválido para el usuario '{}' debido a un cambio de contraseña.", username);
+                if (principal == null) {
+                    securityLog.record(Reason.UNKNOWN_USER, username);
+                } else if (principal.getPasswordChangedAt() != null && issuedAt != null &&
+                        issuedAt.isBefore(principal.getPasswordChangedAt())) {
+                    // Si el token fue emitido ANTES del último cambio de contraseña, es inválido.
+                    securityLog.record(Reason.PASSWORD_CHANGED, username);
                     // Dejamos que la cadena continúe, pero sin autenticar al usuario.
                     // Esto resultará en un 401 Unauthorized más adelante.
                 } else {
                     // Si la validación es exitosa, procedemos a autenticar.
-                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    // El horario de acceso lo comprueba TimeAccessFilter con la misma copia en caché.
+                    setAuthentication(UserDetailsImpl.build(principal), request);
                 }
                 // --- FIN DE LA LÓGICA DE VALIDACIÓN DE SESIÓN ---
             }
         } catch (Exception e) {
-            logger.error("No se pudo establecer la autenticación del usuario: {}", e.getMessage());
+            securityLog.record(Reason.AUTHENTICATION_ERROR, e.getClass().getSimpleName() + ": " + e.getMessage());
+            logger.debug("No se pudo establecer la autenticación del usuario", e);
         }
 
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Autentica solo con los claims del token. La única comprobación contra el estado del servidor
+     * es que la versión de seguridad del token siga siendo la vigente para el usuario.
+     */
+    private void authenticateFromClaims(VerifiedJwt verifiedJwt, HttpServletRequest request) {
+        if (!verifiedJwt.getActive()) {
+            securityLog.record(Reason.INACTIVE_USER, verifiedJwt.getSubject());
+            return;
+        }
+        if (!securityVersionRegistry.isCurrent(verifiedJwt.getUserId(), verifiedJwt.getSecurityVersion())) {
+            // Cambió la contraseña, el rol, el estado o el horario desde que se emitió el token.
+            securityLog.record(Reason.STALE_VERSION, verifiedJwt.getSubject());
+            return;
+        }
+        setAuthentication(UserDetailsImpl.build(
+                verifiedJwt.getUserId(),
+                verifiedJwt.getSubject(),
+                verifiedJwt.getRole(),
+                verifiedJwt.getManagedBranchId(),
+                verifiedJwt.getActive(),
+                verifiedJwt.getSecurityVersion()), request);
+    }
+
+    private void setAuthentication(UserDetailsImpl userDetails, HttpServletRequest request) {
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        currentActor.populate(userDetails);
+    }
+
     private String parseJwt(HttpServletRequest request) {
         String headerAuth = request.getHeader("Authorization");
         if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
@@ -0,0 +1,194 @@
+package com.muebleria.mctecommercebackend.security.jwt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.muebleria.mctecommercebackend.model.Role;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Codificador especializado para el único formato de token que emite la aplicación: HS256 con
+ * nuestros claims. Evita el constructor y el parser genéricos de jjwt en el camino habitual.
+ * <p>
+ * La cabecera codificada se calcula una sola vez, cada hilo reutiliza su propio {@link Mac},
+ * la firma se compara en tiempo constante y el payload se lee con el parser en streaming de
+ * Jackson, sin construir mapas intermedios. Si la cabecera no es una de las conocidas,
+ * {@link #verify(String)} devuelve {@code null} y {@link JwtUtils} recurre a jjwt.
+ */
+final class Hs256JwtCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 32;
+
+    private static final Base64.Encoder BASE64URL_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+    private static final JsonFactory JSON = new JsonFactory();
+
+    // Cabecera que emite este codificador y la que emitía jjwt ({"alg":"HS256"}); ambas se verifican aquí.
+    static final String HEADER = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.US_ASCII));
+    private static final String LEGACY_HEADER = encode("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.US_ASCII));
+
+    private final ThreadLocal<Mac> mac;
+
+    Hs256JwtCodec(byte[] secret) {
+        SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 no está disponible en esta JVM", e);
+            }
+        });
+    }
+
+    /**
+     * Firma un token con la cabecera precalculada. {@code managedBranchId} nulo omite el claim.
+     */
+    String encode(String tokenId, String subject, Long userId, String role, Long managedBranchId,
+                  boolean active, long securityVersion, long issuedAtSeconds, long expirationSeconds) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = JSON.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeStringField("jti", tokenId);
+            generator.writeStringField("sub", subject);
+            generator.writeNumberField(JwtUtils.CLAIM_USER_ID, userId);
+            if (role != null) {
+                generator.writeStringField(JwtUtils.CLAIM_ROLE, role);
+            }
+            if (managedBranchId != null) {
+                generator.writeNumberField(JwtUtils.CLAIM_MANAGED_BRANCH_ID, managedBranchId);
+            }
+            generator.writeBooleanField(JwtUtils.CLAIM_ACTIVE, active);
+            generator.writeNumberField(JwtUtils.CLAIM_SECURITY_VERSION, securityVersion);
+            generator.writeNumberField("iat", issuedAtSeconds);
+            generator.writeNumberField("exp", expirationSeconds);
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo serializar el payload del JWT", e);
+        }
+
+        String signingInput = HEADER + '.' + encode(json.toByteArray());
+        byte[] signature = mac.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+        return signingInput + '.' + encode(signature);
+    }
+
+    /**
+     * Verifica firma y expiración de un token con una cabecera conocida.
+     *
+     * @return El token verificado, o {@code null} si la cabecera no es de las nuestras.
+     * @throws MalformedJwtException si el token no tiene la forma esperada o no trae {@code exp}.
+     * @throws SignatureException    si la firma no coincide.
+     * @throws ExpiredJwtException   si el token ha expirado.
+     */
+    VerifiedJwt verify(String token) {
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return null;
+        }
+        if (!isKnownHeader(token, firstDot)) {
+            return null;
+        }
+
+        byte[] ascii = token.getBytes(StandardCharsets.US_ASCII);
+        byte[] expected;
+        byte[] actual;
+        try {
+            Mac instance = mac.get();
+            instance.update(ascii, 0, secondDot);
+            expected = instance.doFinal();
+            actual = decode(ascii, secondDot + 1, ascii.length);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJwtException("Firma JWT mal codificada.");
+        }
+        if (actual.length != SIGNATURE_BYTES || !MessageDigest.isEqual(expected, actual)) {
+            throw new SignatureException("La firma del JWT no coincide.");
+        }
+
+        VerifiedJwt verified;
+        try {
+            verified = parsePayload(decode(ascii, firstDot + 1, secondDot));
+        } catch (IllegalArgumentException | IOException e) {
+            throw new MalformedJwtException("Payload JWT ilegible: " + e.getMessage());
+        }
+        // Todos los tokens que emitimos caducan; uno sin exp se quedaría en la caché para siempre.
+        if (verified.getExpiration() == null) {
+            throw new MalformedJwtException("El JWT no tiene fecha de expiración.");
+        }
+        if (verified.isExpired(Instant.now())) {
+            throw new ExpiredJwtException(null, null, "JWT expirado en " + verified.getExpiration());
+        }
+        return verified;
+    }
+
+    private static boolean isKnownHeader(String token, int headerLength) {
+        return (headerLength == HEADER.length() && token.regionMatches(0, HEADER, 0, headerLength))
+                || (headerLength == LEGACY_HEADER.length() && token.regionMatches(0, LEGACY_HEADER, 0, headerLength));
+    }
+
+    private static VerifiedJwt parsePayload(byte[] payload) throws IOException {
+        String tokenId = null;
+        String subject = null;
+        Long userId = null;
+        Role role = null;
+        Long managedBranchId = null;
+        Boolean active = null;
+        Long securityVersion = null;
+        Instant issuedAt = null;
+        Instant expiration = null;
+
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("el payload no es un objeto JSON");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (name) {
+                    case "jti" -> tokenId = parser.getText();
+                    case "sub" -> subject = parser.getText();
+                    case "iat" -> issuedAt = Instant.ofEpochSecond(parser.getLongValue());
+                    case "exp" -> expiration = Instant.ofEpochSecond(parser.getLongValue());
+                    case JwtUtils.CLAIM_USER_ID -> userId = parser.getLongValue();
+                    case JwtUtils.CLAIM_ROLE -> role = Role.fromString(parser.getText());
+                    case JwtUtils.CLAIM_MANAGED_BRANCH_ID -> managedBranchId = parser.getLongValue();
+                    case JwtUtils.CLAIM_ACTIVE -> active = parser.getBooleanValue();
+                    case JwtUtils.CLAIM_SECURITY_VERSION -> securityVersion = parser.getLongValue();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return new VerifiedJwt(tokenId, subject, userId, role, managedBranchId, active, securityVersion,
+                issuedAt, expiration);
+    }
+
+    private static String encode(byte[] bytes) {
+        return BASE64URL_ENCODER.encodeToString(bytes);
+    }
+
+    private static byte[] decode(byte[] ascii, int from, int to) {
+        ByteBuffer decoded = BASE64URL_DECODER.decode(ByteBuffer.wrap(ascii, from, to - from));
+        byte[] bytes = new byte[decoded.remaining()];
+        decoded.get(bytes);
+        return bytes;
+    }
+}
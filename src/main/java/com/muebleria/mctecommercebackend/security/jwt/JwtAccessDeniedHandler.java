@@ -1,10 +1,11 @@
 package com.muebleria.mctecommercebackend.security.jwt;
 
+import com.muebleria.mctecommercebackend.security.jwt.SecurityErrorResponseWriter.Rejection;
+import com.muebleria.mctecommercebackend.security.jwt.SecurityLogAggregator.Reason;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.AccessDeniedException; // Importa AccessDeniedException
 import org.springframework.security.web.access.AccessDeniedHandler; // Importa AccessDeniedHandler
 import org.springframework.stereotype.Component;
@@ -19,13 +20,16 @@ import java.io.IOException;
 @Component
 public class JwtAccessDeniedHandler implements AccessDeniedHandler {
 
-    private static final Logger logger = LoggerFactory.getLogger(JwtAccessDeniedHandler.class);
+    @Autowired
+    private SecurityErrorResponseWriter errorResponseWriter;
+    @Autowired
+    private SecurityLogAggregator securityLog; // Resumen por intervalo en lugar de un ERROR por petición
 
     @Override
     public void handle(HttpServletRequest request, HttpServletResponse response,
                        AccessDeniedException accessDeniedException) throws IOException, ServletException {
-        logger.error("Error de acceso denegado: {}", accessDeniedException.getMessage());
-        // Envía una respuesta 403 Forbidden
-        response.sendError(HttpServletResponse.SC_FORBIDDEN, "Error: Acceso Denegado. No tienes permiso para este recurso.");
+        securityLog.record(Reason.ACCESS_DENIED, request.getRequestURI() + ": " + accessDeniedException.getMessage());
+        // Envía una respuesta 403 Forbidden sin re-despachar a /error
+        errorResponseWriter.write(response, Rejection.FORBIDDEN);
     }
 }
\ No newline at end of file
@@ -1,22 +1,41 @@
 package com.muebleria.mctecommercebackend.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.security.jwt.SecurityLogAggregator.Reason;
 import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
-import java.util.Date;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
 
 // Clase de utilidad para JWT: Genera, parsea y valida tokens.
 @Component
 public class JwtUtils {
-    private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
+
+    // Nombres de los claims de autorización que viajan en el token.
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLE = "role";
+    static final String CLAIM_MANAGED_BRANCH_ID = "mbid";
+    static final String CLAIM_ACTIVE = "act";
+    static final String CLAIM_SECURITY_VERSION = "sv";
 
     // Clave secreta para firmar los JWT. Se inyecta desde application.properties.
     @Value("${muebleria.app.jwtSecret}")
@@ -26,52 +45,179 @@ public class JwtUtils {
     @Value("${muebleria.app.jwtExpirationMs}")
     private int jwtExpirationMs;
 
-    // Obtiene la clave de firma a partir del secreto JWT.
-    private Key key() {
+    // Número máximo de tokens ya verificados que se mantienen en memoria.
+    @Value("${muebleria.app.jwtCacheMaxSize:10000}")
+    private long jwtCacheMaxSize;
+
+    // La clave y el parser se construyen una sola vez; ambos son inmutables y seguros entre hilos.
+    private JwtParser jwtParser;
+    private Hs256JwtCodec hs256Codec;
+
+    // Tokens verificados, indexados por el SHA-256 del token y con expiración igual a la del propio token.
+    private Cache<String, VerifiedJwt> verifiedTokens;
+
+    // Tokens rechazados hace poco (por el mismo hash) y el motivo, para no volver a verificarlos.
+    private Cache<String, Reason> rejectedTokens;
+
+    // Tiempo durante el que se recuerda un token rechazado.
+    @Value("${muebleria.app.jwtRejectedCacheTtlMs:60000}")
+    private long jwtRejectedCacheTtlMs;
+
+    @Autowired
+    private SecurityLogAggregator securityLog; // Un resumen por motivo e intervalo en lugar de un ERROR por petición
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible en esta JVM", e);
+        }
+    });
+
+    @PostConstruct
+    void init() {
         // Trata el secreto como una cadena de texto UTF-8 y la convierte a bytes.
         // Esta es la forma correcta y estándar de manejar claves de texto plano.
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        byte[] secret = jwtSecret.getBytes(StandardCharsets.UTF_8);
+        SecretKey signingKey = Keys.hmacShaKeyFor(secret);
+        this.jwtParser = Jwts.parser().verifyWith(signingKey).build();
+        this.hs256Codec = new Hs256JwtCodec(secret);
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedJwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedJwt value, long currentTime) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedJwt value, long currentTime, long currentDuration) {
+                        return remainingNanos(value);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedJwt value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.rejectedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(jwtRejectedCacheTtlMs))
+                .build();
     }
 
     // Genera un JWT a partir de la autenticación del usuario.
     public String generateJwtToken(Authentication authentication) {
         // Obtiene los detalles del usuario autenticado.
-        UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
-
-        // Construye el token JWT con el nombre de usuario, fechas de emisión y expiración, y la firma.
-        return Jwts.builder()
-                .setSubject(userPrincipal.getUsername()) // El sujeto del token es el nombre de usuario
-                .setIssuedAt(new Date()) // Fecha de emisión del token
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs)) // Fecha de expiración
-                .signWith(key(), SignatureAlgorithm.HS256) // Firma el token con la clave secreta y el algoritmo HS256
-                .compact(); // Construye el JWT
+        return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
     }
 
-    // Obtiene el nombre de usuario del token JWT.
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody().getSubject(); // Extrae el sujeto (nombre de usuario)
-    }
+    // Genera un JWT para un principal ya resuelto (login o refresco con token de refresco).
+    public String generateJwtToken(UserDetailsImpl userPrincipal) {
+        String role = userPrincipal.getAuthorities().stream()
+                .findFirst()
+                .map(GrantedAuthority::getAuthority)
+                .map(Role::fromString)
+                .map(Role::name)
+                .orElse(null);
 
-    public Claims getClaimsFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(key()).build()
-                .parseClaimsJws(token).getBody();
+        // Rol, sucursal, estado y versión de seguridad viajan en el token para no consultar la BD en cada petición.
+        // El codificador HS256 propio firma con la cabecera precalculada y un Mac reutilizado por hilo.
+        long issuedAt = System.currentTimeMillis() / 1000L;
+        return hs256Codec.encode(
+                UUID.randomUUID().toString(), // Identificador único (jti) para poder revocar el token
+                userPrincipal.getUsername(), // El sujeto del token es el nombre de usuario
+                userPrincipal.getId(),
+                role,
+                userPrincipal.getManagedBranchId(),
+                userPrincipal.isEnabled(),
+                userPrincipal.getSecurityVersion(),
+                issuedAt, // Fecha de emisión del token
+                issuedAt + jwtExpirationMs / 1000L); // Fecha de expiración
     }
 
-    // Valida un token JWT.
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Punto único de verificación de un JWT: comprueba firma y expiración y devuelve los claims.
+     * Un token ya verificado se sirve desde la caché con una sola búsqueda por su hash,
+     * sin volver a calcular el HMAC ni a parsear el JSON.
+     *
+     * @param authToken El token recibido en la cabecera Authorization.
+     * @return Los claims verificados, o vacío si el token no es válido.
+     */
+    public Optional<VerifiedJwt> verifyJwtToken(String authToken) {
+        if (authToken == null || authToken.isBlank()) {
+            return Optional.empty();
+        }
+
+        String digest = digest(authToken);
+        VerifiedJwt cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired(Instant.now())) {
+            return Optional.of(cached);
+        }
+        // Un token rechazado hace poco se rechaza otra vez sin parsearlo ni lanzar excepciones.
+        Reason rejectedReason = rejectedTokens.getIfPresent(digest);
+        if (rejectedReason != null) {
+            securityLog.record(rejectedReason, null);
+            return Optional.empty();
+        }
+
         try {
-            Jwts.parser().setSigningKey(key()).build().parse(authToken);
-            return true;
+            // Camino rápido para nuestro formato; jjwt solo se usa con cabeceras desconocidas.
+            VerifiedJwt fast = hs256Codec.verify(authToken);
+            if (fast != null) {
+                verifiedTokens.put(digest, fast);
+                return Optional.of(fast);
+            }
+
+            Claims claims = jwtParser.parseSignedClaims(authToken).getPayload();
+            if (claims.getExpiration() == null) {
+                throw new MalformedJwtException("El JWT no tiene fecha de expiración.");
+            }
+            VerifiedJwt verified = new VerifiedJwt(
+                    claims.getId(),
+                    claims.getSubject(),
+                    claims.get(CLAIM_USER_ID, Long.class),
+                    Role.fromString(claims.get(CLAIM_ROLE, String.class)),
+                    claims.get(CLAIM_MANAGED_BRANCH_ID, Long.class),
+                    claims.get(CLAIM_ACTIVE, Boolean.class),
+                    claims.get(CLAIM_SECURITY_VERSION, Long.class),
+                    claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                    claims.getExpiration().toInstant()
+            );
+            verifiedTokens.put(digest, verified);
+            return Optional.of(verified);
         } catch (MalformedJwtException e) {
-            logger.error("Token JWT inválido: {}", e.getMessage());
+            reject(digest, Reason.MALFORMED, e.getMessage());
         } catch (ExpiredJwtException e) {
-            logger.error("Token JWT expirado: {}", e.getMessage());
+            reject(digest, Reason.EXPIRED, e.getMessage());
         } catch (UnsupportedJwtException e) {
-            logger.error("Token JWT no soportado: {}", e.getMessage());
+            reject(digest, Reason.UNSUPPORTED, e.getMessage());
+        } catch (SignatureException e) {
+            reject(digest, Reason.BAD_SIGNATURE, e.getMessage());
         } catch (IllegalArgumentException e) {
-            logger.error("Cadena de claims JWT vacía: {}", e.getMessage());
+            reject(digest, Reason.EMPTY, e.getMessage());
+        } catch (JwtException e) {
+            reject(digest, Reason.REJECTED, e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    private void reject(String digest, Reason reason, String detail) {
+        rejectedTokens.put(digest, reason);
+        securityLog.record(reason, detail);
+    }
+
+    private static String digest(String token) {
+        byte[] hash = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    private static long remainingNanos(VerifiedJwt jwt) {
+        if (jwt.getExpiration() == null) {
+            return Long.MAX_VALUE;
         }
-        return false;
+        long remaining = Duration.between(Instant.now(), jwt.getExpiration()).toNanos();
+        return Math.max(remaining, 0L);
     }
-}
\ No newline at end of file
+}
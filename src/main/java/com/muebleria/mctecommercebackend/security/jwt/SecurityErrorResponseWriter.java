@@ -0,0 +1,64 @@
+package com.muebleria.mctecommercebackend.security.jwt;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Escribe las respuestas de rechazo de la cadena de seguridad (401/403) directamente en la respuesta.
+ * <p>
+ * Los cuerpos JSON se serializan una sola vez al arrancar. A diferencia de {@code response.sendError},
+ * no provoca un segundo despacho ERROR hacia {@code /error}, que volvería a pasar por toda la cadena de filtros.
+ */
+@Component
+public class SecurityErrorResponseWriter {
+
+    public enum Rejection {
+        UNAUTHORIZED(HttpServletResponse.SC_UNAUTHORIZED, "No autorizado", "Error: No autorizado"),
+        FORBIDDEN(HttpServletResponse.SC_FORBIDDEN, "Acceso Denegado",
+                "Error: Acceso Denegado. No tienes permiso para este recurso."),
+        OUTSIDE_SCHEDULE(HttpServletResponse.SC_FORBIDDEN, "Acceso Denegado", "Acceso fuera del horario permitido."),
+        USER_NOT_FOUND(HttpServletResponse.SC_FORBIDDEN, "Acceso Denegado", "Usuario no encontrado.");
+
+        private final int status;
+        private final String error;
+        private final String message;
+
+        Rejection(int status, String error, String message) {
+            this.status = status;
+            this.error = error;
+            this.message = message;
+        }
+    }
+
+    private final Map<Rejection, byte[]> bodies = new EnumMap<>(Rejection.class);
+
+    public SecurityErrorResponseWriter(ObjectMapper objectMapper) throws JsonProcessingException {
+        for (Rejection rejection : Rejection.values()) {
+            Map<String, String> body = new LinkedHashMap<>();
+            body.put("error", rejection.error);
+            body.put("message", rejection.message);
+            bodies.put(rejection, objectMapper.writeValueAsBytes(body));
+        }
+    }
+
+    public void write(HttpServletResponse response, Rejection rejection) throws IOException {
+        if (response.isCommitted()) {
+            return;
+        }
+        byte[] body = bodies.get(rejection);
+        response.setStatus(rejection.status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        response.flushBuffer();
+    }
+}
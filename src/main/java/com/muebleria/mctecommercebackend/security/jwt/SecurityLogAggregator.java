@@ -0,0 +1,97 @@
+package com.muebleria.mctecommercebackend.security.jwt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agrupa los rechazos de tokens y las respuestas 401/403 (incluidas las denegaciones por horario) en
+ * lugar de escribir una línea de log por petición.
+ * <p>
+ * Cada rechazo solo incrementa un contador; una tarea periódica escribe una línea por motivo
+ * con el total del intervalo y el último detalle visto. Los totales también se publican
+ * como la métrica {@code security.token.rejections{reason}}.
+ */
+@Component
+public class SecurityLogAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecurityLogAggregator.class);
+
+    public enum Reason {
+        MALFORMED("Token JWT inválido"),
+        EXPIRED("Token JWT expirado"),
+        UNSUPPORTED("Token JWT no soportado"),
+        BAD_SIGNATURE("Firma JWT inválida"),
+        EMPTY("Cadena de claims JWT vacía"),
+        REJECTED("Token JWT rechazado"),
+        REVOKED("Token JWT revocado"),
+        STALE_VERSION("Token JWT obsoleto por cambio de versión de seguridad"),
+        INACTIVE_USER("Token JWT de usuario desactivado"),
+        UNKNOWN_USER("Token JWT de usuario inexistente"),
+        PASSWORD_CHANGED("Token JWT anterior a un cambio de contraseña"),
+        AUTHENTICATION_ERROR("Error al establecer la autenticación del usuario"),
+        UNAUTHORIZED("Error de autenticación no autorizada"),
+        ACCESS_DENIED("Error de acceso denegado"),
+        OUTSIDE_SCHEDULE("Acceso denegado fuera del horario permitido");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+    }
+
+    private static final class Tally {
+        final LongAdder count = new LongAdder();
+        final AtomicReference<String> lastDetail = new AtomicReference<>();
+        Counter counter;
+    }
+
+    private final Map<Reason, Tally> tallies = new EnumMap<>(Reason.class);
+    private final long intervalMs;
+
+    public SecurityLogAggregator(MeterRegistry meterRegistry,
+                                 @Value("${muebleria.app.securityLogIntervalMs:60000}") long intervalMs) {
+        this.intervalMs = intervalMs;
+        for (Reason reason : Reason.values()) {
+            Tally tally = new Tally();
+            tally.counter = Counter.builder("security.token.rejections")
+                    .tag("reason", reason.name())
+                    .register(meterRegistry);
+            tallies.put(reason, tally);
+        }
+    }
+
+    /**
+     * Registra un rechazo. Es barato y seguro entre hilos: no escribe en el log.
+     */
+    public void record(Reason reason, String detail) {
+        Tally tally = tallies.get(reason);
+        tally.count.increment();
+        tally.counter.increment();
+        if (detail != null) {
+            tally.lastDetail.set(detail);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${muebleria.app.securityLogIntervalMs:60000}",
+            initialDelayString = "${muebleria.app.securityLogIntervalMs:60000}")
+    public void flush() {
+        for (Map.Entry<Reason, Tally> entry : tallies.entrySet()) {
+            long count = entry.getValue().count.sumThenReset();
+            if (count > 0) {
+                logger.warn("{}: {} rechazos en los últimos {} s (último: {})",
+                        entry.getKey().description, count, intervalMs / 1000, entry.getValue().lastDetail.getAndSet(null));
+            }
+        }
+    }
+}
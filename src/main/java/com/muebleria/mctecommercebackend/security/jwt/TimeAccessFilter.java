@@ -1,16 +1,15 @@
 package com.muebleria.mctecommercebackend.security.jwt;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.muebleria.mctecommercebackend.model.User;
-import com.muebleria.mctecommercebackend.model.UserAccessRule;
-import com.muebleria.mctecommercebackend.repository.UserRepository;
+import com.muebleria.mctecommercebackend.security.jwt.SecurityErrorResponseWriter.Rejection;
+import com.muebleria.mctecommercebackend.security.jwt.SecurityLogAggregator.Reason;
+import com.muebleria.mctecommercebackend.security.schedule.AccessWindowScheduler;
+import com.muebleria.mctecommercebackend.security.user.PrincipalCache;
 import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.security.user.UserPrincipalSnapshot;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -18,21 +17,22 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.time.DayOfWeek;
-import java.time.LocalTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 @Component
 public class TimeAccessFilter extends OncePerRequestFilter {
 
-    private static final Logger logger = LoggerFactory.getLogger(TimeAccessFilter.class);
+    @Autowired
+    private PrincipalCache principalCache;
+
+    @Autowired
+    private SecurityErrorResponseWriter errorResponseWriter; // Cuerpos JSON ya serializados
 
     @Autowired
-    private UserRepository userRepository;
+    private SecurityLogAggregator securityLog; // Resumen por intervalo en lugar de un WARN por petición
+
+    @Autowired
+    private AccessWindowScheduler accessWindowScheduler; // Estado abierto/cerrado de cada ventana, actualizado en sus límites
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -48,54 +48,24 @@ public class TimeAccessFilter extends OncePerRequestFilter {
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
         Long userId = userDetails.getId();
 
-        // Usamos el nuevo método del repositorio que carga las reglas de acceso de forma anticipada
-        Optional<User> userOpt = userRepository.findByIdWithAccessRules(userId);
+        // Las reglas de acceso vienen en la copia en caché que ya cargó AuthTokenFilter
+        Optional<UserPrincipalSnapshot> principalOpt = principalCache.getById(userId);
 
-        if (userOpt.isEmpty()) {
-            sendErrorResponse(response, "Usuario no encontrado.");
+        if (principalOpt.isEmpty()) {
+            errorResponseWriter.write(response, Rejection.USER_NOT_FOUND);
             return;
         }
 
-        User user = userOpt.get();
+        UserPrincipalSnapshot principal = principalOpt.get();
 
-        if (user.isBypassAccessRules()) {
+        // Lectura del indicador que mantiene el planificador de ventanas (o bypass de reglas)
+        if (principal.isBypassAccessRules()
+                || accessWindowScheduler.isAllowed(principal.getId(), principal.getUsername(), principal.getSchedule())) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        for (UserAccessRule rule : user.getAccessRules()) {
-            if (rule.isActive() && isTimeAllowed(rule)) {
-                filterChain.doFilter(request, response);
-                return;
-            }
-        }
-
-        logger.warn("Acceso denegado para el usuario '{}' fuera de su horario permitido.", user.getUsername());
-        sendErrorResponse(response, "Acceso fuera del horario permitido.");
-    }
-
-    private boolean isTimeAllowed(UserAccessRule rule) {
-        try {
-            ZoneId ruleZoneId = ZoneId.of(rule.getAccessTimezone());
-            ZonedDateTime nowInRuleZone = ZonedDateTime.now(ruleZoneId);
-            DayOfWeek currentDayInZone = nowInRuleZone.getDayOfWeek();
-            LocalTime currentTimeInZone = nowInRuleZone.toLocalTime();
-
-            if (rule.getDayOfWeek() == currentDayInZone) {
-                return !currentTimeInZone.isBefore(rule.getStartTime()) && !currentTimeInZone.isAfter(rule.getEndTime());
-            }
-        } catch (Exception e) {
-            logger.error("Error al procesar la regla de acceso ID {}: {}", rule.getId(), e.getMessage());
-        }
-        return false;
-    }
-
-    private void sendErrorResponse(HttpServletResponse response, String message) throws IOException {
-        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-        response.setContentType("application/json");
-        Map<String, String> error = new HashMap<>();
-        error.put("error", "Acceso Denegado");
-        error.put("message", message);
-        response.getWriter().write(new ObjectMapper().writeValueAsString(error));
+        securityLog.record(Reason.OUTSIDE_SCHEDULE, "usuario '" + principal.getUsername() + "'");
+        errorResponseWriter.write(response, Rejection.OUTSIDE_SCHEDULE);
     }
 }
\ No newline at end of file
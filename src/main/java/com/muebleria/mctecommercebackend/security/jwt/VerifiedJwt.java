@@ -0,0 +1,40 @@
+package com.muebleria.mctecommercebackend.security.jwt;
+
+import com.muebleria.mctecommercebackend.model.Role;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Resultado inmutable de verificar un JWT (firma y expiración).
+ * Lo devuelve {@link JwtUtils#verifyJwtToken(String)} y se guarda en caché hasta la expiración del token.
+ * <p>
+ * Los tokens emitidos antes de incluir los claims de autorización solo traen el sujeto;
+ * en ese caso {@link #hasAuthorizationClaims()} devuelve {@code false}.
+ */
+@Getter
+@AllArgsConstructor
+public final class VerifiedJwt {
+
+    private final String tokenId; // Claim jti; permite revocar este token concreto
+    private final String subject;
+    private final Long userId;
+    private final Role role;
+    private final Long managedBranchId;
+    private final Boolean active;
+    private final Long securityVersion;
+    private final Instant issuedAt;
+    private final Instant expiration;
+
+    public boolean isExpired(Instant now) {
+        return expiration != null && !expiration.isAfter(now);
+    }
+
+    /**
+     * Indica si el token trae todo lo necesario para autenticar sin consultar al usuario en la base de datos.
+     */
+    public boolean hasAuthorizationClaims() {
+        return userId != null && role != null && active != null && securityVersion != null;
+    }
+}
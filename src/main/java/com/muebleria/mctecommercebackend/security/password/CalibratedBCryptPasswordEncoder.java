@@ -0,0 +1,83 @@
+package com.muebleria.mctecommercebackend.security.password;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link BCryptPasswordEncoder} cuyo factor de coste se elige al arrancar para que un hash
+ * tarde aproximadamente el tiempo objetivo en la CPU donde corre la aplicación.
+ * <p>
+ * Como el encoder base, solo pide rehash cuando el coste guardado es menor que el actual (o el hash
+ * BCrypt está mal formado). Cada nodo calibra su propio coste; si se pidiera rehash ante cualquier
+ * diferencia, dos nodos con costes distintos volverían a hashear al mismo usuario en cada login.
+ * Por eso bajar el coste solo afecta a los hashes nuevos.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}$");
+
+    // Coste usado para medir la CPU; cada punto más duplica el tiempo.
+    private static final int PROBE_COST = 8;
+    private static final int PROBE_ROUNDS = 3;
+
+    private final int cost;
+
+    public CalibratedBCryptPasswordEncoder(int cost) {
+        super(cost);
+        this.cost = cost;
+    }
+
+    /**
+     * Crea el encoder con un coste fijo o, si {@code fixedCost} es 0, con el coste calibrado
+     * para {@code targetMillis}, limitado a [{@code minCost}, {@code maxCost}].
+     */
+    public static CalibratedBCryptPasswordEncoder create(int fixedCost, long targetMillis, int minCost, int maxCost) {
+        if (fixedCost > 0) {
+            logger.info("Coste de BCrypt fijado por configuración: {}", fixedCost);
+            return new CalibratedBCryptPasswordEncoder(fixedCost);
+        }
+        int calibrated = calibrate(targetMillis, minCost, maxCost);
+        logger.info("Coste de BCrypt calibrado a {} para un objetivo de {} ms por hash.", calibrated, targetMillis);
+        return new CalibratedBCryptPasswordEncoder(calibrated);
+    }
+
+    static int calibrate(long targetMillis, int minCost, int maxCost) {
+        String salt = BCrypt.gensalt(PROBE_COST);
+        // La primera vuelta calienta el JIT; se toma la mejor de las siguientes.
+        BCrypt.hashpw("calibracion", salt);
+        long bestNanos = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_ROUNDS; i++) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibracion", salt);
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        double probeMillis = Math.max(bestNanos / 1_000_000.0, 0.01);
+        int cost = PROBE_COST + (int) Math.round(Math.log(targetMillis / probeMillis) / Math.log(2));
+        return Math.max(minCost, Math.min(maxCost, cost));
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_HASH.matcher(encodedPassword);
+        if (!matcher.matches()) {
+            // Parece BCrypt pero no tiene el formato esperado: se rehashea con el formato actual.
+            // Si no es BCrypt no se toca, porque no se sabe qué lo generó.
+            return encodedPassword.startsWith("$2");
+        }
+        return Integer.parseInt(matcher.group(1)) < cost;
+    }
+}
@@ -0,0 +1,140 @@
+package com.muebleria.mctecommercebackend.security.revocation;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muebleria.mctecommercebackend.model.RevokedToken;
+import com.muebleria.mctecommercebackend.repository.RevokedTokenRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Conjunto de JWT revocados (por jti) con un filtro de Bloom en memoria delante.
+ * <p>
+ * El caso habitual, un token no revocado, se resuelve con el filtro sin ir a la base de datos;
+ * solo los positivos (revocados de verdad o falsos positivos) se confirman con una consulta,
+ * cuyo resultado se cachea. El filtro se reconstruye periódicamente desde la tabla, lo que
+ * descarta los tokens ya expirados y recoge las revocaciones hechas en otros nodos; los falsos
+ * positivos cacheados se descartan con cada reconstrucción, porque alguno de ellos puede haberse
+ * revocado después en otro nodo.
+ */
+@Component
+public class TokenRevocationRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationRegistry.class);
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final long expectedRevocations;
+
+    // Revocaciones confirmadas contra la BD. Las revocaciones locales se guardan aquí para no perderlas
+    // si llegan mientras se reconstruye el filtro.
+    private final Cache<String, Boolean> confirmed;
+
+    // Falsos positivos del filtro confirmados contra la BD. Se sustituye en cada reconstrucción: una
+    // consulta que empezó antes escribe en la instancia anterior y su resultado se pierde con ella.
+    private volatile Cache<String, Boolean> falsePositives;
+
+    private volatile BloomFilter filter;
+
+    public TokenRevocationRegistry(RevokedTokenRepository revokedTokenRepository,
+                                   @Value("${muebleria.app.revocationExpectedTokens:10000}") long expectedRevocations,
+                                   @Value("${muebleria.app.revocationRefreshMs:30000}") long refreshMs) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.expectedRevocations = expectedRevocations;
+        this.confirmed = Caffeine.newBuilder()
+                .maximumSize(expectedRevocations)
+                .expireAfterWrite(Duration.ofMillis(refreshMs * 2))
+                .build();
+        this.falsePositives = newFalsePositiveCache();
+        this.filter = new BloomFilter(expectedRevocations, FALSE_POSITIVE_RATE);
+    }
+
+    @PostConstruct
+    void init() {
+        rebuild();
+    }
+
+    /**
+     * Indica si el token con el jti dado fue revocado y todavía no ha expirado.
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        if (confirmed.getIfPresent(jti) != null) {
+            return true;
+        }
+        Cache<String, Boolean> notRevoked = falsePositives;
+        if (notRevoked.getIfPresent(jti) != null) {
+            return false;
+        }
+        boolean revoked = revokedTokenRepository.existsByJtiAndExpiresAtAfter(jti, LocalDateTime.now());
+        if (revoked) {
+            confirmed.put(jti, Boolean.TRUE);
+        } else {
+            notRevoked.put(jti, Boolean.TRUE);
+        }
+        return revoked;
+    }
+
+    /**
+     * Revoca un token hasta su expiración. Es efectivo de inmediato en este nodo y, en los demás,
+     * tras la siguiente reconstrucción del filtro ({@code muebleria.app.revocationRefreshMs}).
+     */
+    @Transactional
+    public void revoke(String jti, Long userId, Instant expiresAt) {
+        if (jti == null || expiresAt == null || !expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        if (!revokedTokenRepository.existsById(jti)) {
+            RevokedToken revoked = new RevokedToken();
+            revoked.setJti(jti);
+            revoked.setUserId(userId);
+            revoked.setExpiresAt(LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault()));
+            revokedTokenRepository.save(revoked);
+        }
+        filter.put(jti);
+        confirmed.put(jti, Boolean.TRUE);
+    }
+
+    /**
+     * Purga las revocaciones de tokens ya expirados y reconstruye el filtro con las vigentes.
+     */
+    @Scheduled(fixedDelayString = "${muebleria.app.revocationRefreshMs:30000}",
+            initialDelayString = "${muebleria.app.revocationRefreshMs:30000}")
+    @Transactional
+    public void refresh() {
+        int purged = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            logger.info("Se purgaron {} revocaciones de tokens ya expirados.", purged);
+        }
+        rebuild();
+    }
+
+    private void rebuild() {
+        List<String> active = revokedTokenRepository.findActiveJtis(LocalDateTime.now());
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, active.size() * 2L), FALSE_POSITIVE_RATE);
+        active.forEach(rebuilt::put);
+        confirmed.asMap().keySet().forEach(rebuilt::put);
+        this.filter = rebuilt;
+        this.falsePositives = newFalsePositiveCache();
+    }
+
+    private Cache<String, Boolean> newFalsePositiveCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(expectedRevocations)
+                .build();
+    }
+}
@@ -0,0 +1,160 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.event.AccessWindowClosedEvent;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantiene, para cada usuario con horario que está usando la aplicación, si su ventana de acceso
+ * está abierta en este momento y cuándo cambia.
+ * <p>
+ * Al registrar un usuario se calcula el siguiente instante de apertura o cierre a partir de su
+ * {@link CompiledSchedule} y se programa en una {@link HashedTimingWheel}; al vencer, se actualiza
+ * el indicador y se programa el siguiente cambio. La comprobación por petición es una lectura volátil.
+ * Cuando se cierra una ventana se publica {@link AccessWindowClosedEvent}.
+ */
+@Component
+public class AccessWindowScheduler {
+
+    // Una semana más un día: cubre cualquier horario semanal aunque haya un cambio de hora por medio.
+    private static final long HORIZON_SECONDS = 8L * 24 * 60 * 60;
+    // Aunque no haya cambios a la vista se recalcula una vez al día.
+    private static final long MAX_DELAY_SECONDS = 24L * 60 * 60;
+
+    /** Estado de la ventana; se publica entero en un solo campo volátil. */
+    private record State(boolean allowed, long nextTransition) {
+    }
+
+    private static final class Window {
+        final Long userId;
+        final String username;
+        final CompiledSchedule schedule;
+        volatile State state;
+        volatile long lastAccessMillis;
+        HashedTimingWheel.Timeout timeout;
+
+        Window(Long userId, String username, CompiledSchedule schedule) {
+            this.userId = userId;
+            this.username = username;
+            this.schedule = schedule;
+        }
+    }
+
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+    private final HashedTimingWheel wheel;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long idleMillis;
+    private final Clock clock;
+
+    @Autowired
+    public AccessWindowScheduler(ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${muebleria.app.accessWindowIdleMs:86400000}") long idleMillis) {
+        this(eventPublisher, meterRegistry, idleMillis, Clock.systemUTC(),
+                new HashedTimingWheel("access-window-wheel", 250, 512));
+    }
+
+    AccessWindowScheduler(ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry, long idleMillis,
+                          Clock clock, HashedTimingWheel wheel) {
+        this.eventPublisher = eventPublisher;
+        this.idleMillis = idleMillis;
+        this.clock = clock;
+        this.wheel = wheel;
+        Gauge.builder("access.windows.tracked", windows, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Indica si el usuario puede acceder ahora según su horario. La primera llamada (o tras un cambio
+     * de horario) registra al usuario; las siguientes solo leen el indicador.
+     */
+    public boolean isAllowed(Long userId, String username, CompiledSchedule schedule) {
+        Window window = windows.get(userId);
+        if (window == null || window.schedule != schedule) {
+            window = register(userId, username, schedule);
+        }
+        long now = clock.millis();
+        window.lastAccessMillis = now;
+        State state = window.state;
+        long nowSeconds = now / 1000L;
+        if (nowSeconds >= state.nextTransition()) {
+            // La rueda aún no ha procesado el cambio (va por ticks): se responde con el horario directamente.
+            return schedule.isAllowedAt(nowSeconds);
+        }
+        return state.allowed();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        Window removed = windows.remove(event.getUserId());
+        if (removed != null) {
+            cancel(removed);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        wheel.close();
+    }
+
+    private Window register(Long userId, String username, CompiledSchedule schedule) {
+        return windows.compute(userId, (id, existing) -> {
+            if (existing != null && existing.schedule == schedule) {
+                return existing;
+            }
+            if (existing != null) {
+                cancel(existing);
+            }
+            Window window = new Window(userId, username, schedule);
+            window.lastAccessMillis = clock.millis();
+            evaluate(window);
+            return window;
+        });
+    }
+
+    private void onTransition(Window window) {
+        if (windows.get(window.userId) != window) {
+            return; // Sustituida o eliminada mientras esperaba
+        }
+        if (clock.millis() - window.lastAccessMillis > idleMillis) {
+            windows.remove(window.userId, window);
+            return;
+        }
+        boolean wasAllowed = window.state.allowed();
+        evaluate(window);
+        if (wasAllowed && !window.state.allowed()) {
+            eventPublisher.publishEvent(new AccessWindowClosedEvent(window.userId, window.username, clock.instant()));
+        }
+    }
+
+    private void evaluate(Window window) {
+        long nowSeconds = clock.millis() / 1000L;
+        boolean allowed = window.schedule.isAllowedAt(nowSeconds);
+        long next = window.schedule.nextTransitionAfter(nowSeconds, HORIZON_SECONDS);
+        long fireAt = (next < 0) ? nowSeconds + MAX_DELAY_SECONDS : Math.min(next, nowSeconds + MAX_DELAY_SECONDS);
+
+        window.state = new State(allowed, next < 0 ? Long.MAX_VALUE : next);
+        synchronized (window) {
+            window.timeout = wheel.schedule(() -> onTransition(window), fireAt * 1000L - clock.millis());
+        }
+    }
+
+    private static void cancel(Window window) {
+        synchronized (window) {
+            if (window.timeout != null) {
+                window.timeout.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserAccessRule;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice en memoria de las reglas de acceso activas del personal de sucursal, agrupadas por
+ * sucursal, rol y zona horaria, para responder "quién puede entrar ahora" sin cargar usuarios.
+ * <p>
+ * Cada grupo guarda sus reglas en un {@link MinuteIntervalTree} sobre los minutos de la semana local,
+ * así que la consulta en un instante es logarítmica por zona horaria. Los usuarios que omiten las
+ * reglas de acceso se guardan aparte, porque siempre pueden entrar. Cuando cambia un usuario o sus
+ * reglas ({@link UserChangedEvent}) solo se reindexa ese usuario; además el índice se reconstruye
+ * periódicamente para recoger los cambios hechos en otros nodos.
+ */
+@Component
+public class BranchRosterIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BranchRosterIndex.class);
+
+    /** Roles del personal de sucursal que aparecen en la lista. */
+    public static final Set<Role> ROSTER_ROLES = EnumSet.of(Role.VENDEDOR, Role.DRIVER, Role.AGENT);
+
+    /** Persona de la lista, tal como se indexó. */
+    public record RosterMember(Long id, String username, String fullName, Role role, boolean bypassAccessRules) {
+    }
+
+    private record IndexedRule(long ruleId, String zoneId, int from, int to) {
+    }
+
+    private record Member(RosterMember member, Long branchId, List<IndexedRule> rules) {
+    }
+
+    private record GroupKey(Long branchId, Role role) {
+    }
+
+    private static final class ZoneTree {
+        final ZoneOffsets zone;
+        final MinuteIntervalTree tree = new MinuteIntervalTree();
+
+        ZoneTree(ZoneOffsets zone) {
+            this.zone = zone;
+        }
+    }
+
+    private static final class Group {
+        final Map<String, ZoneTree> zones = new LinkedHashMap<>();
+        final Set<Long> alwaysAllowed = new HashSet<>();
+
+        boolean isEmpty() {
+            return zones.isEmpty() && alwaysAllowed.isEmpty();
+        }
+    }
+
+    private final UserRepository userRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<GroupKey, Group> groups = new HashMap<>();
+    private final Map<Long, Member> members = new HashMap<>();
+    private final Map<Long, Long> userIdsByRule = new HashMap<>();
+
+    public BranchRosterIndex(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        Gauge.builder("branch.roster.rules", this, BranchRosterIndex::indexedRules)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        rebuild();
+    }
+
+    /**
+     * Vuelve a cargar el índice completo desde la base de datos.
+     */
+    @Scheduled(fixedDelayString = "${muebleria.app.rosterRefreshMs:300000}",
+            initialDelayString = "${muebleria.app.rosterRefreshMs:300000}")
+    public void rebuild() {
+        // Un cambio que llegue entre la carga y la sustitución puede perderse hasta la siguiente
+        // reconstrucción; la lista es informativa y no interviene en la decisión de acceso.
+        List<User> staff = userRepository.findRosterStaff(ROSTER_ROLES);
+        lock.writeLock().lock();
+        try {
+            groups.clear();
+            members.clear();
+            userIdsByRule.clear();
+            staff.forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Índice de personal reconstruido: {} usuarios, {} reglas.", members.size(), userIdsByRule.size());
+    }
+
+    /**
+     * Personas de la sucursal con alguno de los roles indicados que pueden acceder en el instante dado.
+     * El resultado se ordena por nombre.
+     */
+    public List<RosterMember> allowedAt(Long branchId, Collection<Role> roles, Instant instant) {
+        long epochSecond = instant.getEpochSecond();
+        Set<Long> allowed = new HashSet<>();
+        List<RosterMember> result = new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            for (Role role : roles) {
+                Group group = groups.get(new GroupKey(branchId, role));
+                if (group == null) {
+                    continue;
+                }
+                allowed.addAll(group.alwaysAllowed);
+                for (ZoneTree zoneTree : group.zones.values()) {
+                    int minute = CompiledSchedule.minuteOfWeek(epochSecond, zoneTree.zone.offsetSecondsAt(epochSecond));
+                    zoneTree.tree.stab(minute, ruleId -> allowed.add(userIdsByRule.get(ruleId)));
+                }
+            }
+            for (Long userId : allowed) {
+                result.add(members.get(userId).member());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        result.sort(Comparator.comparing(RosterMember::fullName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                .thenComparing(RosterMember::username));
+        return result;
+    }
+
+    /**
+     * Reindexa solo al usuario modificado, después del commit.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        Optional<User> user = userRepository.findStaffById(event.getUserId());
+        lock.writeLock().lock();
+        try {
+            unindex(event.getUserId());
+            user.ifPresent(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int indexedRules() {
+        lock.readLock().lock();
+        try {
+            return userIdsByRule.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Las operaciones siguientes se llaman con el cerrojo de escritura tomado. ---
+
+    private void index(User user) {
+        if (user.isDeleted() || !user.isActive() || user.getManagedBranch() == null || !ROSTER_ROLES.contains(user.getRole())) {
+            return;
+        }
+        Long branchId = user.getManagedBranch().getId();
+        GroupKey key = new GroupKey(branchId, user.getRole());
+        Group group = groups.computeIfAbsent(key, k -> new Group());
+
+        String fullName = (user.getProfile() != null)
+                ? user.getProfile().getFirstName() + " " + user.getProfile().getLastName()
+                : null;
+        RosterMember member = new RosterMember(user.getId(), user.getUsername(), fullName, user.getRole(),
+                user.isBypassAccessRules());
+
+        List<IndexedRule> indexed = new ArrayList<>();
+        if (user.isBypassAccessRules()) {
+            group.alwaysAllowed.add(user.getId());
+        } else {
+            for (UserAccessRule rule : user.getAccessRules()) {
+                if (!rule.isActive()) {
+                    continue;
+                }
+                Optional<ZoneOffsets> zone = ZoneOffsets.of(rule.getAccessTimezone());
+                if (zone.isEmpty()) {
+                    continue;
+                }
+                IndexedRule entry = new IndexedRule(rule.getId(), rule.getAccessTimezone(),
+                        CompiledSchedule.startMinute(rule.getDayOfWeek(), rule.getStartTime()),
+                        CompiledSchedule.endMinuteExclusive(rule.getDayOfWeek(), rule.getEndTime()));
+                if (entry.from() >= entry.to()) {
+                    continue;
+                }
+                group.zones.computeIfAbsent(entry.zoneId(), z -> new ZoneTree(zone.get()))
+                        .tree.insert(entry.from(), entry.to(), entry.ruleId());
+                userIdsByRule.put(entry.ruleId(), user.getId());
+                indexed.add(entry);
+            }
+        }
+        members.put(user.getId(), new Member(member, branchId, indexed));
+        if (group.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    private void unindex(Long userId) {
+        Member previous = members.remove(userId);
+        if (previous == null) {
+            return;
+        }
+        GroupKey key = new GroupKey(previous.branchId(), previous.member().role());
+        Group group = groups.get(key);
+        if (group == null) {
+            return;
+        }
+        group.alwaysAllowed.remove(userId);
+        for (IndexedRule rule : previous.rules()) {
+            userIdsByRule.remove(rule.ruleId());
+            ZoneTree zoneTree = group.zones.get(rule.zoneId());
+            if (zoneTree != null) {
+                zoneTree.tree.remove(rule.from(), rule.to(), rule.ruleId());
+                if (zoneTree.tree.isEmpty()) {
+                    group.zones.remove(rule.zoneId());
+                }
+            }
+        }
+        if (group.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+}
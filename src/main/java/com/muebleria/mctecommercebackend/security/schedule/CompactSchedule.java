@@ -0,0 +1,37 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+
+/**
+ * Horario de un usuario tal como se guarda en la fila de {@code users}: el mapa de bits por minuto
+ * de la semana local ({@link #BITMAP_BYTES} bytes, bit {@code m % 8} del byte {@code m / 8} para el
+ * minuto {@code m}) junto con su zona horaria.
+ * <p>
+ * Solo cabe un horario con una única zona horaria, que es el caso habitual. Si las reglas activas
+ * usan varias zonas, {@code compact} es falso y el horario se compila desde las reglas.
+ *
+ * @param timezone            Zona horaria del mapa de bits, o {@code null} si no hay ventanas de acceso.
+ * @param bitmap              Mapa de bits, o {@code null} si no hay ventanas de acceso.
+ * @param accessRulesAssigned Si el usuario tiene alguna regla, activa o no.
+ * @param compact             Si las columnas describen el horario completo.
+ */
+public record CompactSchedule(String timezone, byte[] bitmap, boolean accessRulesAssigned, boolean compact) {
+
+    public static final int BITMAP_BYTES = CompiledSchedule.MINUTES_PER_WEEK / 8;
+
+    /**
+     * Máscara con los minutos de la franja indicada marcados, con el mismo formato que la columna
+     * y el mismo redondeo que las reglas de acceso. Sirve para filtrar en SQL los usuarios cuyo
+     * horario cubre la franja completa.
+     */
+    public static byte[] mask(DayOfWeek day, LocalTime from, LocalTime to) {
+        int fromMinute = CompiledSchedule.startMinute(day, from);
+        int toMinute = CompiledSchedule.endMinuteExclusive(day, to);
+        byte[] mask = new byte[BITMAP_BYTES];
+        for (int minute = fromMinute; minute < toMinute; minute++) {
+            mask[minute >>> 3] |= (byte) (1 << (minute & 7));
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,53 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.repository.UserAccessRuleRepository;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Rellena al arrancar la copia compacta del horario de los usuarios que aún no la tienen
+ * (los existentes antes de añadir las columnas). Es idempotente, así que varios nodos pueden
+ * ejecutarlo a la vez. Los usuarios con reglas en varias zonas horarias se vuelven a evaluar
+ * en cada arranque, porque su horario no cabe en las columnas.
+ */
+@Component
+public class CompactScheduleBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompactScheduleBackfill.class);
+
+    private final UserRepository userRepository;
+    private final UserAccessRuleRepository ruleRepository;
+    private final ScheduleCompiler scheduleCompiler;
+
+    public CompactScheduleBackfill(UserRepository userRepository, UserAccessRuleRepository ruleRepository,
+                                   ScheduleCompiler scheduleCompiler) {
+        this.userRepository = userRepository;
+        this.ruleRepository = ruleRepository;
+        this.scheduleCompiler = scheduleCompiler;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfill() {
+        List<Long> pending = userRepository.findIdsWithoutCompactSchedule();
+        if (pending.isEmpty()) {
+            return;
+        }
+        int compacted = 0;
+        for (Long userId : pending) {
+            CompactSchedule schedule = scheduleCompiler.encode(ruleRepository.findByUserId(userId));
+            userRepository.updateCompactSchedule(userId, schedule);
+            if (schedule.compact()) {
+                compacted++;
+            }
+        }
+        logger.info("Horario compacto calculado para {} de {} usuarios pendientes.", compacted, pending.size());
+    }
+}
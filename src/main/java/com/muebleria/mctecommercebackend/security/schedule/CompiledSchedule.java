@@ -0,0 +1,220 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Horario semanal de un usuario compilado a un mapa de bits por minuto de la semana
+ * (7 × 1440 = 10 080 bits) para cada zona horaria de sus reglas activas.
+ * <p>
+ * La decisión de acceso es una comprobación de bit sin crear objetos: se calcula el minuto
+ * de la semana local a partir del desfase cacheado de la zona y se consulta el bit.
+ * Las instancias son inmutables y se comparten entre usuarios con el mismo horario.
+ */
+public final class CompiledSchedule {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    static final int WORDS = (MINUTES_PER_WEEK + 63) / 64;
+
+    /** Horario sin ninguna ventana de acceso: siempre deniega. */
+    public static final CompiledSchedule EMPTY = new CompiledSchedule(new ZoneOffsets[0], new long[0][]);
+
+    private final ZoneOffsets[] zones;
+    private final long[][] bitmaps;
+
+    CompiledSchedule(ZoneOffsets[] zones, long[][] bitmaps) {
+        this.zones = zones;
+        this.bitmaps = bitmaps;
+    }
+
+    public boolean isEmpty() {
+        return zones.length == 0;
+    }
+
+    /**
+     * Indica si el horario permite el acceso en este momento.
+     */
+    public boolean isAllowedNow() {
+        return isAllowedAt(System.currentTimeMillis() / 1000L);
+    }
+
+    /**
+     * Indica si el horario permite el acceso en el instante dado (segundos desde la época).
+     */
+    public boolean isAllowedAt(long epochSecond) {
+        for (int i = 0; i < zones.length; i++) {
+            int minute = minuteOfWeek(epochSecond, zones[i].offsetSecondsAt(epochSecond));
+            if ((bitmaps[i][minute >>> 6] & (1L << minute)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indica si el horario cubre entera la franja dada, en hora local y con el mismo redondeo que las
+     * reglas y que {@link CompactSchedule#mask}. Como el filtro SQL sobre la copia compacta, la franja
+     * se lee en la hora local de cada regla; con varias zonas basta con que cada minuto esté en alguna.
+     */
+    public boolean coversLocalSlot(DayOfWeek day, LocalTime from, LocalTime to) {
+        if (isEmpty()) {
+            return false;
+        }
+        int end = endMinuteExclusive(day, to);
+        for (int minute = startMinute(day, from); minute < end; minute++) {
+            boolean covered = false;
+            for (long[] bitmap : bitmaps) {
+                if ((bitmap[minute >>> 6] & (1L << minute)) != 0) {
+                    covered = true;
+                    break;
+                }
+            }
+            if (!covered) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Primer instante posterior a {@code epochSecond} en el que cambia la decisión de acceso
+     * (se abre o se cierra una ventana), buscando como mucho {@code horizonSeconds} hacia delante.
+     * <p>
+     * Los candidatos son el siguiente cambio de bit de cada zona, buscado palabra a palabra en su mapa
+     * desde el minuto local actual, y el siguiente cambio de horario de la zona, que desplaza el minuto
+     * local. Solo se evalúa el horario en esos candidatos, así que el coste depende del número de
+     * ventanas en el horizonte y no de su longitud en minutos.
+     *
+     * @return El instante del cambio en segundos desde la época, o -1 si no hay ninguno en el horizonte.
+     */
+    public long nextTransitionAfter(long epochSecond, long horizonSeconds) {
+        if (zones.length == 0) {
+            return -1L;
+        }
+        boolean current = isAllowedAt(epochSecond);
+        long limit = epochSecond + horizonSeconds;
+        long t = epochSecond;
+        while (true) {
+            long candidate = Long.MAX_VALUE;
+            for (int i = 0; i < zones.length; i++) {
+                candidate = Math.min(candidate, nextChangeInZone(i, t));
+            }
+            if (candidate > limit) {
+                return -1L;
+            }
+            // Con varias zonas, el cambio de una puede quedar tapado por otra que sigue abierta.
+            if (isAllowedAt(candidate) != current) {
+                return candidate;
+            }
+            t = candidate;
+        }
+    }
+
+    /**
+     * Primer instante posterior a {@code epochSecond} en el que cambia el bit de la zona indicada o
+     * su desfase UTC, o {@link Long#MAX_VALUE} si no cambia ninguno de los dos.
+     */
+    private long nextChangeInZone(int zoneIndex, long epochSecond) {
+        ZoneOffsets zone = zones[zoneIndex];
+        int offsetSeconds = zone.offsetSecondsAt(epochSecond);
+        int minute = minuteOfWeek(epochSecond, offsetSeconds);
+        long[] bitmap = bitmaps[zoneIndex];
+        boolean set = isMinuteSet(zoneIndex, minute);
+
+        long bitChange = Long.MAX_VALUE;
+        int next = findDifferent(bitmap, minute + 1, MINUTES_PER_WEEK, set);
+        int minutesAhead = (next >= 0) ? next - minute : -1;
+        if (next < 0) {
+            next = findDifferent(bitmap, 0, minute, set);
+            minutesAhead = (next >= 0) ? next + MINUTES_PER_WEEK - minute : -1;
+        }
+        if (minutesAhead > 0) {
+            long minuteStart = epochSecond - Math.floorMod(epochSecond + offsetSeconds, 60L);
+            bitChange = minuteStart + minutesAhead * 60L;
+        }
+        return Math.min(bitChange, zone.nextTransitionAfter(epochSecond));
+    }
+
+    /**
+     * Primer minuto en [from, to) cuyo bit es distinto de {@code set}, o -1 si no hay ninguno.
+     */
+    static int findDifferent(long[] bitmap, int from, int to, boolean set) {
+        if (from >= to) {
+            return -1;
+        }
+        int wordIndex = from >>> 6;
+        int lastWord = (to - 1) >>> 6;
+        long word = (set ? ~bitmap[wordIndex] : bitmap[wordIndex]) & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int minute = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                return (minute < to) ? minute : -1;
+            }
+            if (++wordIndex > lastWord) {
+                return -1;
+            }
+            word = set ? ~bitmap[wordIndex] : bitmap[wordIndex];
+        }
+    }
+
+    int zoneCount() {
+        return zones.length;
+    }
+
+    ZoneOffsets zone(int index) {
+        return zones[index];
+    }
+
+    /**
+     * Copia del mapa de bits de la zona indicada; los llamadores no pueden modificar el original.
+     */
+    long[] bitmap(int index) {
+        return Arrays.copyOf(bitmaps[index], WORDS);
+    }
+
+    boolean isMinuteSet(int zoneIndex, int minuteOfWeek) {
+        return (bitmaps[zoneIndex][minuteOfWeek >>> 6] & (1L << minuteOfWeek)) != 0;
+    }
+
+    /**
+     * Minuto de la semana local (lunes 00:00 = 0) para un instante y un desfase UTC.
+     */
+    static int minuteOfWeek(long epochSecond, int offsetSeconds) {
+        long localSecond = epochSecond + offsetSeconds;
+        long epochDay = Math.floorDiv(localSecond, 86_400L);
+        // El 1970-01-01 fue jueves, que es el día 3 contando desde el lunes.
+        int dayIndex = (int) Math.floorMod(epochDay + 3, 7L);
+        int minuteOfDay = (int) (Math.floorMod(localSecond, 86_400L) / 60L);
+        return dayIndex * MINUTES_PER_DAY + minuteOfDay;
+    }
+
+    /**
+     * Primer minuto de la semana que cubre una regla que empieza a la hora dada.
+     * Si la hora tiene segundos se redondea al minuto siguiente para no abrir antes de tiempo.
+     */
+    static int startMinute(DayOfWeek day, LocalTime start) {
+        int minute = start.getHour() * 60 + start.getMinute();
+        if (start.getSecond() > 0 || start.getNano() > 0) {
+            minute++;
+        }
+        return dayOffset(day) + minute;
+    }
+
+    /**
+     * Minuto (exclusivo) en el que termina una regla. Una hora de fin de 23:59 o posterior
+     * se trata como el final del día para no dejar fuera el último minuto.
+     */
+    static int endMinuteExclusive(DayOfWeek day, LocalTime end) {
+        int minute = end.getHour() * 60 + end.getMinute();
+        if (minute >= MINUTES_PER_DAY - 1) {
+            minute = MINUTES_PER_DAY;
+        }
+        return dayOffset(day) + minute;
+    }
+
+    private static int dayOffset(DayOfWeek day) {
+        return (day.getValue() - 1) * MINUTES_PER_DAY;
+    }
+}
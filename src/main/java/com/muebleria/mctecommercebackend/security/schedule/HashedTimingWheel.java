@@ -0,0 +1,155 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Rueda de tiempo con cubetas por hash (estilo Netty) para miles de temporizadores con poca precisión.
+ * <p>
+ * Programar o cancelar es O(1) desde cualquier hilo; un único hilo avanza la rueda cada {@code tickMillis}
+ * y ejecuta las tareas vencidas de la cubeta actual. Las tareas deben ser breves: se ejecutan en ese hilo.
+ */
+final class HashedTimingWheel implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HashedTimingWheel.class);
+
+    /** Temporizador programado; se puede cancelar desde cualquier hilo. */
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timeout>[] buckets; // Solo las toca el hilo de la rueda
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final LongSupplier nanoClock;
+    private final Thread worker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+
+    HashedTimingWheel(String name, long tickMillis, int wheelSize) {
+        this(name, tickMillis, wheelSize, System::nanoTime, true);
+    }
+
+    /**
+     * Con {@code startWorker} falso no se arranca el hilo y la rueda solo avanza con {@link #advance()};
+     * junto con {@code nanoClock} permite probarla sin esperas reales.
+     */
+    @SuppressWarnings("unchecked")
+    HashedTimingWheel(String name, long tickMillis, int wheelSize, LongSupplier nanoClock, boolean startWorker) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("El tamaño de la rueda debe ser potencia de dos: " + wheelSize);
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mask = wheelSize - 1;
+        this.buckets = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        this.worker = startWorker ? new Thread(this::run, name) : null;
+        if (worker != null) {
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Programa una tarea para dentro de {@code delayMillis} (redondeado al siguiente tick).
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task, nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, delayMillis)));
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (running) {
+            long nextTickNanos = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = nextTickNanos - nanoClock.getAsLong();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            advance();
+        }
+    }
+
+    /**
+     * Avanza un tick: coloca los temporizadores pendientes en su cubeta y ejecuta los vencidos de la actual.
+     */
+    void advance() {
+        tick++;
+        transferPending();
+        expire(buckets[(int) (tick & mask)]);
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long deadlineTick = Math.max(tick, ceilDiv(timeout.deadlineNanos - startNanos, tickNanos));
+            timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+            buckets[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        Iterator<Timeout> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Error en una tarea de la rueda de tiempo: {}", e.getMessage(), e);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
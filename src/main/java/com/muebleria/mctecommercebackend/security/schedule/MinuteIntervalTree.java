@@ -0,0 +1,103 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Árbol de segmentos sobre los minutos de la semana ({@code [0, 10 080)}) que guarda intervalos
+ * identificados por un {@code long}.
+ * <p>
+ * Un intervalo se descompone en, como mucho, {@code 2·log₂(n)} nodos canónicos; para saber qué
+ * intervalos contienen un minuto basta recorrer el camino de la hoja a la raíz, así que tanto la
+ * inserción y el borrado como la consulta son logarítmicos (más el número de resultados).
+ * Los conjuntos de cada nodo se crean solo cuando hacen falta. No es seguro para hilos:
+ * el llamador sincroniza.
+ */
+final class MinuteIntervalTree {
+
+    // Primera potencia de dos que cubre los minutos de la semana.
+    private static final int LEAVES = Integer.highestOneBit(CompiledSchedule.MINUTES_PER_WEEK - 1) << 1;
+
+    private final Set<Long>[] nodes;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    MinuteIntervalTree() {
+        this.nodes = (Set<Long>[]) new Set[2 * LEAVES];
+    }
+
+    /**
+     * Añade el intervalo {@code [from, to)}. Un intervalo vacío no se añade.
+     */
+    void insert(int from, int to, long id) {
+        if (from >= to) {
+            return;
+        }
+        for (int l = from + LEAVES, r = to + LEAVES; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1) {
+                node(l++).add(id);
+            }
+            if ((r & 1) == 1) {
+                node(--r).add(id);
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Quita un intervalo añadido antes con los mismos límites.
+     */
+    void remove(int from, int to, long id) {
+        if (from >= to) {
+            return;
+        }
+        for (int l = from + LEAVES, r = to + LEAVES; l < r; l >>>= 1, r >>>= 1) {
+            if ((l & 1) == 1) {
+                discard(l++, id);
+            }
+            if ((r & 1) == 1) {
+                discard(--r, id);
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Entrega al consumidor el identificador de cada intervalo que contiene el minuto indicado.
+     */
+    void stab(int minuteOfWeek, LongConsumer consumer) {
+        for (int i = minuteOfWeek + LEAVES; i >= 1; i >>>= 1) {
+            Set<Long> ids = nodes[i];
+            if (ids != null) {
+                for (Long id : ids) {
+                    consumer.accept(id);
+                }
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private Set<Long> node(int index) {
+        Set<Long> ids = nodes[index];
+        if (ids == null) {
+            ids = new HashSet<>(4);
+            nodes[index] = ids;
+        }
+        return ids;
+    }
+
+    private void discard(int index, long id) {
+        Set<Long> ids = nodes[index];
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            nodes[index] = null;
+        }
+    }
+}
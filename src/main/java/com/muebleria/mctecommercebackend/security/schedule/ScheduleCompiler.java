@@ -0,0 +1,158 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserAccessRule;
+import com.muebleria.mctecommercebackend.repository.UserAccessRuleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Compila las {@link UserAccessRule} de un usuario a un {@link CompiledSchedule}.
+ * <p>
+ * Los resultados se indexan por una clave canónica de las reglas activas, de modo que un horario
+ * solo se vuelve a compilar cuando cambia alguna regla y los usuarios con el mismo turno comparten
+ * la misma instancia. Las zonas horarias inválidas se registran una vez al compilar y se ignoran,
+ * en lugar de lanzar y capturar una excepción en cada petición.
+ * <p>
+ * También convierte el horario al formato compacto que se guarda en la fila del usuario
+ * ({@link CompactSchedule}), de modo que cargar un principal no necesita leer sus reglas.
+ */
+@Component
+public class ScheduleCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleCompiler.class);
+
+    private static final Comparator<UserAccessRule> RULE_ORDER = Comparator
+            .comparing(UserAccessRule::getAccessTimezone, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(UserAccessRule::getDayOfWeek)
+            .thenComparing(UserAccessRule::getStartTime)
+            .thenComparing(UserAccessRule::getEndTime);
+
+    private final Cache<String, CompiledSchedule> compiled = Caffeine.newBuilder()
+            .maximumSize(5_000)
+            .build();
+
+    private final UserAccessRuleRepository ruleRepository;
+
+    public ScheduleCompiler(UserAccessRuleRepository ruleRepository) {
+        this.ruleRepository = ruleRepository;
+    }
+
+    /**
+     * Horario de un usuario: se decodifica de las columnas compactas si las tiene y, si no
+     * (horario con varias zonas horarias), se compila desde sus reglas.
+     */
+    public CompiledSchedule scheduleOf(User user) {
+        if (user.isScheduleCompact()) {
+            return decode(user.getScheduleTimezone(), user.getScheduleBitmap());
+        }
+        return compile(ruleRepository.findByUserId(user.getId()));
+    }
+
+    /**
+     * Calcula las columnas compactas a partir de todas las reglas del usuario (activas o no).
+     */
+    public CompactSchedule encode(Collection<UserAccessRule> rules) {
+        boolean assigned = rules != null && !rules.isEmpty();
+        CompiledSchedule schedule = compile(rules);
+        if (schedule.isEmpty()) {
+            return new CompactSchedule(null, null, assigned, true);
+        }
+        if (schedule.zoneCount() > 1) {
+            return new CompactSchedule(null, null, assigned, false);
+        }
+        long[] words = schedule.bitmap(0);
+        byte[] bitmap = new byte[CompactSchedule.BITMAP_BYTES];
+        for (int i = 0; i < bitmap.length; i++) {
+            bitmap[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+        }
+        return new CompactSchedule(schedule.zone(0).getZoneId(), bitmap, assigned, true);
+    }
+
+    /**
+     * Reconstruye el horario desde las columnas compactas. Los horarios iguales comparten instancia.
+     */
+    public CompiledSchedule decode(String timezone, byte[] bitmap) {
+        if (timezone == null || bitmap == null || bitmap.length != CompactSchedule.BITMAP_BYTES) {
+            return CompiledSchedule.EMPTY;
+        }
+        String key = timezone + '#' + new String(bitmap, StandardCharsets.ISO_8859_1);
+        return compiled.get(key, k -> {
+            Optional<ZoneOffsets> zone = ZoneOffsets.of(timezone);
+            if (zone.isEmpty()) {
+                logger.error("El horario compacto tiene una zona horaria inválida '{}' y se ignora.", timezone);
+                return CompiledSchedule.EMPTY;
+            }
+            long[] words = new long[CompiledSchedule.WORDS];
+            for (int i = 0; i < bitmap.length; i++) {
+                words[i >>> 3] |= (bitmap[i] & 0xFFL) << ((i & 7) << 3);
+            }
+            return new CompiledSchedule(new ZoneOffsets[]{zone.get()}, new long[][]{words});
+        });
+    }
+
+    public CompiledSchedule compile(Collection<UserAccessRule> rules) {
+        if (rules == null || rules.isEmpty()) {
+            return CompiledSchedule.EMPTY;
+        }
+        List<UserAccessRule> active = rules.stream()
+                .filter(UserAccessRule::isActive)
+                .sorted(RULE_ORDER)
+                .toList();
+        if (active.isEmpty()) {
+            return CompiledSchedule.EMPTY;
+        }
+        String key = active.stream()
+                .map(rule -> rule.getAccessTimezone() + ' ' + rule.getDayOfWeek() + ' ' + rule.getStartTime() + '-' + rule.getEndTime())
+                .collect(Collectors.joining("|"));
+        return compiled.get(key, k -> build(active));
+    }
+
+    private CompiledSchedule build(List<UserAccessRule> activeRules) {
+        Map<String, long[]> bitmapsByZone = new LinkedHashMap<>();
+        Map<String, ZoneOffsets> zonesById = new LinkedHashMap<>();
+
+        for (UserAccessRule rule : activeRules) {
+            Optional<ZoneOffsets> zone = ZoneOffsets.of(rule.getAccessTimezone());
+            if (zone.isEmpty()) {
+                logger.error("La regla de acceso ID {} tiene una zona horaria inválida '{}' y se ignora.",
+                        rule.getId(), rule.getAccessTimezone());
+                continue;
+            }
+            zonesById.putIfAbsent(rule.getAccessTimezone(), zone.get());
+            long[] bitmap = bitmapsByZone.computeIfAbsent(rule.getAccessTimezone(), z -> new long[CompiledSchedule.WORDS]);
+            setRange(bitmap,
+                    CompiledSchedule.startMinute(rule.getDayOfWeek(), rule.getStartTime()),
+                    CompiledSchedule.endMinuteExclusive(rule.getDayOfWeek(), rule.getEndTime()));
+        }
+
+        if (zonesById.isEmpty()) {
+            return CompiledSchedule.EMPTY;
+        }
+        return new CompiledSchedule(
+                zonesById.values().toArray(new ZoneOffsets[0]),
+                bitmapsByZone.values().toArray(new long[0][]));
+    }
+
+    /**
+     * Marca los minutos [from, to). Un rango vacío o invertido (fin antes del inicio)
+     * no marca nada, igual que la comparación original de horas.
+     */
+    static void setRange(long[] bitmap, int from, int to) {
+        for (int minute = from; minute < to; minute++) {
+            bitmap[minute >>> 6] |= 1L << minute;
+        }
+    }
+}
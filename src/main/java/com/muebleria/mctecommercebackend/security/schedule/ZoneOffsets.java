@@ -0,0 +1,110 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resuelve el desfase UTC de una zona horaria sin crear objetos en cada consulta.
+ * Las {@link ZoneRules} se obtienen una sola vez por zona y se comparten entre todos los horarios;
+ * el desfase vigente se guarda junto con el intervalo entre transiciones en el que es válido,
+ * por lo que solo se recalcula al cruzar un cambio de horario.
+ */
+public final class ZoneOffsets {
+
+    private static final Map<String, Optional<ZoneOffsets>> CACHE = new ConcurrentHashMap<>();
+
+    private final String zoneId;
+    private final ZoneRules rules;
+    private final boolean fixed;
+    private final int fixedOffsetSeconds;
+    private volatile OffsetWindow window;
+
+    private ZoneOffsets(String zoneId, ZoneRules rules) {
+        this.zoneId = zoneId;
+        this.rules = rules;
+        this.fixed = rules.isFixedOffset();
+        this.fixedOffsetSeconds = fixed ? rules.getOffset(Instant.EPOCH).getTotalSeconds() : 0;
+        this.window = new OffsetWindow(Long.MAX_VALUE, Long.MIN_VALUE, 0);
+    }
+
+    /**
+     * Devuelve la instancia compartida para la zona indicada, o vacío si el identificador no es válido.
+     */
+    public static Optional<ZoneOffsets> of(String zoneId) {
+        if (zoneId == null) {
+            return Optional.empty();
+        }
+        return CACHE.computeIfAbsent(zoneId, id -> {
+            try {
+                return Optional.of(new ZoneOffsets(id, ZoneId.of(id).getRules()));
+            } catch (DateTimeException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    public static boolean isValid(String zoneId) {
+        return of(zoneId).isPresent();
+    }
+
+    public String getZoneId() {
+        return zoneId;
+    }
+
+    public ZoneRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Desfase en segundos respecto de UTC vigente en el instante indicado.
+     */
+    public int offsetSecondsAt(long epochSecond) {
+        if (fixed) {
+            return fixedOffsetSeconds;
+        }
+        OffsetWindow current = window;
+        if (epochSecond >= current.fromEpochSecond && epochSecond < current.untilEpochSecond) {
+            return current.offsetSeconds;
+        }
+        current = computeWindow(epochSecond);
+        window = current;
+        return current.offsetSeconds;
+    }
+
+    /**
+     * Primer instante posterior al indicado en el que cambia el desfase, o {@link Long#MAX_VALUE} si no
+     * hay más cambios.
+     */
+    public long nextTransitionAfter(long epochSecond) {
+        if (fixed) {
+            return Long.MAX_VALUE;
+        }
+        OffsetWindow current = window;
+        if (epochSecond < current.fromEpochSecond || epochSecond >= current.untilEpochSecond) {
+            current = computeWindow(epochSecond);
+            window = current;
+        }
+        return current.untilEpochSecond;
+    }
+
+    private OffsetWindow computeWindow(long epochSecond) {
+        Instant instant = Instant.ofEpochSecond(epochSecond);
+        int offset = rules.getOffset(instant).getTotalSeconds();
+        // previousTransition es estricto, así que se consulta desde el segundo siguiente
+        // para que una transición exactamente en este instante cuente como inicio del intervalo.
+        ZoneOffsetTransition previous = rules.previousTransition(instant.plusSeconds(1));
+        ZoneOffsetTransition next = rules.nextTransition(instant);
+        long from = (previous != null) ? previous.toEpochSecond() : Long.MIN_VALUE;
+        long until = (next != null) ? next.toEpochSecond() : Long.MAX_VALUE;
+        return new OffsetWindow(from, until, offset);
+    }
+
+    private record OffsetWindow(long fromEpochSecond, long untilEpochSecond, int offsetSeconds) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.muebleria.mctecommercebackend.security.user;
+
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+/**
+ * Usuario que hace la petición actual, resuelto una sola vez por petición.
+ * <p>
+ * {@code AuthTokenFilter} lo rellena al autenticar, con los datos del principal (claims del token
+ * o copia en caché), así que los servicios leen el ID, el rol y la sucursal sin consultar la base
+ * de datos. Cuando hace falta el usuario como clave foránea de auditoría, {@link #reference()}
+ * devuelve una referencia gestionada sin cargar la fila. Si la petición se autenticó por otra vía,
+ * los datos se toman del {@code SecurityContext} la primera vez que se piden.
+ */
+@Component
+@RequestScope
+public class CurrentActor {
+
+    private final UserRepository userRepository;
+
+    private Long id;
+    private String username;
+    private Role role;
+    private Long managedBranchId;
+
+    public CurrentActor(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Fija el usuario de la petición a partir del principal ya autenticado.
+     */
+    public void populate(UserDetailsImpl principal) {
+        this.id = principal.getId();
+        this.username = principal.getUsername();
+        this.role = roleOf(principal);
+        this.managedBranchId = principal.getManagedBranchId();
+    }
+
+    public Long getId() {
+        resolve();
+        return id;
+    }
+
+    public String getUsername() {
+        resolve();
+        return username;
+    }
+
+    public Role getRole() {
+        resolve();
+        return role;
+    }
+
+    /** Sucursal que gestiona el usuario, o {@code null} si no tiene. */
+    public Long getManagedBranchId() {
+        resolve();
+        return managedBranchId;
+    }
+
+    public boolean hasRole(Role expected) {
+        return getRole() == expected;
+    }
+
+    /**
+     * Referencia gestionada al usuario actual para asignarla como creado/modificado/eliminado por.
+     * No ejecuta ninguna consulta; la fila solo se carga si se lee algo distinto del ID.
+     */
+    public User reference() {
+        return userRepository.getReferenceById(getId());
+    }
+
+    private void resolve() {
+        if (id != null) {
+            return;
+        }
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof UserDetailsImpl principal)) {
+            throw new IllegalStateException("Usuario actual no identificado.");
+        }
+        populate(principal);
+    }
+
+    private static Role roleOf(UserDetailsImpl principal) {
+        for (GrantedAuthority authority : principal.getAuthorities()) {
+            Role role = Role.fromString(authority.getAuthority());
+            if (role != null) {
+                return role;
+            }
+        }
+        throw new IllegalStateException("Usuario actual sin rol.");
+    }
+}
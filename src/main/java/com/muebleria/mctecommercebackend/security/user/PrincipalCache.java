@@ -0,0 +1,144 @@
+package com.muebleria.mctecommercebackend.security.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import com.muebleria.mctecommercebackend.security.schedule.ScheduleCompiler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché en memoria, acotada y con expiración, de {@link UserPrincipalSnapshot} indexada por ID de usuario.
+ * La usan {@code AuthTokenFilter} y {@code TimeAccessFilter} para que, en estado estable,
+ * la cadena de filtros no ejecute ninguna consulta SQL.
+ * Las escrituras sobre usuarios y reglas la invalidan mediante {@link UserChangedEvent}.
+ */
+@Component
+public class PrincipalCache {
+
+    private final UserRepository userRepository;
+    private final ScheduleCompiler scheduleCompiler;
+    private final Cache<Long, UserPrincipalSnapshot> snapshots;
+    private final Cache<String, Long> idsByUsername;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Se incrementa en cada invalidación; evita guardar una copia leída antes de un commit concurrente.
+    private final AtomicLong generation = new AtomicLong();
+
+    public PrincipalCache(UserRepository userRepository,
+                          ScheduleCompiler scheduleCompiler,
+                          MeterRegistry meterRegistry,
+                          @Value("${muebleria.app.principalCacheTtlMs:300000}") long ttlMs,
+                          @Value("${muebleria.app.principalCacheMaxSize:10000}") long maxSize) {
+        this.userRepository = userRepository;
+        this.scheduleCompiler = scheduleCompiler;
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .evictionListener((Long id, UserPrincipalSnapshot snapshot, RemovalCause cause) -> evictions.increment())
+                .build();
+        this.idsByUsername = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+
+        FunctionCounter.builder("principal.cache.requests", hits, LongAdder::doubleValue)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("principal.cache.requests", misses, LongAdder::doubleValue)
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("principal.cache.evictions", evictions, LongAdder::doubleValue)
+                .register(meterRegistry);
+        Gauge.builder("principal.cache.size", snapshots, Cache::estimatedSize)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Obtiene la copia del usuario por su ID, cargándola de la base de datos si no está en caché.
+     */
+    public Optional<UserPrincipalSnapshot> getById(Long userId) {
+        UserPrincipalSnapshot cached = snapshots.getIfPresent(userId);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        return userRepository.findPrincipalById(userId).map(user -> store(toSnapshot(user), loadGeneration));
+    }
+
+    /**
+     * Obtiene la copia del usuario por su nombre de usuario (el sujeto del JWT).
+     */
+    public Optional<UserPrincipalSnapshot> getByUsername(String username) {
+        Long userId = idsByUsername.getIfPresent(username);
+        if (userId != null) {
+            UserPrincipalSnapshot cached = snapshots.getIfPresent(userId);
+            if (cached != null && cached.getUsername().equals(username)) {
+                hits.increment();
+                return Optional.of(cached);
+            }
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        return userRepository.findPrincipalByUsername(username).map(user -> store(toSnapshot(user), loadGeneration));
+    }
+
+    /**
+     * Elimina de la caché la copia de un usuario. Se debe llamar después de cualquier escritura
+     * que afecte a sus datos de seguridad.
+     */
+    public void invalidate(Long userId) {
+        generation.incrementAndGet();
+        UserPrincipalSnapshot removed = snapshots.asMap().remove(userId);
+        if (removed != null) {
+            idsByUsername.invalidate(removed.getUsername());
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        snapshots.invalidateAll();
+        idsByUsername.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), snapshots.estimatedSize());
+    }
+
+    private UserPrincipalSnapshot toSnapshot(User user) {
+        return UserPrincipalSnapshot.from(user, scheduleCompiler.scheduleOf(user));
+    }
+
+    private UserPrincipalSnapshot store(UserPrincipalSnapshot snapshot, long loadGeneration) {
+        if (generation.get() != loadGeneration) {
+            // Hubo una invalidación mientras se leía: se devuelve la copia pero no se guarda.
+            return snapshot;
+        }
+        snapshots.put(snapshot.getId(), snapshot);
+        idsByUsername.put(snapshot.getUsername(), snapshot.getId());
+        return snapshot;
+    }
+
+    public record Stats(long hits, long misses, long evictions, long size) {
+    }
+}
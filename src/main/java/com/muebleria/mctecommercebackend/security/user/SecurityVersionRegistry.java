@@ -0,0 +1,55 @@
+package com.muebleria.mctecommercebackend.security.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+
+/**
+ * Tabla en memoria de la versión de seguridad vigente de cada usuario.
+ * <p>
+ * Un JWT lleva la versión con la que fue emitido; si no coincide con la de esta tabla, el token ya no es válido.
+ * En el nodo que hace el cambio la entrada se invalida tras el commit; en el resto de nodos
+ * caduca tras {@code muebleria.app.securityVersionTtlMs}, que acota el retraso de la revocación.
+ */
+@Component
+public class SecurityVersionRegistry {
+
+    // Marca de "usuario inexistente" para no consultar la BD en cada petición con un ID que no existe.
+    private static final long MISSING = -1L;
+
+    private final UserRepository userRepository;
+    private final Cache<Long, Long> versions;
+
+    public SecurityVersionRegistry(UserRepository userRepository,
+                                   @Value("${muebleria.app.securityVersionTtlMs:60000}") long ttlMs,
+                                   @Value("${muebleria.app.principalCacheMaxSize:10000}") long maxSize) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * Indica si la versión con la que se emitió un token sigue siendo la vigente para el usuario.
+     */
+    public boolean isCurrent(Long userId, long tokenVersion) {
+        long current = versions.get(userId, id -> userRepository.findSecurityVersionById(id).orElse(MISSING));
+        return current != MISSING && current == tokenVersion;
+    }
+
+    public void invalidate(Long userId) {
+        versions.invalidate(userId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getUserId());
+    }
+}
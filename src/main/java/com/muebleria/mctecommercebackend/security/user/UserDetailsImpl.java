@@ -1,6 +1,7 @@
 package com.muebleria.mctecommercebackend.security.user;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.muebleria.mctecommercebackend.model.Role;
 import com.muebleria.mctecommercebackend.model.User;
 import lombok.Data;
 import org.springframework.security.core.GrantedAuthority;
@@ -26,10 +27,14 @@ public class UserDetailsImpl implements UserDetails {
     private String firstName;
     private String lastName;
 
+    // Versión de seguridad con la que se emite el JWT (ver SecurityVersionRegistry)
+    private long securityVersion;
+
     // CAMBIO: El constructor ahora acepta Long para el id
     public UserDetailsImpl(Long id, String username, String password,
                            Collection<? extends GrantedAuthority> authorities,
-                           boolean isEnabled, Long managedBranchId, String firstName, String lastName) {
+                           boolean isEnabled, Long managedBranchId, String firstName, String lastName,
+                           long securityVersion) {
         this.id = id;
         this.username = username;
         this.password = password;
@@ -38,6 +43,7 @@ public class UserDetailsImpl implements UserDetails {
         this.managedBranchId = managedBranchId;
         this.firstName = firstName;
         this.lastName = lastName;
+        this.securityVersion = securityVersion;
     }
 
     public static UserDetailsImpl build(User user) {
@@ -54,7 +60,49 @@ public class UserDetailsImpl implements UserDetails {
                 user.isActive(),
                 branchId,
                 user.getProfile().getFirstName(),
-                user.getProfile().getLastName()
+                user.getProfile().getLastName(),
+                user.getSecurityVersion()
+        );
+    }
+
+    /**
+     * Construye el principal a partir de la copia en caché, sin contraseña:
+     * solo se usa para autenticar peticiones con JWT, nunca para el login.
+     */
+    public static UserDetailsImpl build(UserPrincipalSnapshot snapshot) {
+        GrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + snapshot.getRole());
+
+        return new UserDetailsImpl(
+                snapshot.getId(),
+                snapshot.getUsername(),
+                null,
+                Collections.singletonList(authority),
+                snapshot.isActive(),
+                snapshot.getManagedBranchId(),
+                snapshot.getFirstName(),
+                snapshot.getLastName(),
+                snapshot.getSecurityVersion()
+        );
+    }
+
+    /**
+     * Construye el principal solo con los claims de un JWT ya verificado, sin consultar la base de datos.
+     * El nombre y apellido no viajan en el token y quedan vacíos.
+     */
+    public static UserDetailsImpl build(Long id, String username, Role role, Long managedBranchId,
+                                        boolean active, long securityVersion) {
+        GrantedAuthority authority = new SimpleGrantedAuthority("ROLE_" + role);
+
+        return new UserDetailsImpl(
+                id,
+                username,
+                null,
+                Collections.singletonList(authority),
+                active,
+                managedBranchId,
+                null,
+                null,
+                securityVersion
         );
     }
 
@@ -1,27 +1,25 @@
 package com.muebleria.mctecommercebackend.security.user;
 
 import com.muebleria.mctecommercebackend.model.User;
-import com.muebleria.mctecommercebackend.model.UserAccessRule;
 import com.muebleria.mctecommercebackend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.LockedException;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.DayOfWeek;
-import java.time.LocalTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private PrincipalCache principalCache; // Comparte el horario compilado con TimeAccessFilter
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
@@ -31,22 +29,16 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         // Verificación de Horario en el Login
         // Si el usuario NO puede omitir las reglas, verificamos su horario.
         if (!user.isBypassAccessRules()) {
-            boolean isAllowed = false;
+            UserPrincipalSnapshot principal = principalCache.getById(user.getId())
+                    .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado con nombre: " + username));
+
             // Si no tiene reglas asignadas, no puede entrar.
-            if (user.getAccessRules() == null || user.getAccessRules().isEmpty()) {
+            if (!principal.isAccessRulesAssigned()) {
                 throw new LockedException("Acceso denegado: No tienes un horario de trabajo asignado.");
             }
 
-            // Iteramos sobre sus reglas para ver si alguna permite el acceso ahora mismo.
-            for (UserAccessRule rule : user.getAccessRules()) {
-                if (rule.isActive() && isTimeAllowed(rule)) {
-                    isAllowed = true;
-                    break; // Si encontramos una regla válida, rompemos el bucle.
-                }
-            }
-
-            // Si después de revisar todas las reglas, ninguna permitió el acceso...
-            if (!isAllowed) {
+            // El horario compilado responde con una sola comprobación de bit.
+            if (!principal.isAccessAllowedNow()) {
                 // Lanzamos una excepción que Spring Security interpreta como "cuenta bloqueada".
                 throw new LockedException("Acceso denegado: Estás fuera de tu horario de trabajo permitido.");
             }
@@ -56,23 +48,15 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     }
 
     /**
-     * Lógica auxiliar para verificar si la hora actual está dentro del rango de una regla.
-     * Extraída de TimeAccessFilter para reutilización.
+     * Lo invoca DaoAuthenticationProvider tras un login correcto cuando el hash guardado
+     * no usa el algoritmo o el coste vigentes; guarda el nuevo hash de la misma contraseña.
      */
-    private boolean isTimeAllowed(UserAccessRule rule) {
-        try {
-            ZoneId ruleZoneId = ZoneId.of(rule.getAccessTimezone());
-            ZonedDateTime nowInRuleZone = ZonedDateTime.now(ruleZoneId);
-            DayOfWeek currentDayInZone = nowInRuleZone.getDayOfWeek();
-            LocalTime currentTimeInZone = nowInRuleZone.toLocalTime();
-
-            if (rule.getDayOfWeek() == currentDayInZone) {
-                return !currentTimeInZone.isBefore(rule.getStartTime()) && !currentTimeInZone.isAfter(rule.getEndTime());
-            }
-        } catch (Exception e) {
-            // Log del error sería apropiado aquí en un entorno real.
-            return false;
-        }
-        return false;
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        UserDetailsImpl userDetails = (UserDetailsImpl) user;
+        userRepository.updatePasswordHash(userDetails.getId(), newPassword);
+        userDetails.setPassword(newPassword);
+        return userDetails;
     }
-}
\ No newline at end of file
+}
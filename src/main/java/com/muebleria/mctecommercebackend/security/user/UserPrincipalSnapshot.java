@@ -0,0 +1,67 @@
+package com.muebleria.mctecommercebackend.security.user;
+
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.security.schedule.CompiledSchedule;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Copia inmutable de los datos de seguridad de un usuario que necesita la cadena de filtros.
+ * Se construye una sola vez a partir de la entidad y se guarda en {@link PrincipalCache},
+ * de modo que las peticiones autenticadas no vuelven a consultar la base de datos.
+ */
+@Getter
+@AllArgsConstructor
+public final class UserPrincipalSnapshot {
+
+    private final Long id;
+    private final String username;
+    private final Role role;
+    private final Long managedBranchId;
+    private final boolean active;
+    private final boolean bypassAccessRules;
+    private final Instant passwordChangedAt;
+    private final long securityVersion;
+    private final String firstName;
+    private final String lastName;
+    private final boolean accessRulesAssigned;
+    private final CompiledSchedule schedule;
+
+    /**
+     * Construye la copia a partir de una entidad con su perfil y sucursal ya cargados.
+     * El horario llega ya compilado por {@code ScheduleCompiler}.
+     */
+    public static UserPrincipalSnapshot from(User user, CompiledSchedule schedule) {
+        Long branchId = (user.getManagedBranch() != null) ? user.getManagedBranch().getId() : null;
+        Instant passwordChangedAt = (user.getPasswordChangedAt() != null)
+                ? user.getPasswordChangedAt().atZone(ZoneId.systemDefault()).toInstant()
+                : null;
+
+        return new UserPrincipalSnapshot(
+                user.getId(),
+                user.getUsername(),
+                user.getRole(),
+                branchId,
+                user.isActive(),
+                user.isBypassAccessRules(),
+                passwordChangedAt,
+                user.getSecurityVersion(),
+                user.getProfile() != null ? user.getProfile().getFirstName() : null,
+                user.getProfile() != null ? user.getProfile().getLastName() : null,
+                user.isAccessRulesAssigned(),
+                schedule
+        );
+    }
+
+    /**
+     * Indica si el usuario puede acceder en este momento según su horario
+     * (o siempre, si tiene permiso para omitir las reglas de acceso).
+     */
+    public boolean isAccessAllowedNow() {
+        return bypassAccessRules || schedule.isAllowedNow();
+    }
+}
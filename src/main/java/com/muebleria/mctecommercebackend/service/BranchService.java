@@ -1,15 +1,21 @@
 package com.muebleria.mctecommercebackend.service;
 
 import com.muebleria.mctecommercebackend.dto.BranchDTO;
+import com.muebleria.mctecommercebackend.dto.BranchDirectoryDTO;
 import com.muebleria.mctecommercebackend.dto.BranchListDTO;
-import com.muebleria.mctecommercebackend.dto.BranchSummaryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchRosterEntryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchSummarySnapshot;
 import com.muebleria.mctecommercebackend.dto.BranchUpdateDTO;
+import com.muebleria.mctecommercebackend.dto.CursorPageDTO;
+import com.muebleria.mctecommercebackend.model.Role;
 import com.muebleria.mctecommercebackend.model.UserStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 public interface BranchService {
 
@@ -17,9 +23,38 @@ public interface BranchService {
 
     Optional<BranchDTO> findById(Long id);
 
-    Page<BranchListDTO> findAll(Pageable pageable, UserStatus status, String search);
+    /**
+     * Lista paginada de sucursales. El total se guarda unos segundos por combinación de filtros y, con
+     * {@code approximate}, se cuenta solo hasta {@code muebleria.app.listApproximateCountCap}.
+     */
+    Page<BranchListDTO> findAll(Pageable pageable, UserStatus status, String search, boolean approximate);
 
-    List<BranchSummaryDTO> findAllSummaries();
+    /**
+     * Igual que {@link #findAll} pero paginado por clave (nombre e ID) en lugar de OFFSET,
+     * y sin contar el total. {@code cursor} vacío o nulo empieza desde el principio.
+     */
+    CursorPageDTO<BranchListDTO> findAllByCursor(String cursor, int size, UserStatus status, String search);
+
+    /**
+     * Directorio de sucursales resuelto en memoria, sin consultar la base de datos: búsqueda por
+     * palabras, filtros exactos de estado y ciudad y recuentos por estado y ciudad de los resultados.
+     */
+    BranchDirectoryDTO searchDirectory(String query, String state, String city, UserStatus status, int page, int size);
+
+    /**
+     * Lista resumida de sucursales activas ya serializada, con su versión y ETag. Se sirve desde memoria
+     * y solo cambia cuando se confirma la creación, modificación, eliminación o restauración de una sucursal.
+     */
+    BranchSummarySnapshot getSummarySnapshot();
+
+    /**
+     * Personal de la sucursal (vendedores, choferes y agentes) que puede acceder en el instante dado
+     * según sus reglas de acceso.
+     *
+     * @param roles Roles a incluir; vacío o nulo incluye todos los del personal de sucursal.
+     * @param at    Instante de la consulta; nulo significa ahora.
+     */
+    List<BranchRosterEntryDTO> findAllowedRoster(Long branchId, Set<Role> roles, Instant at);
 
     BranchDTO updateBranch(Long id, BranchUpdateDTO branchUpdateDTO);
 
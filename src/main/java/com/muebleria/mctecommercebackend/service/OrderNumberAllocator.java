@@ -0,0 +1,14 @@
+package com.muebleria.mctecommercebackend.service;
+
+public interface OrderNumberAllocator {
+
+    /**
+     * Siguiente número de pedido de la sucursal: su prefijo seguido del número de secuencia con ceros
+     * a la izquierda. Un número nunca se entrega dos veces, ni siquiera tras un reinicio.
+     * <p>
+     * En las sucursales con secuencia estricta ({@code muebleria.app.orderNumberGaplessBranches})
+     * la numeración no tiene huecos: el número se reserva en la transacción del llamador, que debe
+     * existir, y se libera si esta se revierte. En el resto se reservan bloques y puede haber huecos.
+     */
+    String nextOrderNumber(Long branchId);
+}
@@ -0,0 +1,27 @@
+package com.muebleria.mctecommercebackend.service;
+
+import com.muebleria.mctecommercebackend.dto.JwtResponse;
+
+public interface RefreshTokenService {
+
+    /**
+     * Emite el primer token de refresco de una nueva sesión (familia) tras un login correcto.
+     * @param userId El ID del usuario autenticado.
+     * @return El token de refresco en claro; solo se guarda su hash.
+     */
+    String createRefreshToken(Long userId);
+
+    /**
+     * Canjea un token de refresco por un nuevo JWT de acceso y un nuevo token de refresco.
+     * El token presentado queda revocado; si ya lo estaba, se revoca toda su familia.
+     * @param refreshToken El token de refresco en claro.
+     * @return La respuesta con el nuevo JWT y el nuevo token de refresco.
+     */
+    JwtResponse refresh(String refreshToken);
+
+    /**
+     * Revoca la sesión (familia) a la que pertenece un token de refresco. Un token desconocido se ignora.
+     * @param refreshToken El token de refresco en claro.
+     */
+    void revoke(String refreshToken);
+}
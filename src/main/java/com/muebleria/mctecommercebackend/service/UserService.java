@@ -5,6 +5,9 @@ import com.muebleria.mctecommercebackend.model.UserStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserService {
@@ -19,7 +22,30 @@ public interface UserService {
 
     Optional<UserDTO> findByUsername(String username);
 
-    Page<UserSummaryDTO> findAll(Pageable pageable, UserStatus status, String search, String role, Long branchId);
+    /**
+     * Lista paginada de usuarios con filtros. Si se indica {@code availableDay}, solo se incluyen los usuarios
+     * cuyo horario cubre completa la franja {@code [availableFrom, availableTo)} de ese día (por defecto, el día
+     * entero) o que omiten las reglas de acceso; el filtro se resuelve en SQL sobre el horario compacto.
+     * <p>
+     * El total se guarda unos segundos por combinación de filtros. Con {@code approximate} se cuenta solo
+     * hasta un límite ({@code muebleria.app.listApproximateCountCap}); por encima, el total es ese límite más uno.
+     */
+    Page<UserSummaryDTO> findAll(Pageable pageable, UserStatus status, String search, String role, Long branchId,
+                                 DayOfWeek availableDay, LocalTime availableFrom, LocalTime availableTo,
+                                 boolean approximate);
+
+    /**
+     * Igual que {@link #findAll} pero paginado por clave (nombre de usuario e ID) en lugar de OFFSET,
+     * y sin contar el total. {@code cursor} vacío o nulo empieza desde el principio.
+     */
+    CursorPageDTO<UserSummaryDTO> findAllByCursor(String cursor, int size, UserStatus status, String search, String role,
+                                                  Long branchId, DayOfWeek availableDay, LocalTime availableFrom, LocalTime availableTo);
+
+    /**
+     * Autocompletado de usuarios desde el índice en memoria, sin consultar la base de datos.
+     * Aplica la misma jerarquía de roles que el listado y devuelve como mucho 20 sugerencias.
+     */
+    List<UserSuggestionDTO> suggest(String query, int limit);
 
     void deleteById(Long id);
 
@@ -37,4 +63,10 @@ public interface UserService {
 
     UserDTO restoreUserById(Long id);
 
+    /**
+     * Cierra todas las sesiones de un usuario: invalida sus JWT emitidos y revoca sus tokens de refresco.
+     * @param id El ID del usuario.
+     */
+    void revokeAllSessions(Long id);
+
 }
\ No newline at end of file
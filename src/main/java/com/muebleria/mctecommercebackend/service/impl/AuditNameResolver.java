@@ -0,0 +1,90 @@
+package com.muebleria.mctecommercebackend.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.repository.AuditNameView;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resuelve el nombre de usuario y el nombre completo de los usuarios que aparecen en los campos de
+ * auditoría (creado, modificado y eliminado por) sin inicializar esas relaciones ni sus perfiles.
+ * <p>
+ * Los nombres se guardan en una caché acotada; los que faltan se cargan todos juntos con un
+ * {@code IN (...)}. Un cambio en el usuario o su perfil ({@link UserChangedEvent}) invalida su entrada.
+ */
+@Component
+public class AuditNameResolver {
+
+    /** Nombre de auditoría de un usuario. {@code fullName} es nulo si el usuario no tiene perfil. */
+    public record AuditName(Long id, String username, String fullName) {
+    }
+
+    private final UserRepository userRepository;
+    private final Cache<Long, AuditName> names;
+
+    public AuditNameResolver(UserRepository userRepository,
+                             @Value("${muebleria.app.auditNameCacheMaxSize:10000}") long maxSize,
+                             @Value("${muebleria.app.auditNameCacheTtlMs:600000}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.names = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * Nombres de los usuarios indicados (se ignoran los nulos), con una sola consulta para los que
+     * no están en caché. Los IDs que no existen no aparecen en el resultado.
+     */
+    public Map<Long, AuditName> resolveAll(Collection<Long> userIds) {
+        Set<Long> ids = new LinkedHashSet<>(userIds);
+        ids.remove(null);
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return names.getAll(ids, this::load);
+    }
+
+    /**
+     * Nombres de los usuarios referenciados por las relaciones indicadas. Solo se lee el ID de cada
+     * relación, que Hibernate conoce sin inicializar el proxy.
+     */
+    public Map<Long, AuditName> resolveUsers(User... users) {
+        List<Long> ids = new ArrayList<>(users.length);
+        for (User user : users) {
+            if (user != null) {
+                ids.add(user.getId());
+            }
+        }
+        return resolveAll(ids);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        names.invalidate(event.getUserId());
+    }
+
+    private Map<Long, AuditName> load(Set<? extends Long> ids) {
+        Map<Long, AuditName> loaded = new HashMap<>();
+        for (AuditNameView view : userRepository.findAuditNames(List.copyOf(ids))) {
+            // Nombre y apellidos son obligatorios en el perfil: si falta el nombre es que no hay perfil.
+            String fullName = (view.firstName() != null) ? view.firstName() + " " + view.lastName() : null;
+            loaded.put(view.id(), new AuditName(view.id(), view.username(), fullName));
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,304 @@
+package com.muebleria.mctecommercebackend.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.muebleria.mctecommercebackend.dto.BranchDirectoryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchListDTO;
+import com.muebleria.mctecommercebackend.dto.BranchSummaryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchSummarySnapshot;
+import com.muebleria.mctecommercebackend.event.BranchChangedEvent;
+import com.muebleria.mctecommercebackend.model.Branch;
+import com.muebleria.mctecommercebackend.repository.BranchRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Directorio de sucursales en memoria con búsqueda por palabras y recuentos por estado y ciudad.
+ * <p>
+ * Las lecturas nunca consultan MySQL: trabajan sobre una instantánea inmutable que se sustituye
+ * entera en cada cambio. Al crear, modificar, eliminar o restaurar una sucursal
+ * ({@link BranchChangedEvent}) solo se relee esa sucursal y se deriva la instantánea nueva a partir
+ * de la anterior; los recuentos sin filtros quedan precalculados en ella. Como hay pocas sucursales,
+ * derivar los índices secundarios cuesta menos que mantenerlos pieza a pieza.
+ * <p>
+ * La instantánea lleva también la lista resumida de sucursales activas ya serializada a JSON, con
+ * una versión que solo avanza cuando esa lista cambia y un ETag derivado de ella, para que
+ * {@code /api/branches/summary} responda sin serializar nada y con 304 si el cliente ya la tiene.
+ * <p>
+ * Los eventos solo llegan al nodo que confirmó el cambio. Con varios nodos se puede activar una
+ * recarga completa periódica ({@code muebleria.app.branchDirectoryRefreshCron}) para recoger los
+ * cambios hechos en los demás; está desactivada por defecto, de modo que la versión y el ETag solo
+ * cambian al confirmarse un cambio en este nodo.
+ */
+@Component
+public class BranchDirectoryIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(BranchDirectoryIndex.class);
+
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private record Entry(Long id, String name, String neighborhood, String city, String state, boolean deleted,
+                         String sortKey, String stateKey, String cityKey, Set<String> words) {
+    }
+
+    /** Facetas de una vista: valor mostrado por clave normalizada y número de sucursales. */
+    private record Facets(Map<String, Long> states, Map<String, Long> cities) {
+    }
+
+    private record Snapshot(Map<Long, Entry> byId, List<Entry> active, List<Entry> deleted,
+                            TreeMap<String, Set<Long>> words, Facets activeFacets, Facets deletedFacets,
+                            BranchSummarySnapshot summaries) {
+    }
+
+    private final BranchRepository branchRepository;
+    private final ObjectMapper objectMapper;
+
+    // Los lectores nunca se bloquean; las escrituras (ya serializadas por synchronized) sustituyen la referencia.
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    public BranchDirectoryIndex(BranchRepository branchRepository, ObjectMapper objectMapper) {
+        this.branchRepository = branchRepository;
+        this.objectMapper = objectMapper;
+        this.snapshot.set(build(Map.of(), null));
+    }
+
+    @PostConstruct
+    void init() {
+        rebuild();
+    }
+
+    /**
+     * Vuelve a cargar todas las sucursales, eliminadas incluidas. Además de al arrancar, solo se
+     * ejecuta periódicamente si se configura {@code muebleria.app.branchDirectoryRefreshCron}.
+     */
+    @Scheduled(cron = "${muebleria.app.branchDirectoryRefreshCron:-}")
+    public synchronized void rebuild() {
+        Map<Long, Entry> entries = new HashMap<>();
+        for (Branch branch : branchRepository.findAllIncludingDeleted()) {
+            entries.put(branch.getId(), toEntry(branch));
+        }
+        snapshot.set(build(entries, snapshot.get().summaries()));
+        logger.debug("Directorio de sucursales reconstruido: {} sucursales.", entries.size());
+    }
+
+    /**
+     * Relee solo la sucursal modificada, después del commit.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onBranchChanged(BranchChangedEvent event) {
+        Optional<Branch> branch = branchRepository.findByIdIncludingDeleted(event.getBranchId());
+        Snapshot previous = snapshot.get();
+        Map<Long, Entry> entries = new HashMap<>(previous.byId());
+        entries.remove(event.getBranchId());
+        branch.ifPresent(b -> entries.put(b.getId(), toEntry(b)));
+        snapshot.set(build(entries, previous.summaries()));
+    }
+
+    /**
+     * Lista resumida de sucursales activas (ID y nombre) tal como está en la instantánea actual.
+     */
+    public BranchSummarySnapshot summaries() {
+        return snapshot.get().summaries();
+    }
+
+    /**
+     * Busca en el directorio. Cada palabra de {@code query} debe ser prefijo de alguna palabra del
+     * nombre, la colonia, la ciudad o el estado. Las facetas de estados ignoran el filtro de estado
+     * y las de ciudades el de ciudad, para que el usuario vea a qué puede cambiar cada filtro.
+     */
+    public BranchDirectoryDTO search(String query, String state, String city, boolean deleted, int page, int size) {
+        Snapshot current = snapshot.get();
+        List<Entry> scope = deleted ? current.deleted() : current.active();
+        String stateKey = blankToNull(UserSearchIndex.normalize(state).trim());
+        String cityKey = blankToNull(UserSearchIndex.normalize(city).trim());
+
+        Set<Long> matching = matchingIds(current, query);
+        Facets facets;
+        List<Entry> hits = new ArrayList<>();
+        if (matching == null && stateKey == null && cityKey == null) {
+            hits = scope;
+            facets = deleted ? current.deletedFacets() : current.activeFacets();
+        } else {
+            List<Entry> byQuery = new ArrayList<>();
+            for (Entry entry : scope) {
+                if (matching == null || matching.contains(entry.id())) {
+                    byQuery.add(entry);
+                }
+            }
+            List<Entry> forStateFacets = new ArrayList<>();
+            List<Entry> forCityFacets = new ArrayList<>();
+            for (Entry entry : byQuery) {
+                boolean stateMatches = stateKey == null || stateKey.equals(entry.stateKey());
+                boolean cityMatches = cityKey == null || cityKey.equals(entry.cityKey());
+                if (cityMatches) {
+                    forStateFacets.add(entry);
+                }
+                if (stateMatches) {
+                    forCityFacets.add(entry);
+                }
+                if (stateMatches && cityMatches) {
+                    hits.add(entry);
+                }
+            }
+            facets = new Facets(count(forStateFacets, Entry::stateKey, Entry::state),
+                    count(forCityFacets, Entry::cityKey, Entry::city));
+        }
+
+        int from = (int) Math.min((long) page * size, hits.size());
+        int to = Math.min(from + size, hits.size());
+        List<BranchListDTO> content = new ArrayList<>(to - from);
+        for (Entry entry : hits.subList(from, to)) {
+            content.add(toListItem(entry));
+        }
+        return new BranchDirectoryDTO(content, page, size, hits.size(), facets.states(), facets.cities());
+    }
+
+    /**
+     * IDs que contienen todas las palabras de la consulta como prefijo, o {@code null} si no hay consulta.
+     */
+    private static Set<Long> matchingIds(Snapshot current, String query) {
+        String normalized = UserSearchIndex.normalize(query).trim();
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        Set<Long> result = null;
+        for (String term : WORD_SEPARATORS.split(normalized)) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            Set<Long> forTerm = new HashSet<>();
+            // Todas las palabras que empiezan por el término quedan en el rango [término, término + U+FFFF).
+            for (Set<Long> ids : current.words().subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+                forTerm.addAll(ids);
+            }
+            if (result == null) {
+                result = forTerm;
+            } else {
+                result.retainAll(forTerm);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private Snapshot build(Map<Long, Entry> entries, BranchSummarySnapshot previousSummaries) {
+        Comparator<Entry> order = Comparator.comparing(Entry::sortKey).thenComparing(Entry::id);
+        List<Entry> active = new ArrayList<>();
+        List<Entry> deleted = new ArrayList<>();
+        TreeMap<String, Set<Long>> words = new TreeMap<>();
+        for (Entry entry : entries.values()) {
+            (entry.deleted() ? deleted : active).add(entry);
+            for (String word : entry.words()) {
+                words.computeIfAbsent(word, w -> new HashSet<>()).add(entry.id());
+            }
+        }
+        active.sort(order);
+        deleted.sort(order);
+        return new Snapshot(Map.copyOf(entries), List.copyOf(active), List.copyOf(deleted), words,
+                new Facets(count(active, Entry::stateKey, Entry::state), count(active, Entry::cityKey, Entry::city)),
+                new Facets(count(deleted, Entry::stateKey, Entry::state), count(deleted, Entry::cityKey, Entry::city)),
+                summaries(active, previousSummaries));
+    }
+
+    /**
+     * Serializa la lista resumida. Si sale idéntica a la anterior (por ejemplo, tras cambiar solo la
+     * dirección de una sucursal, o en la recarga periódica) se conserva la anterior con su versión,
+     * así los clientes no pierden su ETag.
+     */
+    private BranchSummarySnapshot summaries(List<Entry> active, BranchSummarySnapshot previous) {
+        List<BranchSummaryDTO> list = active.stream()
+                .sorted(Comparator.comparing(Entry::id))
+                .map(entry -> new BranchSummaryDTO(entry.id(), entry.name()))
+                .toList();
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(list);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar la lista de sucursales", e);
+        }
+        if (previous != null && Arrays.equals(previous.getJson(), json)) {
+            return previous;
+        }
+        long version = (previous == null) ? 1 : previous.getVersion() + 1;
+        // La versión es local a cada nodo; el CRC del contenido evita que dos nodos con la misma
+        // versión y distinto contenido compartan ETag.
+        CRC32 crc = new CRC32();
+        crc.update(json);
+        String etag = "\"" + version + "-" + Long.toHexString(crc.getValue()) + "\"";
+        return new BranchSummarySnapshot(version, etag, list, json);
+    }
+
+    /**
+     * Recuento por clave normalizada; se muestra el primer valor original visto para cada clave
+     * y el resultado va ordenado alfabéticamente. Las sucursales sin valor no cuentan.
+     */
+    private static Map<String, Long> count(Collection<Entry> entries, Function<Entry, String> key,
+                                           Function<Entry, String> label) {
+        TreeMap<String, String> labels = new TreeMap<>();
+        Map<String, Long> counts = new HashMap<>();
+        for (Entry entry : entries) {
+            String k = key.apply(entry);
+            if (k == null) {
+                continue;
+            }
+            labels.putIfAbsent(k, label.apply(entry).trim());
+            counts.merge(k, 1L, Long::sum);
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        labels.forEach((k, shown) -> result.put(shown, counts.get(k)));
+        return result;
+    }
+
+    private static Entry toEntry(Branch branch) {
+        Set<String> words = new HashSet<>();
+        for (String field : new String[]{branch.getName(), branch.getNeighborhood(), branch.getCity(), branch.getState()}) {
+            for (String word : WORD_SEPARATORS.split(UserSearchIndex.normalize(field))) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        return new Entry(branch.getId(), branch.getName(), branch.getNeighborhood(), branch.getCity(), branch.getState(),
+                branch.isDeleted(), UserSearchIndex.normalize(branch.getName()),
+                blankToNull(UserSearchIndex.normalize(branch.getState()).trim()),
+                blankToNull(UserSearchIndex.normalize(branch.getCity()).trim()),
+                Set.copyOf(words));
+    }
+
+    private static BranchListDTO toListItem(Entry entry) {
+        BranchListDTO dto = new BranchListDTO();
+        dto.setId(entry.id());
+        dto.setName(entry.name());
+        dto.setNeighborhood(entry.neighborhood());
+        dto.setCity(entry.city());
+        dto.setState(entry.state());
+        return dto;
+    }
+
+    private static String blankToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -1,50 +1,73 @@
 package com.muebleria.mctecommercebackend.service.impl;
 
 import com.muebleria.mctecommercebackend.dto.BranchDTO;
+import com.muebleria.mctecommercebackend.dto.BranchDirectoryDTO;
 import com.muebleria.mctecommercebackend.dto.BranchListDTO;
-import com.muebleria.mctecommercebackend.dto.BranchSummaryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchRosterEntryDTO;
+import com.muebleria.mctecommercebackend.dto.BranchSummarySnapshot;
 import com.muebleria.mctecommercebackend.dto.BranchUpdateDTO;
+import com.muebleria.mctecommercebackend.dto.CursorPageDTO;
+import com.muebleria.mctecommercebackend.event.BranchChangedEvent;
 import com.muebleria.mctecommercebackend.exception.ResourceNotFoundException;
 import com.muebleria.mctecommercebackend.model.Branch;
 import com.muebleria.mctecommercebackend.model.Role;
 import com.muebleria.mctecommercebackend.model.User;
 import com.muebleria.mctecommercebackend.model.UserStatus;
 import com.muebleria.mctecommercebackend.repository.BranchRepository;
-import com.muebleria.mctecommercebackend.repository.UserRepository;
-import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.repository.KeysetCursor;
+import com.muebleria.mctecommercebackend.security.schedule.BranchRosterIndex;
+import com.muebleria.mctecommercebackend.security.user.CurrentActor;
 import com.muebleria.mctecommercebackend.service.BranchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @Service
 public class BranchServiceImpl implements BranchService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     private final BranchRepository branchRepository;
-    private final UserRepository userRepository;
+    private final BranchRosterIndex branchRosterIndex;
+    private final BranchDirectoryIndex branchDirectoryIndex;
+    private final AuditNameResolver auditNameResolver;
+    private final ListCountCache listCountCache;
+    private final CurrentActor currentActor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int approximateCountCap;
 
     @Autowired
-    public BranchServiceImpl(BranchRepository branchRepository, UserRepository userRepository) {
+    public BranchServiceImpl(BranchRepository branchRepository, BranchRosterIndex branchRosterIndex,
+                             BranchDirectoryIndex branchDirectoryIndex, AuditNameResolver auditNameResolver, ListCountCache listCountCache, CurrentActor currentActor,
+                             ApplicationEventPublisher eventPublisher, @Value("${muebleria.app.listApproximateCountCap:1000}") int approximateCountCap) {
         this.branchRepository = branchRepository;
-        this.userRepository = userRepository;
+        this.branchRosterIndex = branchRosterIndex;
+        this.branchDirectoryIndex = branchDirectoryIndex;
+        this.auditNameResolver = auditNameResolver;
+        this.listCountCache = listCountCache;
+        this.currentActor = currentActor;
+        this.eventPublisher = eventPublisher;
+        this.approximateCountCap = approximateCountCap;
     }
 
     @Override
     @Transactional
     public BranchDTO createBranch(BranchDTO branchDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-
         branchRepository.findByName(branchDTO.getName()).ifPresent(b -> {
             throw new RuntimeException("El nombre de la sucursal '" + branchDTO.getName() + "' ya existe.");
         });
@@ -55,19 +78,18 @@ public class BranchServiceImpl implements BranchService {
         Branch branch = new Branch();
         mapDtoToEntity(branchDTO, branch);
 
-        branch.setCreatedBy(currentUser);
-        branch.setUpdatedBy(currentUser);
+        branch.setCreatedBy(currentActor.reference());
+        branch.setUpdatedBy(currentActor.reference());
 
         Branch savedBranch = branchRepository.save(branch);
+        eventPublisher.publishEvent(new BranchChangedEvent(savedBranch.getId()));
         return toDTO(savedBranch);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<BranchDTO> findById(Long id) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-
-        if (currentUser.getRole() == Role.DEVELOPER) {
+        if (currentActor.getRole() == Role.DEVELOPER) {
             return branchRepository.findByIdIncludingDeleted(id).map(this::toDTO);
         }
 
@@ -76,10 +98,39 @@ public class BranchServiceImpl implements BranchService {
 
     @Override
     @Transactional(readOnly = true)
-    public Page<BranchListDTO> findAll(Pageable pageable, UserStatus status, String search) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
+    public Page<BranchListDTO> findAll(Pageable pageable, UserStatus status, String search, boolean approximate) {
+        Specification<Branch> spec = buildListSpecification(status, search);
+
+        String signature = ListCountCache.signature(approximate, status, search);
+        LongSupplier total = () -> listCountCache.branchCount(signature, approximate
+                ? () -> branchRepository.countUpTo(spec, approximateCountCap)
+                : () -> branchRepository.count(spec));
+        return branchRepository.findListItems(spec, pageable, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDTO<BranchListDTO> findAllByCursor(String cursor, int size, UserStatus status, String search) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+
+        // Se pide una fila de más para saber si hay página siguiente sin ejecutar un COUNT.
+        List<BranchListDTO> rows = branchRepository.findListItemsAfter(buildListSpecification(status, search), after, pageSize + 1);
+        boolean hasNext = rows.size() > pageSize;
+        List<BranchListDTO> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            BranchListDTO last = content.get(content.size() - 1);
+            nextCursor = new KeysetCursor(last.getName(), last.getId()).encode();
+        }
+        return new CursorPageDTO<>(content, content.size(), nextCursor, hasNext);
+    }
 
-        if (status == UserStatus.DELETED && currentUser.getRole() != Role.DEVELOPER) {
+    /**
+     * Filtros comunes de los listados de sucursales (modo página y modo cursor).
+     */
+    private Specification<Branch> buildListSpecification(UserStatus status, String search) {
+        if (status == UserStatus.DELETED && currentActor.getRole() != Role.DEVELOPER) {
             throw new AccessDeniedException("No tienes permiso para ver la lista de sucursales eliminadas.");
         }
 
@@ -102,32 +153,47 @@ public class BranchServiceImpl implements BranchService {
             ));
         }
 
-        return branchRepository.findAll(spec, pageable).map(this::toBranchListDTO);
+        return spec;
     }
 
-    private BranchListDTO toBranchListDTO(Branch branch) {
-        BranchListDTO dto = new BranchListDTO();
-        dto.setId(branch.getId());
-        dto.setName(branch.getName());
-        dto.setNeighborhood(branch.getNeighborhood());
-        dto.setCity(branch.getCity());
-        dto.setState(branch.getState());
-        return dto;
+    @Override
+    public BranchDirectoryDTO searchDirectory(String query, String state, String city, UserStatus status, int page, int size) {
+        if (status == UserStatus.DELETED && !currentActor.hasRole(Role.DEVELOPER)) {
+            throw new AccessDeniedException("No tienes permiso para ver la lista de sucursales eliminadas.");
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        return branchDirectoryIndex.search(query, state, city, status == UserStatus.DELETED, Math.max(0, page), pageSize);
+    }
+
+    @Override
+    public BranchSummarySnapshot getSummarySnapshot() {
+        return branchDirectoryIndex.summaries();
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<BranchSummaryDTO> findAllSummaries() {
-        return branchRepository.findByIsDeletedFalse().stream()
-                .map(this::toSummaryDTO)
+    public List<BranchRosterEntryDTO> findAllowedRoster(Long branchId, Set<Role> roles, Instant at) {
+        if (currentActor.getRole() == Role.GESTOR_SUCURSAL && !branchId.equals(currentActor.getManagedBranchId())) {
+            throw new AccessDeniedException("Solo puedes consultar el personal de tu sucursal.");
+        }
+        if (!branchRepository.existsById(branchId)) {
+            throw new ResourceNotFoundException("Sucursal no encontrada con ID: " + branchId);
+        }
+
+        Set<Role> requested = (roles == null || roles.isEmpty()) ? BranchRosterIndex.ROSTER_ROLES : roles;
+        if (!BranchRosterIndex.ROSTER_ROLES.containsAll(requested)) {
+            throw new IllegalArgumentException("Solo se pueden consultar los roles " + BranchRosterIndex.ROSTER_ROLES + ".");
+        }
+
+        return branchRosterIndex.allowedAt(branchId, requested, at != null ? at : Instant.now()).stream()
+                .map(member -> new BranchRosterEntryDTO(member.id(), member.fullName(), member.username(),
+                        member.role().name(), member.bypassAccessRules()))
                 .collect(Collectors.toList());
     }
 
     @Override
     @Transactional
     public BranchDTO updateBranch(Long id, BranchUpdateDTO branchUpdateDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-
         Branch branch = branchRepository.findByIdIncludingDeleted(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Sucursal no encontrada con ID: " + id));
 
@@ -162,29 +228,29 @@ public class BranchServiceImpl implements BranchService {
         if (branchUpdateDTO.getPhone() != null) branch.setPhone(branchUpdateDTO.getPhone());
         if (branchUpdateDTO.getRfc() != null) branch.setRfc(branchUpdateDTO.getRfc());
 
-        branch.setUpdatedBy(currentUser);
+        branch.setUpdatedBy(currentActor.reference());
         Branch updatedBranch = branchRepository.save(branch);
+        eventPublisher.publishEvent(new BranchChangedEvent(updatedBranch.getId()));
         return toDTO(updatedBranch);
     }
 
     @Override
     @Transactional
     public void deleteById(Long id) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         // Usamos el nuevo método para asegurar que no se intente borrar algo ya borrado.
         Branch branch = branchRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Sucursal no encontrada con ID: " + id));
 
         branch.setDeleted(true);
         branch.setDeletedAt(LocalDateTime.now());
-        branch.setDeletedBy(currentUser);
+        branch.setDeletedBy(currentActor.reference());
         branchRepository.save(branch);
+        eventPublisher.publishEvent(new BranchChangedEvent(branch.getId()));
     }
 
     @Override
     @Transactional
     public BranchDTO restoreBranchById(Long id) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         // Usamos el nuevo método para encontrar la sucursal aunque esté eliminada.
         Branch branch = branchRepository.findByIdIncludingDeleted(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Sucursal no encontrada con ID: " + id));
@@ -196,16 +262,13 @@ public class BranchServiceImpl implements BranchService {
         branch.setDeleted(false);
         branch.setDeletedAt(null);
         branch.setDeletedBy(null);
-        branch.setUpdatedBy(currentUser);
+        branch.setUpdatedBy(currentActor.reference());
 
         Branch restoredBranch = branchRepository.save(branch);
+        eventPublisher.publishEvent(new BranchChangedEvent(restoredBranch.getId()));
         return toDTO(restoredBranch);
     }
 
-    private BranchSummaryDTO toSummaryDTO(Branch branch) {
-        return new BranchSummaryDTO(branch.getId(), branch.getName());
-    }
-
     private BranchDTO toDTO(Branch branch) {
         BranchDTO dto = new BranchDTO();
         dto.setId(branch.getId());
@@ -224,27 +287,34 @@ public class BranchServiceImpl implements BranchService {
         dto.setCreatedAt(branch.getCreatedAt());
         dto.setLastUpdatedAt(branch.getLastUpdatedAt());
 
-        if (branch.getCreatedBy() != null && branch.getCreatedBy().getProfile() != null) {
-            String fullName = branch.getCreatedBy().getProfile().getFirstName() + " " + branch.getCreatedBy().getProfile().getLastName();
-            dto.setCreatedByFullName(fullName);
+        // Los nombres de auditoría salen del resolvedor: solo se lee el ID de cada relación.
+        User deletedBy = branch.isDeleted() ? branch.getDeletedBy() : null;
+        Map<Long, AuditNameResolver.AuditName> auditNames =
+                auditNameResolver.resolveUsers(branch.getCreatedBy(), branch.getUpdatedBy(), deletedBy);
+
+        if (branch.getCreatedBy() != null) {
+            dto.setCreatedByFullName(fullNameOf(auditNames, branch.getCreatedBy()));
         }
 
-        if (branch.getUpdatedBy() != null && branch.getUpdatedBy().getProfile() != null) {
-            String fullName = branch.getUpdatedBy().getProfile().getFirstName() + " " + branch.getUpdatedBy().getProfile().getLastName();
-            dto.setUpdatedByFullName(fullName);
+        if (branch.getUpdatedBy() != null) {
+            dto.setUpdatedByFullName(fullNameOf(auditNames, branch.getUpdatedBy()));
         }
 
         if (branch.isDeleted()) {
             dto.setDeletedAt(branch.getDeletedAt());
-            if (branch.getDeletedBy() != null && branch.getDeletedBy().getProfile() != null) {
-                String fullName = branch.getDeletedBy().getProfile().getFirstName() + " " + branch.getDeletedBy().getProfile().getLastName();
-                dto.setDeletedByFullName(fullName);
+            if (deletedBy != null) {
+                dto.setDeletedByFullName(fullNameOf(auditNames, deletedBy));
             }
         }
 
         return dto;
     }
 
+    private static String fullNameOf(Map<Long, AuditNameResolver.AuditName> auditNames, User user) {
+        AuditNameResolver.AuditName name = auditNames.get(user.getId());
+        return (name != null) ? name.fullName() : null;
+    }
+
     private void mapDtoToEntity(BranchDTO dto, Branch entity) {
         entity.setName(dto.getName());
         entity.setStreetAddress(dto.getStreetAddress());
@@ -258,13 +328,4 @@ public class BranchServiceImpl implements BranchService {
         entity.setOrderPrefix(dto.getOrderPrefix());
         entity.setLastOrderSequenceNumber(dto.getLastOrderSequenceNumber());
     }
-
-    private Optional<User> getCurrentUserEntity() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated() || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
-            return Optional.empty();
-        }
-        Long userId = ((UserDetailsImpl) authentication.getPrincipal()).getId();
-        return userRepository.findById(userId);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.muebleria.mctecommercebackend.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.muebleria.mctecommercebackend.event.BranchChangedEvent;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.function.LongSupplier;
+
+/**
+ * Caché de corta duración de los totales de los listados paginados, indexada por la firma normalizada
+ * de los filtros. Al pasar de página con los mismos filtros no se vuelve a ejecutar el COUNT.
+ * <p>
+ * Cualquier escritura sobre usuarios o sucursales vacía la caché correspondiente tras el commit;
+ * en otros nodos el total puede ir retrasado como mucho {@code muebleria.app.listCountTtlMs}.
+ */
+@Component
+public class ListCountCache {
+
+    private final Cache<String, Long> userCounts;
+    private final Cache<String, Long> branchCounts;
+
+    public ListCountCache(@Value("${muebleria.app.listCountTtlMs:30000}") long ttlMs,
+                          @Value("${muebleria.app.listCountMaxSize:1000}") long maxSize) {
+        this.userCounts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+        this.branchCounts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * Firma de un conjunto de filtros: los textos se recortan y pasan a minúsculas, y los nulos y vacíos
+     * se tratan igual, de modo que peticiones equivalentes comparten la entrada.
+     */
+    public static String signature(Object... parts) {
+        StringJoiner joiner = new StringJoiner("|");
+        for (Object part : parts) {
+            String value = (part == null) ? "" : part.toString().trim().toLowerCase(Locale.ROOT);
+            joiner.add(value.replace("\\", "\\\\").replace("|", "\\|"));
+        }
+        return joiner.toString();
+    }
+
+    public long userCount(String signature, LongSupplier counter) {
+        return userCounts.get(signature, key -> counter.getAsLong());
+    }
+
+    public long branchCount(String signature, LongSupplier counter) {
+        return branchCounts.get(signature, key -> counter.getAsLong());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        userCounts.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBranchChanged(BranchChangedEvent event) {
+        branchCounts.invalidateAll();
+    }
+}
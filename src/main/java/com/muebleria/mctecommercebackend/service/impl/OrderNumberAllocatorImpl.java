@@ -0,0 +1,165 @@
+package com.muebleria.mctecommercebackend.service.impl;
+
+import com.muebleria.mctecommercebackend.event.BranchChangedEvent;
+import com.muebleria.mctecommercebackend.exception.ResourceNotFoundException;
+import com.muebleria.mctecommercebackend.model.Branch;
+import com.muebleria.mctecommercebackend.repository.BranchRepository;
+import com.muebleria.mctecommercebackend.repository.OrderSequenceState;
+import com.muebleria.mctecommercebackend.service.OrderNumberAllocator;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asignador de números de pedido por sucursal al estilo hi/lo.
+ * <p>
+ * En lugar de bloquear la fila de la sucursal en cada pedido, se reserva un bloque de
+ * {@code muebleria.app.orderNumberBlockSize} números avanzando {@code last_order_sequence_number}
+ * en una transacción propia, que se confirma antes de entregar el primero. Los números del bloque
+ * se reparten en memoria con un contador atómico, sin cerrojos; solo el hilo que agota el bloque
+ * reserva el siguiente. Como la marca de agua se guarda antes de usar el bloque, un reinicio deja
+ * como mucho un hueco, nunca un número repetido.
+ * <p>
+ * Las sucursales con secuencia estricta no usan bloques: cada número avanza la fila en la
+ * transacción del llamador, así que los pedidos de esa sucursal se serializan pero no hay huecos.
+ * <p>
+ * Tras cada avance confirmado se desaloja de la caché de segundo nivel solo la sucursal afectada
+ * (ver {@link BranchRepository#advanceOrderSequence}).
+ */
+@Service
+public class OrderNumberAllocatorImpl implements OrderNumberAllocator {
+
+    /** Bloque de números reservado en la base de datos: {@code (last - size, last]}. */
+    private static final class Lease {
+        final String prefix;
+        final AtomicLong next;
+        final long last;
+
+        Lease(String prefix, long first, long last) {
+            this.prefix = prefix;
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+
+    private static final class BranchSequence {
+        volatile Lease lease = new Lease(null, 1, 0);
+    }
+
+    private final BranchRepository branchRepository;
+    private final Cache secondLevelCache;
+    private final TransactionTemplate leaseTransaction;
+    private final TransactionTemplate gaplessTransaction;
+    private final int blockSize;
+    private final int digits;
+    private final Set<Long> gaplessBranches;
+
+    private final ConcurrentMap<Long, BranchSequence> sequences = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OrderNumberAllocatorImpl(BranchRepository branchRepository, EntityManagerFactory entityManagerFactory,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${muebleria.app.orderNumberBlockSize:50}") int blockSize,
+                                    @Value("${muebleria.app.orderNumberDigits:6}") int digits,
+                                    @Value("${muebleria.app.orderNumberGaplessBranches:}") Set<Long> gaplessBranches) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("muebleria.app.orderNumberBlockSize debe ser al menos 1.");
+        }
+        this.branchRepository = branchRepository;
+        this.secondLevelCache = entityManagerFactory.getCache();
+        this.blockSize = blockSize;
+        this.digits = digits;
+        this.gaplessBranches = Set.copyOf(gaplessBranches);
+
+        // El bloque se confirma aunque la transacción del pedido se revierta: así nunca se reutiliza.
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        // En modo estricto el número vive y muere con la transacción del pedido.
+        this.gaplessTransaction = new TransactionTemplate(transactionManager);
+        this.gaplessTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_MANDATORY);
+    }
+
+    @Override
+    public String nextOrderNumber(Long branchId) {
+        if (gaplessBranches.contains(branchId)) {
+            OrderSequenceState state = gaplessTransaction.execute(status -> advance(branchId, 1));
+            return format(state.orderPrefix(), state.lastOrderSequenceNumber());
+        }
+
+        BranchSequence sequence = sequences.computeIfAbsent(branchId, id -> new BranchSequence());
+        while (true) {
+            Lease lease = sequence.lease;
+            long number = lease.next.getAndIncrement();
+            if (number <= lease.last) {
+                return format(lease.prefix, number);
+            }
+            synchronized (sequence) {
+                // Otro hilo puede haber renovado el bloque mientras esperábamos.
+                if (sequence.lease == lease) {
+                    OrderSequenceState state = leaseTransaction.execute(status -> advance(branchId, blockSize));
+                    long last = state.lastOrderSequenceNumber();
+                    sequence.lease = new Lease(state.orderPrefix(), last - blockSize + 1, last);
+                }
+            }
+        }
+    }
+
+    /**
+     * Descarta el bloque de una sucursal modificada para que el siguiente número use el prefijo nuevo.
+     * Los números que quedaban en el bloque se pierden como hueco.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBranchChanged(BranchChangedEvent event) {
+        sequences.remove(event.getBranchId());
+    }
+
+    private OrderSequenceState advance(Long branchId, int count) {
+        if (branchRepository.advanceOrderSequence(branchId, count) == 0) {
+            throw new ResourceNotFoundException("Sucursal no encontrada con ID: " + branchId);
+        }
+        evictAfterCommit(branchId);
+        return branchRepository.findOrderSequenceState(branchId)
+                .orElseThrow(() -> new ResourceNotFoundException("Sucursal no encontrada con ID: " + branchId));
+    }
+
+    /**
+     * La entidad en caché conserva la marca de agua anterior: se desaloja cuando el nuevo valor ya es
+     * visible, para que una lectura concurrente no vuelva a cachear el antiguo.
+     */
+    private void evictAfterCommit(Long branchId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            secondLevelCache.evict(Branch.class, branchId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                secondLevelCache.evict(Branch.class, branchId);
+            }
+        });
+    }
+
+    private String format(String prefix, long number) {
+        String value = Long.toString(number);
+        StringBuilder result = new StringBuilder(prefix.length() + Math.max(digits, value.length()));
+        result.append(prefix);
+        for (int i = value.length(); i < digits; i++) {
+            result.append('0');
+        }
+        return result.append(value).toString();
+    }
+}
@@ -0,0 +1,166 @@
+package com.muebleria.mctecommercebackend.service.impl;
+
+import com.muebleria.mctecommercebackend.dto.JwtResponse;
+import com.muebleria.mctecommercebackend.exception.InvalidRefreshTokenException;
+import com.muebleria.mctecommercebackend.model.RefreshToken;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.repository.RefreshTokenRepository;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import com.muebleria.mctecommercebackend.security.jwt.JwtUtils;
+import com.muebleria.mctecommercebackend.security.schedule.ScheduleCompiler;
+import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.security.user.UserPrincipalSnapshot;
+import com.muebleria.mctecommercebackend.service.RefreshTokenService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+@Service
+public class RefreshTokenServiceImpl implements RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenServiceImpl.class);
+
+    // 256 bits aleatorios: el token no se puede adivinar y su hash basta para buscarlo.
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final ScheduleCompiler scheduleCompiler;
+    private final JwtUtils jwtUtils;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // Vida de cada token de refresco; se renueva con cada rotación.
+    @Value("${muebleria.app.jwtRefreshExpirationMs:604800000}")
+    private long refreshExpirationMs;
+
+    @Autowired
+    public RefreshTokenServiceImpl(RefreshTokenRepository refreshTokenRepository, UserRepository userRepository,
+                                   ScheduleCompiler scheduleCompiler, JwtUtils jwtUtils) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.scheduleCompiler = scheduleCompiler;
+        this.jwtUtils = jwtUtils;
+    }
+
+    @Override
+    @Transactional
+    public String createRefreshToken(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        return issue(userRepository.getReferenceById(userId), UUID.randomUUID().toString(), now, now);
+    }
+
+    @Override
+    // La revocación de la familia ante un token reutilizado debe confirmarse aunque se rechace la petición.
+    @Transactional(noRollbackFor = InvalidRefreshTokenException.class)
+    public JwtResponse refresh(String refreshToken) {
+        LocalDateTime now = LocalDateTime.now();
+        RefreshToken current = refreshTokenRepository.findByTokenHashForUpdate(hash(refreshToken))
+                .orElseThrow(() -> new InvalidRefreshTokenException("Token de refresco no válido."));
+
+        if (current.getRevokedAt() != null) {
+            // Un token ya rotado solo puede volver a aparecer si alguien lo copió: se cierra la sesión completa.
+            refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            logger.warn("Reutilización de token de refresco detectada para el usuario ID {}; se revoca la familia {}.",
+                    current.getUser().getId(), current.getFamilyId());
+            throw new InvalidRefreshTokenException("Token de refresco no válido.");
+        }
+        if (!current.getExpiresAt().isAfter(now)) {
+            throw new InvalidRefreshTokenException("El token de refresco ha expirado.");
+        }
+
+        User user = userRepository.findPrincipalById(current.getUser().getId())
+                .orElseThrow(() -> new InvalidRefreshTokenException("Token de refresco no válido."));
+
+        if (!user.isActive() || user.isDeleted()) {
+            refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            throw new InvalidRefreshTokenException("La cuenta del usuario no está activa.");
+        }
+        if (user.getPasswordChangedAt() != null && current.getAuthTime().isBefore(user.getPasswordChangedAt())) {
+            // La sesión se abrió con la contraseña anterior.
+            refreshTokenRepository.revokeFamily(current.getFamilyId(), now);
+            throw new InvalidRefreshTokenException("La sesión ha caducado por un cambio de contraseña.");
+        }
+
+        // Mismas comprobaciones de horario que en el login, sin volver a verificar la contraseña.
+        UserPrincipalSnapshot principal = UserPrincipalSnapshot.from(user, scheduleCompiler.scheduleOf(user));
+        if (!principal.isBypassAccessRules() && !principal.isAccessRulesAssigned()) {
+            throw new LockedException("Acceso denegado: No tienes un horario de trabajo asignado.");
+        }
+        if (!principal.isAccessAllowedNow()) {
+            throw new LockedException("Acceso denegado: Estás fuera de tu horario de trabajo permitido.");
+        }
+
+        current.setRevokedAt(now);
+        String newRefreshToken = issue(user, current.getFamilyId(), current.getAuthTime(), now);
+
+        UserDetailsImpl userDetails = UserDetailsImpl.build(user);
+        String jwt = jwtUtils.generateJwtToken(userDetails);
+        return new JwtResponse(jwt, "Bearer",
+                userDetails.getId(),
+                userDetails.getUsername(),
+                user.getRole().name(),
+                userDetails.getFirstName(),
+                userDetails.getLastName(),
+                newRefreshToken
+        );
+    }
+
+    @Override
+    @Transactional
+    public void revoke(String refreshToken) {
+        refreshTokenRepository.findByTokenHashForUpdate(hash(refreshToken))
+                .ifPresent(token -> refreshTokenRepository.revokeFamily(token.getFamilyId(), LocalDateTime.now()));
+    }
+
+    /**
+     * Purga los tokens de las familias ya expiradas; cada login y cada refresco añaden una fila.
+     */
+    @Scheduled(fixedDelayString = "${muebleria.app.refreshTokenPurgeMs:3600000}",
+            initialDelayString = "${muebleria.app.refreshTokenPurgeMs:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            logger.info("Se purgaron {} tokens de refresco de sesiones ya expiradas.", purged);
+        }
+    }
+
+    private String issue(User user, String familyId, LocalDateTime authTime, LocalDateTime now) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(hash(rawToken));
+        token.setUser(user);
+        token.setFamilyId(familyId);
+        token.setAuthTime(authTime);
+        token.setExpiresAt(now.plus(Duration.ofMillis(refreshExpirationMs)));
+        refreshTokenRepository.save(token);
+        return rawToken;
+    }
+
+    private static String hash(String rawToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawToken.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible en esta JVM", e);
+        }
+    }
+}
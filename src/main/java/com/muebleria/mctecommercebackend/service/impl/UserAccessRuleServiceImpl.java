@@ -1,24 +1,25 @@
 package com.muebleria.mctecommercebackend.service.impl;
 
 import com.muebleria.mctecommercebackend.dto.UserAccessRuleDTO;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
 import com.muebleria.mctecommercebackend.exception.ResourceNotFoundException;
 import com.muebleria.mctecommercebackend.model.Role;
 import com.muebleria.mctecommercebackend.model.User;
 import com.muebleria.mctecommercebackend.model.UserAccessRule;
 import com.muebleria.mctecommercebackend.repository.UserAccessRuleRepository;
 import com.muebleria.mctecommercebackend.repository.UserRepository;
-import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.security.schedule.ScheduleCompiler;
+import com.muebleria.mctecommercebackend.security.schedule.ZoneOffsets;
+import com.muebleria.mctecommercebackend.security.user.CurrentActor;
 import com.muebleria.mctecommercebackend.service.UserAccessRuleService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.DayOfWeek;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,17 +27,22 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
 
     private final UserAccessRuleRepository ruleRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduleCompiler scheduleCompiler;
+    private final CurrentActor currentActor;
 
     @Autowired
-    public UserAccessRuleServiceImpl(UserAccessRuleRepository ruleRepository, UserRepository userRepository) {
+    public UserAccessRuleServiceImpl(UserAccessRuleRepository ruleRepository, UserRepository userRepository, ApplicationEventPublisher eventPublisher, ScheduleCompiler scheduleCompiler, CurrentActor currentActor) {
         this.ruleRepository = ruleRepository;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.scheduleCompiler = scheduleCompiler;
+        this.currentActor = currentActor;
     }
 
     @Override
     @Transactional
     public UserAccessRuleDTO createRuleForUser(Long userId, UserAccessRuleDTO ruleDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         User targetUser = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + userId));
 
@@ -50,7 +56,7 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
             targetUser.setBypassAccessRules(false);
         }
 
-        if (!canManageSchedules(currentUser, targetUser)) {
+        if (!canManageSchedules(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para gestionar los horarios de este usuario.");
         }
 
@@ -62,21 +68,23 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
         UserAccessRule rule = new UserAccessRule();
         mapDtoToEntity(ruleDTO, rule);
         rule.setUser(targetUser);
-        rule.setCreatedBy(currentUser);
-        rule.setUpdatedBy(currentUser);
+        rule.setCreatedBy(currentActor.reference());
+        rule.setUpdatedBy(currentActor.reference());
 
         UserAccessRule savedRule = ruleRepository.save(rule);
+        updateCompactSchedule(targetUser.getId());
+        userRepository.incrementSecurityVersion(targetUser.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(targetUser.getId()));
         return toDTO(savedRule);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<UserAccessRuleDTO> getRulesByUserId(Long userId) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         User targetUser = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + userId));
 
-        if (!canManageSchedules(currentUser, targetUser)) {
+        if (!canManageSchedules(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para ver los horarios de este usuario.");
         }
 
@@ -88,7 +96,6 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
     @Override
     @Transactional
     public UserAccessRuleDTO updateRule(Long ruleId, UserAccessRuleDTO ruleDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         UserAccessRule rule = ruleRepository.findById(ruleId)
                 .orElseThrow(() -> new ResourceNotFoundException("Regla no encontrada con ID: " + ruleId));
 
@@ -98,7 +105,7 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
         }
         // --- FIN DE LA VALIDACIÓN ---
 
-        if (!canManageSchedules(currentUser, rule.getUser())) {
+        if (!canManageSchedules(rule.getUser())) {
             throw new AccessDeniedException("No tienes permiso para gestionar los horarios de este usuario.");
         }
 
@@ -110,16 +117,18 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
         }
 
         mapDtoToEntity(ruleDTO, rule);
-        rule.setUpdatedBy(currentUser);
+        rule.setUpdatedBy(currentActor.reference());
 
         UserAccessRule updatedRule = ruleRepository.save(rule);
+        updateCompactSchedule(rule.getUser().getId());
+        userRepository.incrementSecurityVersion(rule.getUser().getId());
+        eventPublisher.publishEvent(new UserChangedEvent(rule.getUser().getId()));
         return toDTO(updatedRule);
     }
 
     @Override
     @Transactional
     public void deleteRule(Long ruleId) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         UserAccessRule rule = ruleRepository.findById(ruleId)
                 .orElseThrow(() -> new ResourceNotFoundException("Regla no encontrada con ID: " + ruleId));
 
@@ -129,18 +138,29 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
         }
         // --- FIN DE LA VALIDACIÓN ---
 
-        if (!canManageSchedules(currentUser, rule.getUser())) {
+        if (!canManageSchedules(rule.getUser())) {
             throw new AccessDeniedException("No tienes permiso para gestionar los horarios de este usuario.");
         }
 
         ruleRepository.deleteById(ruleId);
+        updateCompactSchedule(rule.getUser().getId());
+        userRepository.incrementSecurityVersion(rule.getUser().getId());
+        eventPublisher.publishEvent(new UserChangedEvent(rule.getUser().getId()));
     }
 
-    private boolean canManageSchedules(User currentUser, User targetUser) {
-        if (currentUser.getId().equals(targetUser.getId())) {
+    /**
+     * Recalcula la copia compacta del horario en la fila del usuario. La consulta de reglas
+     * vacía antes los cambios pendientes, así que ya incluye la regla creada, modificada o borrada.
+     */
+    private void updateCompactSchedule(Long userId) {
+        userRepository.updateCompactSchedule(userId, scheduleCompiler.encode(ruleRepository.findByUserId(userId)));
+    }
+
+    private boolean canManageSchedules(User targetUser) {
+        if (currentActor.getId().equals(targetUser.getId())) {
             return false;
         }
-        Role currentUserRole = currentUser.getRole();
+        Role currentUserRole = currentActor.getRole();
         Role targetUserRole = targetUser.getRole();
         if (currentUserRole == Role.DEVELOPER) {
             return targetUserRole != Role.DEVELOPER;
@@ -151,15 +171,6 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
         return false;
     }
 
-    private Optional<User> getCurrentUserEntity() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated() || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
-            return Optional.empty();
-        }
-        Long currentUserId = ((UserDetailsImpl) authentication.getPrincipal()).getId();
-        return userRepository.findById(currentUserId);
-    }
-
     private UserAccessRuleDTO toDTO(UserAccessRule rule) {
         return new UserAccessRuleDTO(
                 rule.getId(),
@@ -173,6 +184,10 @@ public class UserAccessRuleServiceImpl implements UserAccessRuleService {
     }
 
     private void mapDtoToEntity(UserAccessRuleDTO dto, UserAccessRule entity) {
+        // Una zona inválida se rechaza aquí, en lugar de fallar en cada evaluación del horario.
+        if (!ZoneOffsets.isValid(dto.getAccessTimezone())) {
+            throw new IllegalArgumentException("La zona horaria '" + dto.getAccessTimezone() + "' no es válida.");
+        }
         entity.setDayOfWeek(DayOfWeek.valueOf(dto.getDayOfWeek()));
         entity.setStartTime(dto.getStartTime());
         entity.setEndTime(dto.getEndTime());
@@ -0,0 +1,394 @@
+package com.muebleria.mctecommercebackend.service.impl;
+
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserProfile;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda en memoria sobre el nombre de usuario, el nombre, los apellidos y el correo.
+ * <p>
+ * Responde a la misma pregunta que {@code LOWER(col) LIKE '%término%'} sin recorrer las tablas:
+ * los candidatos salen de la intersección de las listas de trigramas del término y después se
+ * comprueba la subcadena sobre el texto guardado, así que el resultado es exacto. Los textos se
+ * normalizan como la colación de MySQL ({@code utf8mb4_0900_ai_ci}): minúsculas y sin acentos.
+ * Para el autocompletado hay además un trie de palabras que devuelve primero las más cortas
+ * que empiezan por el prefijo.
+ * <p>
+ * Se construye al arrancar, cada escritura sobre un usuario o su perfil ({@link UserChangedEvent})
+ * reindexa solo ese usuario y se reconstruye periódicamente para recoger los cambios de otros nodos.
+ * Hasta entonces el índice no ve esos cambios, así que {@link #match(String)} devuelve también desde
+ * cuándo es fiable, para que el llamador resuelva en SQL las filas modificadas después.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    // Margen para las transacciones de otros nodos que empezaron antes de la carga y confirmaron
+    // después, y para la diferencia de reloj entre nodos.
+    private static final Duration CHANGE_MARGIN = Duration.ofMinutes(1);
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[\\s@._-]+");
+
+    /** Usuario tal como se indexó; los campos de texto van normalizados. */
+    public record Entry(Long id, String username, String fullName, Role role, boolean active, boolean deleted,
+                        List<String> fields, Set<String> words) {
+    }
+
+    /**
+     * Coincidencias del índice, ordenadas por relevancia. Solo valen para los usuarios y perfiles cuyo
+     * {@code lastUpdatedAt} no es posterior a {@code indexedAt}; el resto puede haber cambiado en otro
+     * nodo después de la última reconstrucción.
+     */
+    public record Match(List<Long> ids, LocalDateTime indexedAt) {
+    }
+
+    private static final class TrieNode {
+        final TreeMap<Character, TrieNode> children = new TreeMap<>();
+        final Set<Long> ids = new HashSet<>(2);
+    }
+
+    private final UserRepository userRepository;
+    private final int maxListingIds;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, Set<Long>> trigrams = new HashMap<>();
+    private final TrieNode trie = new TrieNode();
+    private LocalDateTime indexedAt = LocalDateTime.now();
+
+    public UserSearchIndex(UserRepository userRepository, MeterRegistry meterRegistry,
+                           @Value("${muebleria.app.userSearchMaxIds:1000}") int maxListingIds) {
+        this.userRepository = userRepository;
+        this.maxListingIds = maxListingIds;
+        Gauge.builder("user.search.entries", this, UserSearchIndex::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        rebuild();
+    }
+
+    /**
+     * Vuelve a cargar el índice completo desde la base de datos.
+     */
+    @Scheduled(fixedDelayString = "${muebleria.app.userSearchRefreshMs:300000}",
+            initialDelayString = "${muebleria.app.userSearchRefreshMs:300000}")
+    public void rebuild() {
+        // Igual que en BranchRosterIndex: un cambio concurrente con la carga se recoge en la siguiente reconstrucción.
+        LocalDateTime loadedFrom = LocalDateTime.now().minus(CHANGE_MARGIN);
+        List<User> users = userRepository.findAllForSearchIndex();
+        lock.writeLock().lock();
+        try {
+            indexedAt = loadedFrom;
+            entries.clear();
+            trigrams.clear();
+            trie.children.clear();
+            trie.ids.clear();
+            users.forEach(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Índice de búsqueda de usuarios reconstruido: {} usuarios, {} trigramas.", users.size(), trigrams.size());
+    }
+
+    /**
+     * IDs de los usuarios cuyo nombre de usuario, nombre, apellidos o correo contienen el término,
+     * ordenados por relevancia. Vacío si hay más de {@code muebleria.app.userSearchMaxIds}
+     * coincidencias: en ese caso el llamador debe filtrar en SQL, porque una lista {@code IN}
+     * tan larga sale más cara que el propio {@code LIKE}.
+     */
+    public Optional<Match> match(String term) {
+        String normalized = normalize(term);
+        lock.readLock().lock();
+        try {
+            List<Entry> matches = substringMatches(normalized, entry -> true);
+            if (matches.size() > maxListingIds) {
+                return Optional.empty();
+            }
+            matches.sort(byRelevance(normalized));
+            return Optional.of(new Match(matches.stream().map(Entry::id).toList(), indexedAt));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sugerencias para el autocompletado: primero los usuarios con alguna palabra que empieza por el
+     * texto (las palabras más cortas antes) y, si faltan, los que lo contienen en cualquier posición.
+     */
+    public List<Entry> suggest(String text, int limit, Predicate<Entry> visible) {
+        String normalized = normalize(text).trim();
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        LinkedHashSet<Long> ids = new LinkedHashSet<>();
+        List<Entry> result = new ArrayList<>(limit);
+
+        lock.readLock().lock();
+        try {
+            TrieNode node = trie;
+            for (int i = 0; i < normalized.length() && node != null; i++) {
+                node = node.children.get(normalized.charAt(i));
+            }
+            if (node != null) {
+                // Recorrido en anchura: las palabras más cortas (las más parecidas al prefijo) salen antes.
+                ArrayDeque<TrieNode> queue = new ArrayDeque<>();
+                queue.add(node);
+                while (!queue.isEmpty() && result.size() < limit) {
+                    TrieNode current = queue.poll();
+                    for (Long id : current.ids) {
+                        Entry entry = entries.get(id);
+                        if (result.size() < limit && visible.test(entry) && ids.add(id)) {
+                            result.add(entry);
+                        }
+                    }
+                    queue.addAll(current.children.values());
+                }
+            }
+            if (result.size() < limit) {
+                List<Entry> contained = substringMatches(normalized, visible);
+                contained.sort(byRelevance(normalized));
+                for (Entry entry : contained) {
+                    if (result.size() >= limit) {
+                        break;
+                    }
+                    if (ids.add(entry.id())) {
+                        result.add(entry);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Reindexa solo al usuario modificado, después del commit.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        Optional<User> user = userRepository.findPrincipalById(event.getUserId());
+        lock.writeLock().lock();
+        try {
+            unindex(event.getUserId());
+            user.ifPresent(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Minúsculas y sin marcas diacríticas, como compara la colación por defecto de MySQL.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Las operaciones siguientes se llaman con el cerrojo (de lectura o escritura) tomado. ---
+
+    private List<Entry> substringMatches(String term, Predicate<Entry> visible) {
+        List<Entry> matches = new ArrayList<>();
+        if (term.length() < 3) {
+            // Sin trigramas que intersecar: se recorre el índice, que sigue siendo en memoria.
+            for (Entry entry : entries.values()) {
+                if (contains(entry, term) && visible.test(entry)) {
+                    matches.add(entry);
+                }
+            }
+            return matches;
+        }
+
+        List<Set<Long>> postings = new ArrayList<>();
+        for (long key : trigramKeys(term)) {
+            Set<Long> posting = trigrams.get(key);
+            if (posting == null) {
+                return matches;
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Long> smallest = postings.get(0);
+        candidates:
+        for (Long id : smallest) {
+            for (int i = 1; i < postings.size(); i++) {
+                if (!postings.get(i).contains(id)) {
+                    continue candidates;
+                }
+            }
+            Entry entry = entries.get(id);
+            // Los trigramas pueden venir de campos distintos: la subcadena se comprueba siempre.
+            if (contains(entry, term) && visible.test(entry)) {
+                matches.add(entry);
+            }
+        }
+        return matches;
+    }
+
+    private static boolean contains(Entry entry, String term) {
+        for (String field : entry.fields()) {
+            if (field.contains(term)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Comparator<Entry> byRelevance(String term) {
+        return Comparator.comparingInt((Entry entry) -> rank(entry, term))
+                .thenComparing(Entry::username);
+    }
+
+    private static int rank(Entry entry, String term) {
+        String username = entry.fields().get(0);
+        if (entry.fields().contains(term)) {
+            return 0;
+        }
+        if (username.startsWith(term)) {
+            return 1;
+        }
+        for (String word : entry.words()) {
+            if (word.startsWith(term)) {
+                return 2;
+            }
+        }
+        return 3;
+    }
+
+    private void index(User user) {
+        UserProfile profile = user.getProfile();
+        List<String> fields = new ArrayList<>(4);
+        fields.add(normalize(user.getUsername()));
+        String fullName = "N/A";
+        if (profile != null) {
+            fields.add(normalize(profile.getFirstName()));
+            fields.add(normalize(profile.getLastName()));
+            if (profile.getEmail() != null) {
+                fields.add(normalize(profile.getEmail()));
+            }
+            fullName = profile.getFirstName() + " " + profile.getLastName();
+        }
+
+        Set<String> words = new HashSet<>();
+        for (String field : fields) {
+            words.add(field);
+            for (String word : WORD_SEPARATORS.split(field)) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+
+        Entry entry = new Entry(user.getId(), user.getUsername(), fullName, user.getRole(), user.isActive(),
+                user.isDeleted(), List.copyOf(fields), Set.copyOf(words));
+        entries.put(entry.id(), entry);
+        for (long key : trigramKeys(entry)) {
+            trigrams.computeIfAbsent(key, k -> new HashSet<>(4)).add(entry.id());
+        }
+        for (String word : entry.words()) {
+            TrieNode node = trie;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.children.computeIfAbsent(word.charAt(i), c -> new TrieNode());
+            }
+            node.ids.add(entry.id());
+        }
+    }
+
+    private void unindex(Long userId) {
+        Entry previous = entries.remove(userId);
+        if (previous == null) {
+            return;
+        }
+        for (long key : trigramKeys(previous)) {
+            Set<Long> posting = trigrams.get(key);
+            if (posting != null && posting.remove(userId) && posting.isEmpty()) {
+                trigrams.remove(key);
+            }
+        }
+        for (String word : previous.words()) {
+            removeWord(trie, word, 0, userId);
+        }
+    }
+
+    /**
+     * Quita el ID del nodo de la palabra y poda los nodos que quedan vacíos.
+     *
+     * @return {@code true} si el nodo recibido ha quedado vacío.
+     */
+    private static boolean removeWord(TrieNode node, String word, int depth, Long userId) {
+        if (depth == word.length()) {
+            node.ids.remove(userId);
+        } else {
+            char c = word.charAt(depth);
+            TrieNode child = node.children.get(c);
+            if (child != null && removeWord(child, word, depth + 1, userId)) {
+                node.children.remove(c);
+            }
+        }
+        return node.ids.isEmpty() && node.children.isEmpty();
+    }
+
+    private static Set<Long> trigramKeys(Entry entry) {
+        Set<Long> keys = new HashSet<>();
+        for (String field : entry.fields()) {
+            keys.addAll(trigramKeys(field));
+        }
+        return keys;
+    }
+
+    // Tres caracteres de 16 bits empaquetados en un long.
+    private static Set<Long> trigramKeys(String text) {
+        Set<Long> keys = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            keys.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return keys;
+    }
+}
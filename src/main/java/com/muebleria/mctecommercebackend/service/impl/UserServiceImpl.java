@@ -1,72 +1,101 @@
 package com.muebleria.mctecommercebackend.service.impl;
 
 import com.muebleria.mctecommercebackend.dto.*;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
 import com.muebleria.mctecommercebackend.exception.ResourceNotFoundException;
 import com.muebleria.mctecommercebackend.model.*;
 import com.muebleria.mctecommercebackend.repository.*;
-import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.config.ScheduleFunctionContributor;
+import com.muebleria.mctecommercebackend.security.schedule.CompactSchedule;
+import com.muebleria.mctecommercebackend.security.schedule.ScheduleCompiler;
+import com.muebleria.mctecommercebackend.security.schedule.ZoneOffsets;
+import com.muebleria.mctecommercebackend.security.user.CurrentActor;
 import com.muebleria.mctecommercebackend.service.UserService;
 import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 @Service
 public class UserServiceImpl implements UserService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+
     private final UserRepository userRepository;
     private final BranchRepository branchRepository;
     private final PasswordEncoder passwordEncoder;
     private final UserAccessRuleRepository ruleRepository;
     private final UserProfileRepository userProfileRepository;
     private final DriverDetailRepository driverDetailRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final ScheduleCompiler scheduleCompiler;
+    private final ListCountCache listCountCache;
+    private final int approximateCountCap;
+    private final UserSearchIndex userSearchIndex;
+    private final AuditNameResolver auditNameResolver;
+    private final CurrentActor currentActor;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, BranchRepository branchRepository, PasswordEncoder passwordEncoder, UserAccessRuleRepository ruleRepository, UserProfileRepository userProfileRepository, DriverDetailRepository driverDetailRepository) {
+    public UserServiceImpl(UserRepository userRepository, BranchRepository branchRepository, PasswordEncoder passwordEncoder, UserAccessRuleRepository ruleRepository, UserProfileRepository userProfileRepository, DriverDetailRepository driverDetailRepository, ApplicationEventPublisher eventPublisher, RefreshTokenRepository refreshTokenRepository, ScheduleCompiler scheduleCompiler, ListCountCache listCountCache, @Value("${muebleria.app.listApproximateCountCap:1000}") int approximateCountCap, UserSearchIndex userSearchIndex, AuditNameResolver auditNameResolver, CurrentActor currentActor) {
         this.userRepository = userRepository;
         this.branchRepository = branchRepository;
         this.passwordEncoder = passwordEncoder;
         this.ruleRepository = ruleRepository;
         this.userProfileRepository = userProfileRepository;
         this.driverDetailRepository = driverDetailRepository;
+        this.eventPublisher = eventPublisher;
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.scheduleCompiler = scheduleCompiler;
+        this.listCountCache = listCountCache;
+        this.approximateCountCap = approximateCountCap;
+        this.userSearchIndex = userSearchIndex;
+        this.auditNameResolver = auditNameResolver;
+        this.currentActor = currentActor;
     }
 
     @Override
     @Transactional
     public UserDTO createUser(UserDTO userDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         Role roleToCreate = Role.fromString(userDTO.getRole());
         if (roleToCreate == null) throw new IllegalArgumentException("El rol proporcionado no es válido.");
 
-        if (!canCreate(currentUser.getRole(), roleToCreate)) {
+        if (!canCreate(currentActor.getRole(), roleToCreate)) {
             throw new AccessDeniedException("No tienes permiso para crear usuarios con el rol " + roleToCreate.name());
         }
         if (userDTO.isBypassAccessRules() && userDTO.getAccessRules() != null && !userDTO.getAccessRules().isEmpty()) {
             throw new IllegalArgumentException("No se pueden asignar horarios a un usuario que tiene permiso para omitir las reglas de acceso.");
         }
-        userRepository.findByUsername(userDTO.getUsername()).ifPresent(u -> {
+        if (userRepository.existsByUsername(userDTO.getUsername())) {
             throw new RuntimeException("El nombre de usuario '" + userDTO.getUsername() + "' ya existe.");
-        });
+        }
 
         User user = new User();
         mapBaseUserDtoToEntity(userDTO, user);
         user.setPassword(passwordEncoder.encode(userDTO.getPassword()));
         user.setPasswordChangedAt(LocalDateTime.now());
-        user.setCreatedBy(currentUser);
-        user.setUpdatedBy(currentUser);
+        user.setCreatedBy(currentActor.reference());
+        user.setUpdatedBy(currentActor.reference());
         User savedUser = userRepository.save(user);
 
         if (userDTO.getProfile() == null) {
@@ -76,8 +105,8 @@ public class UserServiceImpl implements UserService {
         UserProfile profile = new UserProfile();
         profile.setUser(savedUser);
         mapProfileDtoToEntity(userDTO.getProfile(), profile);
-        profile.setCreatedBy(currentUser);
-        profile.setUpdatedBy(currentUser);
+        profile.setCreatedBy(currentActor.reference());
+        profile.setUpdatedBy(currentActor.reference());
         userProfileRepository.save(profile);
 
         savedUser.setProfile(profile);
@@ -89,14 +118,17 @@ public class UserServiceImpl implements UserService {
             DriverDetail driverDetail = new DriverDetail();
             driverDetail.setUser(savedUser);
             mapDriverDetailDtoToEntity(userDTO.getDriverDetails(), driverDetail);
-            driverDetail.setCreatedBy(currentUser);
-            driverDetail.setUpdatedBy(currentUser);
+            driverDetail.setCreatedBy(currentActor.reference());
+            driverDetail.setUpdatedBy(currentActor.reference());
             driverDetailRepository.save(driverDetail);
             savedUser.setDriverDetail(driverDetail);
         }
 
         if (userDTO.getAccessRules() != null && !userDTO.getAccessRules().isEmpty()) {
             for (UserAccessRuleDTO ruleDTO : userDTO.getAccessRules()) {
+                if (!ZoneOffsets.isValid(ruleDTO.getAccessTimezone())) {
+                    throw new IllegalArgumentException("La zona horaria '" + ruleDTO.getAccessTimezone() + "' no es válida.");
+                }
                 UserAccessRule rule = new UserAccessRule();
                 rule.setUser(savedUser);
                 rule.setDayOfWeek(DayOfWeek.valueOf(ruleDTO.getDayOfWeek()));
@@ -104,37 +136,37 @@ public class UserServiceImpl implements UserService {
                 rule.setEndTime(ruleDTO.getEndTime());
                 rule.setAccessTimezone(ruleDTO.getAccessTimezone());
                 rule.setActive(ruleDTO.isActive());
-                rule.setCreatedBy(currentUser);
-                rule.setUpdatedBy(currentUser);
+                rule.setCreatedBy(currentActor.reference());
+                rule.setUpdatedBy(currentActor.reference());
                 ruleRepository.save(rule);
                 savedUser.getAccessRules().add(rule);
             }
         }
+        userRepository.updateCompactSchedule(savedUser.getId(), scheduleCompiler.encode(savedUser.getAccessRules()));
 
+        eventPublisher.publishEvent(new UserChangedEvent(savedUser.getId()));
         return toDTO(savedUser);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<UserProfileViewDTO> findMyProfileById(Long id) {
-        return userRepository.findById(id).map(this::toUserProfileViewDTO);
+        return userRepository.findDetailById(id).map(this::toUserProfileViewDTO);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<UserDTO> findById(Long id) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-
-        User targetUser = userRepository.findById(id)
+        User targetUser = userRepository.findDetailById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + id));
 
         if (targetUser.isDeleted()) {
-            if (currentUser.getRole() != Role.DEVELOPER) {
+            if (currentActor.getRole() != Role.DEVELOPER) {
                 throw new ResourceNotFoundException("Usuario no encontrado con ID: " + id);
             }
         }
 
-        if (!canRead(currentUser, targetUser)) {
+        if (!canRead(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para ver este usuario.");
         }
 
@@ -150,11 +182,10 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional(readOnly = true)
     public Optional<UserDTO> findByUsername(String username) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-        Optional<User> targetUserOpt = userRepository.findByUsername(username);
+        Optional<User> targetUserOpt = userRepository.findDetailByUsername(username);
 
         targetUserOpt.ifPresent(targetUser -> {
-            if (!canRead(currentUser, targetUser)) {
+            if (!canRead(targetUser)) {
                 throw new AccessDeniedException("No tienes permiso para ver este usuario.");
             }
         });
@@ -164,11 +195,50 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional(readOnly = true)
-    public Page<UserSummaryDTO> findAll(Pageable pageable, UserStatus status, String search, String role, Long branchId) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
+    public Page<UserSummaryDTO> findAll(Pageable pageable, UserStatus status, String search, String role, Long branchId,
+                                        DayOfWeek availableDay, LocalTime availableFrom, LocalTime availableTo,
+                                        boolean approximate) {
+        Specification<User> spec = buildListSpecification(status, search, role, branchId, availableDay, availableFrom, availableTo);
+
+        // El listado excluye al propio usuario, así que su ID forma parte de la firma junto con su rol.
+        String signature = ListCountCache.signature(approximate, currentActor.getRole(), currentActor.getId(),
+                status, search, role, branchId, availableDay, availableFrom, availableTo);
+        LongSupplier total = () -> listCountCache.userCount(signature, approximate
+                ? () -> userRepository.countUpTo(spec, approximateCountCap)
+                : () -> userRepository.count(spec));
+
+        // Proyección directa a UserSummaryDTO: una sola consulta con perfil y sucursal unidos.
+        return userRepository.findSummaries(spec, pageable, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDTO<UserSummaryDTO> findAllByCursor(String cursor, int size, UserStatus status, String search, String role,
+                                                         Long branchId, DayOfWeek availableDay, LocalTime availableFrom, LocalTime availableTo) {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        int pageSize = Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+        Specification<User> spec = buildListSpecification(status, search, role, branchId, availableDay, availableFrom, availableTo);
+
+        // Se pide una fila de más para saber si hay página siguiente sin ejecutar un COUNT.
+        List<UserSummaryDTO> rows = userRepository.findSummariesAfter(spec, after, pageSize + 1);
+        boolean hasNext = rows.size() > pageSize;
+        List<UserSummaryDTO> content = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            UserSummaryDTO last = content.get(content.size() - 1);
+            nextCursor = new KeysetCursor(last.getUsername(), last.getId()).encode();
+        }
+        return new CursorPageDTO<>(content, content.size(), nextCursor, hasNext);
+    }
+
+    /**
+     * Filtros comunes de los listados de usuarios (modo página y modo cursor).
+     */
+    private Specification<User> buildListSpecification(UserStatus status, String search, String role, Long branchId,
+                                                       DayOfWeek availableDay, LocalTime availableFrom, LocalTime availableTo) {
 
         // Comprobación de seguridad (sin cambios)
-        if (status == UserStatus.DELETED && currentUser.getRole() != Role.DEVELOPER) {
+        if (status == UserStatus.DELETED && currentActor.getRole() != Role.DEVELOPER) {
             throw new AccessDeniedException("No tienes permiso para ver la lista de usuarios eliminados.");
         }
 
@@ -177,10 +247,10 @@ public class UserServiceImpl implements UserService {
         Specification<User> spec = (root, query, cb) -> cb.conjunction();
 
         // Filtro para no incluir al usuario que hace la consulta
-        spec = spec.and((root, query, cb) -> cb.notEqual(root.get("id"), currentUser.getId()));
+        spec = spec.and((root, query, cb) -> cb.notEqual(root.get("id"), currentActor.getId()));
 
         // Filtro de jerarquía de roles (sin cambios)
-        Role currentUserRole = currentUser.getRole();
+        Role currentUserRole = currentActor.getRole();
         if (currentUserRole == Role.DEVELOPER) {
             spec = spec.and((root, query, cb) -> cb.notEqual(root.get("role"), Role.DEVELOPER));
         } else if (currentUserRole == Role.ADMIN) {
@@ -211,16 +281,14 @@ public class UserServiceImpl implements UserService {
         // A PARTIR DE AQUÍ, LOS FILTROS DE ROL Y BÚSQUEDA SE APLICAN A TODOS LOS CASOS
 
         if (search != null && !search.trim().isEmpty()) {
-            String searchTerm = "%" + search.toLowerCase() + "%";
-            spec = spec.and((root, query, cb) -> {
-                Join<User, UserProfile> profileJoin = root.join("profile");
-                return cb.or(
-                        cb.like(cb.lower(root.get("username")), searchTerm),
-                        cb.like(cb.lower(profileJoin.get("firstName")), searchTerm),
-                        cb.like(cb.lower(profileJoin.get("lastName")), searchTerm),
-                        cb.like(cb.lower(profileJoin.get("email")), searchTerm)
-                );
-            });
+            // El índice en memoria resuelve la búsqueda por subcadena; solo si hay demasiadas
+            // coincidencias para una lista IN razonable se recurre al LIKE sobre las tablas.
+            Optional<UserSearchIndex.Match> match = userSearchIndex.match(search);
+            if (match.isPresent()) {
+                spec = spec.and(indexedSearch(match.get(), search));
+            } else {
+                spec = spec.and(likeSearch(search));
+            }
         }
 
         if (role != null && !role.trim().isEmpty()) {
@@ -235,24 +303,118 @@ public class UserServiceImpl implements UserService {
             );
         }
 
-        return userRepository.findAll(spec, pageable).map(this::toSummaryDTO);
+        if (availableDay != null) {
+            LocalTime from = (availableFrom != null) ? availableFrom : LocalTime.MIN;
+            LocalTime to = (availableTo != null) ? availableTo : LocalTime.MAX;
+            if (!from.isBefore(to)) {
+                throw new IllegalArgumentException("La hora de inicio de la franja debe ser anterior a la hora de fin.");
+            }
+            byte[] mask = CompactSchedule.mask(availableDay, from, to);
+            // Los horarios sin copia compacta (varias zonas horarias) se evalúan aquí y entran por ID.
+            List<Long> nonCompactIds = nonCompactUsersCovering(availableDay, from, to);
+            spec = spec.and((root, query, cb) -> cb.or(
+                    cb.isTrue(root.get("bypassAccessRules")),
+                    cb.and(
+                            cb.isTrue(root.get("scheduleCompact")),
+                            cb.isNotNull(root.get("scheduleBitmap")),
+                            cb.equal(cb.function(ScheduleFunctionContributor.SCHEDULE_COVERS, Integer.class,
+                                    root.get("scheduleBitmap"), cb.literal(mask)), 1)
+                    ),
+                    nonCompactIds.isEmpty() ? cb.disjunction() : root.get("id").in(nonCompactIds)
+            ));
+        }
+
+        return spec;
+    }
+
+    /**
+     * IDs de los usuarios sin copia compacta del horario cuyas reglas cubren la franja. Son los horarios
+     * con varias zonas horarias, que son pocos: sus reglas se leen en una sola consulta y se compilan
+     * (con la caché de {@link ScheduleCompiler}) para filtrarlos en memoria.
+     */
+    private List<Long> nonCompactUsersCovering(DayOfWeek day, LocalTime from, LocalTime to) {
+        List<Long> ids = userRepository.findIdsWithoutCompactSchedule();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<UserAccessRule>> rulesByUser = ruleRepository.findByUserIdIn(ids).stream()
+                .collect(Collectors.groupingBy(rule -> rule.getUser().getId()));
+        return ids.stream()
+                .filter(id -> scheduleCompiler.compile(rulesByUser.get(id)).coversLocalSlot(day, from, to))
+                .toList();
+    }
+
+    /**
+     * Búsqueda con los IDs del índice para las filas que no han cambiado desde su última
+     * reconstrucción, y con {@code LIKE} para las modificadas después (por ejemplo, en otro nodo),
+     * que el índice local todavía puede no reflejar.
+     */
+    private static Specification<User> indexedSearch(UserSearchIndex.Match match, String search) {
+        List<Long> ids = match.ids();
+        LocalDateTime indexedAt = match.indexedAt();
+        Specification<User> like = likeSearch(search);
+        return (root, query, cb) -> {
+            Join<User, UserProfile> profileJoin = UserSummaryRepository.profileJoin(root);
+            Predicate changed = cb.or(
+                    cb.greaterThan(root.get("lastUpdatedAt"), indexedAt),
+                    cb.greaterThan(cb.coalesce(profileJoin.<LocalDateTime>get("lastUpdatedAt"), indexedAt), indexedAt)
+            );
+            Predicate indexed = ids.isEmpty() ? cb.disjunction() : cb.and(root.get("id").in(ids), cb.not(changed));
+            return cb.or(indexed, cb.and(changed, like.toPredicate(root, query, cb)));
+        };
+    }
+
+    private static Specification<User> likeSearch(String search) {
+        String searchTerm = "%" + search.toLowerCase() + "%";
+        return (root, query, cb) -> {
+            Join<User, UserProfile> profileJoin = UserSummaryRepository.profileJoin(root);
+            return cb.or(
+                    cb.like(cb.lower(root.get("username")), searchTerm),
+                    cb.like(cb.lower(profileJoin.get("firstName")), searchTerm),
+                    cb.like(cb.lower(profileJoin.get("lastName")), searchTerm),
+                    cb.like(cb.lower(profileJoin.get("email")), searchTerm)
+            );
+        };
+    }
+
+    @Override
+    public List<UserSuggestionDTO> suggest(String query, int limit) {
+        Role viewerRole = currentActor.getRole();
+        Long viewerId = currentActor.getId();
+
+        // Misma jerarquía que el listado: nunca uno mismo ni usuarios eliminados.
+        int pageSize = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        return userSearchIndex.suggest(query, pageSize, entry ->
+                        !entry.deleted()
+                                && !entry.id().equals(viewerId)
+                                && entry.role() != Role.DEVELOPER
+                                && (viewerRole != Role.ADMIN || entry.role() != Role.ADMIN))
+                .stream()
+                .map(entry -> new UserSuggestionDTO(entry.id(), entry.username(), entry.fullName(),
+                        entry.role().name(), entry.active()))
+                .toList();
     }
 
 
     @Override
     @Transactional
     public UserDTO updateUser(Long id, UserUpdateDTO userUpdateDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-        User targetUser = userRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + id));
+        User targetUser = userRepository.findDetailById(id).orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + id));
 
         if (targetUser.isDeleted()) {
             throw new AccessDeniedException("No se puede modificar un usuario que ha sido eliminado.");
         }
 
-        if (!canUpdate(currentUser, targetUser)) {
+        if (!canUpdate(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para actualizar este usuario.");
         }
 
+        // Datos que viajan en el JWT o condicionan el acceso; si cambian, los tokens emitidos dejan de valer.
+        Role previousRole = targetUser.getRole();
+        boolean previousActive = targetUser.isActive();
+        boolean previousBypass = targetUser.isBypassAccessRules();
+        Long previousBranchId = targetUser.getManagedBranch() != null ? targetUser.getManagedBranch().getId() : null;
+
         if (userUpdateDTO.getActive() != null) {
             targetUser.setActive(userUpdateDTO.getActive());
         }
@@ -275,7 +437,7 @@ public class UserServiceImpl implements UserService {
             targetUser.setBypassAccessRules(isBypassingRulesNew);
         }
 
-        if (currentUser.getRole() == Role.DEVELOPER && userUpdateDTO.getRole() != null) {
+        if (currentActor.getRole() == Role.DEVELOPER && userUpdateDTO.getRole() != null) {
             Role newRole = Role.fromString(userUpdateDTO.getRole());
             if (newRole == null) throw new IllegalArgumentException("Rol no válido.");
             targetUser.setRole(newRole);
@@ -296,15 +458,28 @@ public class UserServiceImpl implements UserService {
             }
         }
 
-        targetUser.setUpdatedBy(currentUser);
+        targetUser.setUpdatedBy(currentActor.reference());
 
-        return toDTO(userRepository.save(targetUser));
+        User updatedUser = userRepository.save(targetUser);
+        if (!previousBypass && updatedUser.isBypassAccessRules()) {
+            // Las reglas se acaban de borrar al activar el bypass.
+            userRepository.updateCompactSchedule(updatedUser.getId(), scheduleCompiler.encode(Collections.emptyList()));
+        }
+        Long newBranchId = updatedUser.getManagedBranch() != null ? updatedUser.getManagedBranch().getId() : null;
+        if (previousRole != updatedUser.getRole()
+                || previousActive != updatedUser.isActive()
+                || previousBypass != updatedUser.isBypassAccessRules()
+                || !Objects.equals(previousBranchId, newBranchId)) {
+            userRepository.incrementSecurityVersion(updatedUser.getId());
+        }
+        eventPublisher.publishEvent(new UserChangedEvent(updatedUser.getId()));
+        return toDTO(updatedUser);
     }
 
     @Override
     @Transactional
     public void updateOwnPassword(UserPasswordUpdateDTO passwordUpdateDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado."));
+        User currentUser = userRepository.findById(currentActor.getId()).orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado."));
 
         if (!passwordEncoder.matches(passwordUpdateDTO.getCurrentPassword(), currentUser.getPassword())) {
             throw new IllegalArgumentException("La contraseña actual es incorrecta.");
@@ -317,12 +492,13 @@ public class UserServiceImpl implements UserService {
         currentUser.setPasswordChangedAt(LocalDateTime.now());
         currentUser.setUpdatedBy(currentUser);
         userRepository.save(currentUser);
+        userRepository.incrementSecurityVersion(currentUser.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(currentUser.getId()));
     }
 
     @Override
     @Transactional
     public void updateUserPassword(Long userId, AdminPasswordUpdateDTO passwordUpdateDTO) { // <-- CAMBIO en el parámetro
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         User targetUser = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + userId));
 
@@ -330,20 +506,22 @@ public class UserServiceImpl implements UserService {
             throw new AccessDeniedException("No se puede modificar la contraseña de un usuario que ha sido eliminado.");
         }
 
-        if (!canUpdate(currentUser, targetUser)) {
+        if (!canUpdate(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para cambiar la contraseña de este usuario.");
         }
 
         targetUser.setPassword(passwordEncoder.encode(passwordUpdateDTO.getNewPassword()));
         targetUser.setPasswordChangedAt(LocalDateTime.now());
-        targetUser.setUpdatedBy(currentUser);
+        targetUser.setUpdatedBy(currentActor.reference());
         userRepository.save(targetUser);
+        userRepository.incrementSecurityVersion(targetUser.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(targetUser.getId()));
     }
 
     @Override
     @Transactional
     public UserDTO updateOwnProfile(UserProfileUpdateDTO profileUpdateDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new ResourceNotFoundException("Usuario no autenticado."));
+        User currentUser = userRepository.findDetailById(currentActor.getId()).orElseThrow(() -> new ResourceNotFoundException("Usuario no autenticado."));
         UserProfile profile = currentUser.getProfile();
 
         if (profile == null) {
@@ -360,6 +538,7 @@ public class UserServiceImpl implements UserService {
 
         profile.setUpdatedBy(currentUser);
         userProfileRepository.save(profile);
+        eventPublisher.publishEvent(new UserChangedEvent(currentUser.getId()));
 
         return toDTO(currentUser);
     }
@@ -367,15 +546,14 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public UserDTO updateUserProfile(Long userId, UserProfileUpdateDTO profileUpdateDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-        User targetUser = userRepository.findById(userId)
+        User targetUser = userRepository.findDetailById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + userId));
 
         if (targetUser.isDeleted()) {
             throw new AccessDeniedException("No se puede modificar el perfil de un usuario que ha sido eliminado.");
         }
 
-        if (!canUpdate(currentUser, targetUser)) {
+        if (!canUpdate(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para actualizar el perfil de este usuario.");
         }
 
@@ -417,8 +595,9 @@ public class UserServiceImpl implements UserService {
             profile.setTerminationDate(profileUpdateDTO.getTerminationDate());
         }
 
-        profile.setUpdatedBy(currentUser);
+        profile.setUpdatedBy(currentActor.reference());
         userProfileRepository.save(profile);
+        eventPublisher.publishEvent(new UserChangedEvent(targetUser.getId()));
 
         return toDTO(targetUser);
     }
@@ -426,15 +605,14 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public UserDTO updateDriverDetails(Long userId, DriverDetailUpdateDTO driverDetailUpdateDTO) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-        User targetUser = userRepository.findById(userId)
+        User targetUser = userRepository.findDetailById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + userId));
 
         if (targetUser.isDeleted()) {
             throw new AccessDeniedException("No se pueden modificar los detalles de un usuario que ha sido eliminado.");
         }
 
-        if (!canUpdate(currentUser, targetUser)) {
+        if (!canUpdate(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para actualizar los detalles de este chófer.");
         }
         if (targetUser.getRole() != Role.DRIVER) {
@@ -454,8 +632,9 @@ public class UserServiceImpl implements UserService {
             driverDetail.setLicenseExpirationDate(driverDetailUpdateDTO.getLicenseExpirationDate());
         }
 
-        driverDetail.setUpdatedBy(currentUser);
+        driverDetail.setUpdatedBy(currentActor.reference());
         driverDetailRepository.save(driverDetail);
+        eventPublisher.publishEvent(new UserChangedEvent(targetUser.getId()));
 
         return toDTO(targetUser);
     }
@@ -463,26 +642,26 @@ public class UserServiceImpl implements UserService {
     @Override
     @Transactional
     public void deleteById(Long id) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
         User targetUser = userRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + id));
 
-        if (!canDelete(currentUser, targetUser)) {
+        if (!canDelete(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para eliminar este usuario.");
         }
 
         targetUser.setDeleted(true);
         targetUser.setActive(false);
         targetUser.setDeletedAt(LocalDateTime.now());
-        targetUser.setDeletedBy(currentUser);
+        targetUser.setDeletedBy(currentActor.reference());
 
         userRepository.save(targetUser);
+        userRepository.incrementSecurityVersion(targetUser.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(targetUser.getId()));
     }
 
     @Override
     @Transactional
     public UserDTO restoreUserById(Long id) {
-        User currentUser = getCurrentUserEntity().orElseThrow(() -> new IllegalStateException("Usuario actual no identificado."));
-        User targetUser = userRepository.findById(id)
+        User targetUser = userRepository.findDetailById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + id));
 
         // Validación 1: Verificar que el usuario esté realmente eliminado
@@ -491,7 +670,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // Validación 2: Verificar permisos jerárquicos
-        if (!canUpdate(currentUser, targetUser)) {
+        if (!canUpdate(targetUser)) {
             throw new AccessDeniedException("No tienes permiso para restaurar a este usuario.");
         }
 
@@ -502,12 +681,30 @@ public class UserServiceImpl implements UserService {
         targetUser.setDeletedBy(null);
 
         // Actualizar la auditoría de modificación
-        targetUser.setUpdatedBy(currentUser);
+        targetUser.setUpdatedBy(currentActor.reference());
 
         User restoredUser = userRepository.save(targetUser);
+        userRepository.incrementSecurityVersion(restoredUser.getId());
+        eventPublisher.publishEvent(new UserChangedEvent(restoredUser.getId()));
         return toDTO(restoredUser);
     }
 
+    @Override
+    @Transactional
+    public void revokeAllSessions(Long id) {
+        User targetUser = userRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Usuario no encontrado con ID: " + id));
+
+        if (!canUpdate(targetUser)) {
+            throw new AccessDeniedException("No tienes permiso para cerrar las sesiones de este usuario.");
+        }
+
+        // Subir la versión invalida todos los JWT emitidos; revocar los tokens de refresco impide obtener otros.
+        userRepository.incrementSecurityVersion(targetUser.getId());
+        refreshTokenRepository.revokeAllForUser(targetUser.getId(), LocalDateTime.now());
+        eventPublisher.publishEvent(new UserChangedEvent(targetUser.getId()));
+    }
+
     // --- Métodos de Lógica de Seguridad ---
     private boolean canCreate(Role currentUserRole, Role roleToCreate) {
         if (roleToCreate == Role.DEVELOPER) return false;
@@ -516,33 +713,33 @@ public class UserServiceImpl implements UserService {
 
         return false;
     }
-    private boolean canRead(User currentUser, User targetUser) {
-        if (currentUser.getId().equals(targetUser.getId())) return true;
+    private boolean canRead(User targetUser) {
+        if (currentActor.getId().equals(targetUser.getId())) return true;
         if (targetUser.getRole() == Role.DEVELOPER) return false;
 
-        Role currentUserRole = currentUser.getRole();
+        Role currentUserRole = currentActor.getRole();
 
         if (currentUserRole == Role.DEVELOPER) return true;
         if (currentUserRole == Role.ADMIN) return targetUser.getRole().getLevel() < currentUserRole.getLevel();
 
         return false;
     }
-    private boolean canUpdate(User currentUser, User targetUser) {
-        if (currentUser.getId().equals(targetUser.getId())) return false;
+    private boolean canUpdate(User targetUser) {
+        if (currentActor.getId().equals(targetUser.getId())) return false;
         if (targetUser.getRole() == Role.DEVELOPER) return false;
 
-        Role currentUserRole = currentUser.getRole();
+        Role currentUserRole = currentActor.getRole();
 
         if (currentUserRole == Role.DEVELOPER) return true;
         if (currentUserRole == Role.ADMIN) return targetUser.getRole().getLevel() < currentUserRole.getLevel();
 
         return false;
     }
-    private boolean canDelete(User currentUser, User targetUser) {
-        if (currentUser.getId().equals(targetUser.getId())) return false;
+    private boolean canDelete(User targetUser) {
+        if (currentActor.getId().equals(targetUser.getId())) return false;
         if (targetUser.getRole() == Role.DEVELOPER) return false;
 
-        Role currentUserRole = currentUser.getRole();
+        Role currentUserRole = currentActor.getRole();
 
         if (currentUserRole == Role.DEVELOPER) return true;
         if (currentUserRole == Role.ADMIN) return targetUser.getRole().getLevel() < currentUserRole.getLevel();
@@ -551,28 +748,6 @@ public class UserServiceImpl implements UserService {
     }
 
     // --- Métodos Auxiliares y de Mapeo ---
-    private UserSummaryDTO toSummaryDTO(User user) {
-        if (user == null) return null;
-
-        String fullName = (user.getProfile() != null)
-                ? user.getProfile().getFirstName() + " " + user.getProfile().getLastName()
-                : "N/A";
-
-        String branchName = (user.getManagedBranch() != null)
-                ? user.getManagedBranch().getName()
-                : null;
-
-        // --- LÍNEA A MODIFICAR ---
-        return new UserSummaryDTO(
-                user.getId(),
-                fullName,
-                user.getUsername(),
-                user.getRole().name(),
-                user.isActive(),
-                branchName,
-                user.isDeleted()
-        );
-    }
     private UserProfileViewDTO toUserProfileViewDTO(User user) {
 
         if (user == null) return null;
@@ -646,23 +821,26 @@ public class UserServiceImpl implements UserService {
         userDTO.setCreatedAt(user.getCreatedAt());
         userDTO.setLastUpdatedAt(user.getLastUpdatedAt());
 
+        // Los nombres de auditoría salen del resolvedor: solo se lee el ID de cada relación.
+        User deletedBy = user.isDeleted() ? user.getDeletedBy() : null;
+        Map<Long, AuditNameResolver.AuditName> auditNames =
+                auditNameResolver.resolveUsers(user.getCreatedBy(), user.getUpdatedBy(), deletedBy);
+
         if (user.getCreatedBy() != null) {
             userDTO.setCreatedById(user.getCreatedBy().getId());
-            userDTO.setCreatedByUsername(user.getCreatedBy().getUsername());
-
-            if (user.getCreatedBy().getProfile() != null) {
-                String fullName = user.getCreatedBy().getProfile().getFirstName() + " " + user.getCreatedBy().getProfile().getLastName();
-                userDTO.setCreatedByFullName(fullName);
+            AuditNameResolver.AuditName createdBy = auditNames.get(user.getCreatedBy().getId());
+            if (createdBy != null) {
+                userDTO.setCreatedByUsername(createdBy.username());
+                userDTO.setCreatedByFullName(createdBy.fullName());
             }
         }
 
         if (user.getUpdatedBy() != null) {
             userDTO.setUpdatedById(user.getUpdatedBy().getId());
-            userDTO.setUpdatedByUsername(user.getUpdatedBy().getUsername());
-
-            if (user.getUpdatedBy().getProfile() != null) {
-                String fullName = user.getUpdatedBy().getProfile().getFirstName() + " " + user.getUpdatedBy().getProfile().getLastName();
-                userDTO.setUpdatedByFullName(fullName);
+            AuditNameResolver.AuditName updatedBy = auditNames.get(user.getUpdatedBy().getId());
+            if (updatedBy != null) {
+                userDTO.setUpdatedByUsername(updatedBy.username());
+                userDTO.setUpdatedByFullName(updatedBy.fullName());
             }
         }
 
@@ -696,13 +874,12 @@ public class UserServiceImpl implements UserService {
         if (user.isDeleted()) {
             userDTO.setDeletedAt(user.getDeletedAt());
 
-            if (user.getDeletedBy() != null) {
-                userDTO.setDeletedById(user.getDeletedBy().getId());
-                userDTO.setDeletedByUsername(user.getDeletedBy().getUsername());
-
-                if (user.getDeletedBy().getProfile() != null) {
-                    String fullName = user.getDeletedBy().getProfile().getFirstName() + " " + user.getDeletedBy().getProfile().getLastName();
-                    userDTO.setDeletedByFullName(fullName);
+            if (deletedBy != null) {
+                userDTO.setDeletedById(deletedBy.getId());
+                AuditNameResolver.AuditName deletedByName = auditNames.get(deletedBy.getId());
+                if (deletedByName != null) {
+                    userDTO.setDeletedByUsername(deletedByName.username());
+                    userDTO.setDeletedByFullName(deletedByName.fullName());
                 }
             }
         }
@@ -744,12 +921,4 @@ public class UserServiceImpl implements UserService {
     private UserAccessRuleDTO toAccessRuleDTO(UserAccessRule rule) {
         return new UserAccessRuleDTO(rule.getId(), rule.getUser().getId(), rule.getDayOfWeek().toString(), rule.getStartTime(), rule.getEndTime(), rule.getAccessTimezone(), rule.isActive());
     }
-    private Optional<User> getCurrentUserEntity() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || !authentication.isAuthenticated() || !(authentication.getPrincipal() instanceof UserDetailsImpl)) {
-            return Optional.empty();
-        }
-        Long userId = ((UserDetailsImpl) authentication.getPrincipal()).getId();
-        return userRepository.findById(userId);
-    }
 }
\ No newline at end of file
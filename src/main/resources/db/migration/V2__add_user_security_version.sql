@@ -0,0 +1,4 @@
+-- Version de seguridad por usuario. Se incrementa al cambiar contrasena, rol, sucursal,
+-- estado activo o reglas de acceso; los JWT emitidos con una version anterior dejan de ser validos.
+ALTER TABLE users
+    ADD COLUMN security_version BIGINT NOT NULL DEFAULT 0;
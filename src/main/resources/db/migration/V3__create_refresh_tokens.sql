@@ -0,0 +1,15 @@
+CREATE TABLE refresh_tokens (
+    refresh_token_id BIGINT      NOT NULL AUTO_INCREMENT,
+    token_hash       VARCHAR(64) NOT NULL,
+    user_id          BIGINT      NOT NULL,
+    family_id        VARCHAR(36) NOT NULL,
+    auth_time        DATETIME(6) NOT NULL,
+    expires_at       DATETIME(6) NOT NULL,
+    revoked_at       DATETIME(6) NULL,
+    created_at       DATETIME(6) NOT NULL,
+    PRIMARY KEY (refresh_token_id),
+    CONSTRAINT uk_refresh_tokens_token_hash UNIQUE (token_hash),
+    CONSTRAINT fk_refresh_tokens_user FOREIGN KEY (user_id) REFERENCES users (user_id),
+    INDEX idx_refresh_tokens_family (family_id),
+    INDEX idx_refresh_tokens_user (user_id)
+);
@@ -0,0 +1,8 @@
+CREATE TABLE revoked_tokens (
+    jti        VARCHAR(36) NOT NULL,
+    user_id    BIGINT      NULL,
+    expires_at DATETIME(6) NOT NULL,
+    revoked_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (jti),
+    INDEX idx_revoked_tokens_expires_at (expires_at)
+);
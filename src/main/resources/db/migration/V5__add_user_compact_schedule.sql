@@ -0,0 +1,12 @@
+-- Copia compacta del horario semanal en la fila del usuario: mapa de bits por minuto de la semana
+-- local (10080 bits) y su zona horaria. La mantienen los servicios que modifican reglas de acceso.
+-- schedule_compact = FALSE significa que hay que compilar el horario desde user_access_rules
+-- (horarios con varias zonas, o filas que aun no se han rellenado al arrancar la aplicacion).
+ALTER TABLE users
+    ADD COLUMN schedule_timezone VARCHAR(60) NULL,
+    ADD COLUMN schedule_bitmap BINARY(1260) NULL,
+    ADD COLUMN access_rules_assigned BOOLEAN NOT NULL DEFAULT FALSE,
+    ADD COLUMN schedule_compact BOOLEAN NOT NULL DEFAULT FALSE;
+
+UPDATE users u
+SET u.access_rules_assigned = EXISTS (SELECT 1 FROM user_access_rules r WHERE r.user_id = u.user_id);
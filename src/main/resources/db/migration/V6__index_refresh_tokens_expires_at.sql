@@ -0,0 +1,2 @@
+-- La purga de tokens de refresco busca por expiracion las familias que siguen vigentes.
+CREATE INDEX idx_refresh_tokens_expires_at ON refresh_tokens (expires_at);
@@ -0,0 +1,335 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import com.muebleria.mctecommercebackend.dto.BranchDTO;
+import com.muebleria.mctecommercebackend.dto.UserDTO;
+import com.muebleria.mctecommercebackend.dto.UserProfileViewDTO;
+import com.muebleria.mctecommercebackend.dto.UserSummaryDTO;
+import com.muebleria.mctecommercebackend.model.Branch;
+import com.muebleria.mctecommercebackend.model.DriverDetail;
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserAccessRule;
+import com.muebleria.mctecommercebackend.model.UserProfile;
+import com.muebleria.mctecommercebackend.model.UserStatus;
+import com.muebleria.mctecommercebackend.security.schedule.BranchRosterIndex;
+import com.muebleria.mctecommercebackend.security.schedule.ScheduleCompiler;
+import com.muebleria.mctecommercebackend.security.user.CurrentActor;
+import com.muebleria.mctecommercebackend.security.user.UserDetailsImpl;
+import com.muebleria.mctecommercebackend.security.user.UserPrincipalSnapshot;
+import com.muebleria.mctecommercebackend.service.impl.AuditNameResolver;
+import com.muebleria.mctecommercebackend.service.impl.BranchDirectoryIndex;
+import com.muebleria.mctecommercebackend.service.impl.BranchServiceImpl;
+import com.muebleria.mctecommercebackend.service.impl.ListCountCache;
+import com.muebleria.mctecommercebackend.service.impl.UserSearchIndex;
+import com.muebleria.mctecommercebackend.service.impl.UserServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.LazyInitializationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Comprueba que cada caso de uso de lectura se sirve solo con su plan de {@code FetchPlans}.
+ * <p>
+ * Las pruebas no abren transacción y los servicios se construyen a mano, sin el proxy de
+ * {@code @Transactional}: cada consulta del repositorio devuelve entidades ya desconectadas, igual
+ * que con {@code open-in-view} desactivado. Si el mapeo toca una relación fuera del plan,
+ * Hibernate lanza {@link LazyInitializationException} y la prueba falla.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FetchPlansTest {
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private BranchRepository branchRepository;
+    @Autowired
+    private UserAccessRuleRepository ruleRepository;
+    @Autowired
+    private UserProfileRepository userProfileRepository;
+    @Autowired
+    private DriverDetailRepository driverDetailRepository;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private int n;
+    private Long developerId;
+    private Long driverId;
+    private String driverUsername;
+    private Long branchId;
+
+    @BeforeEach
+    void persistDriverWithEverything() {
+        n = SEQUENCE.incrementAndGet();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User developer = user("dev" + n, Role.DEVELOPER, null);
+            entityManager.persist(developer);
+            entityManager.persist(profile(developer, "Ana", "Dev", developer));
+
+            Branch branch = new Branch();
+            branch.setName("Sucursal " + n);
+            branch.setOrderPrefix("S" + n);
+            branch.setCreatedBy(developer);
+            branch.setUpdatedBy(developer);
+            entityManager.persist(branch);
+
+            User driver = user("driver" + n, Role.DRIVER, developer);
+            driver.setManagedBranch(branch);
+            entityManager.persist(driver);
+            entityManager.persist(profile(driver, "Luis", "Chofer", developer));
+
+            DriverDetail driverDetail = new DriverDetail();
+            driverDetail.setUser(driver);
+            driverDetail.setLicenseNumber("LIC-" + n);
+            driverDetail.setCreatedBy(developer);
+            driverDetail.setUpdatedBy(developer);
+            entityManager.persist(driverDetail);
+
+            UserAccessRule rule = new UserAccessRule();
+            rule.setUser(driver);
+            rule.setDayOfWeek(DayOfWeek.MONDAY);
+            rule.setStartTime(LocalTime.of(9, 0));
+            rule.setEndTime(LocalTime.of(18, 0));
+            rule.setAccessTimezone("America/Mexico_City");
+            rule.setCreatedBy(developer);
+            rule.setUpdatedBy(developer);
+            entityManager.persist(rule);
+
+            developerId = developer.getId();
+            driverId = driver.getId();
+            driverUsername = driver.getUsername();
+            branchId = branch.getId();
+        });
+    }
+
+    @Test
+    void lazyLoadOutsideAPlanFails() {
+        // Sin plan, la colección queda sin cargar: es lo que detectan el resto de pruebas.
+        User user = userRepository.findById(driverId).orElseThrow();
+
+        assertThatThrownBy(() -> user.getAccessRules().size()).isInstanceOf(LazyInitializationException.class);
+    }
+
+    @Test
+    void detailViewIsServedByItsPlan() {
+        UserDTO dto = userService().findById(driverId).orElseThrow();
+
+        assertThat(dto.getManagedBranchName()).isEqualTo("Sucursal " + n);
+        assertThat(dto.getProfile().getFirstName()).isEqualTo("Luis");
+        assertThat(dto.getDriverDetails().getLicenseNumber()).isEqualTo("LIC-" + n);
+        assertThat(dto.getAccessRules()).hasSize(1);
+        assertThat(dto.getCreatedByFullName()).isEqualTo("Ana Dev");
+    }
+
+    @Test
+    void detailByUsernameIsServedByItsPlan() {
+        UserDTO dto = userService().findByUsername(driverUsername).orElseThrow();
+
+        assertThat(dto.getAccessRules()).hasSize(1);
+    }
+
+    @Test
+    void profileViewIsServedByItsPlan() {
+        UserProfileViewDTO dto = userService().findMyProfileById(driverId).orElseThrow();
+
+        assertThat(dto.getProfile().getLastName()).isEqualTo("Chofer");
+        assertThat(dto.getAccessRules()).hasSize(1);
+    }
+
+    @Test
+    void loginIsServedByItsPlan() {
+        User user = userRepository.findByUsername(driverUsername).orElseThrow();
+
+        UserDetailsImpl principal = UserDetailsImpl.build(user);
+        UserPrincipalSnapshot snapshot = UserPrincipalSnapshot.from(user, new ScheduleCompiler(ruleRepository).scheduleOf(user));
+
+        assertThat(principal.getManagedBranchId()).isEqualTo(branchId);
+        assertThat(snapshot.getFirstName()).isEqualTo("Luis");
+    }
+
+    @Test
+    void principalAndStaffLookupsLoadTheirPlans() {
+        User principal = userRepository.findPrincipalById(driverId).orElseThrow();
+        assertThat(Hibernate.isInitialized(principal.getManagedBranch())).isTrue();
+        assertThat(Hibernate.isInitialized(principal.getProfile())).isTrue();
+
+        User staff = userRepository.findStaffById(driverId).orElseThrow();
+        assertThat(Hibernate.isInitialized(staff.getAccessRules())).isTrue();
+
+        List<User> indexed = userRepository.findAllForSearchIndex();
+        assertThat(indexed).allMatch(user -> Hibernate.isInitialized(user.getProfile()));
+    }
+
+    @Test
+    void listIsServedByProjections() {
+        List<UserSummaryDTO> rows = userService()
+                .findAll(PageRequest.of(0, 50), UserStatus.ALL, null, null, null, null, null, null, false)
+                .getContent();
+
+        assertThat(rows).anySatisfy(row -> {
+            assertThat(row.getId()).isEqualTo(driverId);
+            assertThat(row.getManagedBranchName()).isEqualTo("Sucursal " + n);
+        });
+    }
+
+    @Test
+    void availabilityFilterIsResolvedOnTheCompactSchedule() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> userRepository.updateCompactSchedule(
+                driverId, new ScheduleCompiler(ruleRepository).encode(ruleRepository.findByUserId(driverId))));
+
+        // El chófer tiene el lunes de 09:00 a 18:00 (hora de Ciudad de México).
+        assertThat(availableIds(DayOfWeek.MONDAY, LocalTime.of(10, 0), LocalTime.of(12, 0))).contains(driverId);
+        assertThat(availableIds(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(18, 0))).contains(driverId);
+        assertThat(availableIds(DayOfWeek.MONDAY, LocalTime.of(8, 0), LocalTime.of(10, 0))).doesNotContain(driverId);
+        assertThat(availableIds(DayOfWeek.MONDAY, LocalTime.of(17, 0), LocalTime.of(18, 1))).doesNotContain(driverId);
+        assertThat(availableIds(DayOfWeek.TUESDAY, LocalTime.of(10, 0), LocalTime.of(12, 0))).doesNotContain(driverId);
+    }
+
+    @Test
+    void availabilityFilterEvaluatesMultiZoneSchedulesInMemory() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            UserAccessRule tokyo = new UserAccessRule();
+            tokyo.setUser(entityManager.getReference(User.class, driverId));
+            tokyo.setDayOfWeek(DayOfWeek.TUESDAY);
+            tokyo.setStartTime(LocalTime.of(9, 0));
+            tokyo.setEndTime(LocalTime.of(13, 0));
+            tokyo.setAccessTimezone("Asia/Tokyo");
+            tokyo.setCreatedBy(entityManager.getReference(User.class, developerId));
+            tokyo.setUpdatedBy(entityManager.getReference(User.class, developerId));
+            entityManager.persist(tokyo);
+            entityManager.flush();
+            userRepository.updateCompactSchedule(driverId,
+                    new ScheduleCompiler(ruleRepository).encode(ruleRepository.findByUserId(driverId)));
+        });
+        assertThat(userRepository.findById(driverId).orElseThrow().isScheduleCompact()).isFalse();
+
+        // Lunes 09:00-18:00 en Ciudad de México y martes 09:00-13:00 en Tokio, cada uno en su hora local.
+        assertThat(availableIds(DayOfWeek.MONDAY, LocalTime.of(10, 0), LocalTime.of(12, 0))).contains(driverId);
+        assertThat(availableIds(DayOfWeek.TUESDAY, LocalTime.of(9, 0), LocalTime.of(13, 0))).contains(driverId);
+        assertThat(availableIds(DayOfWeek.MONDAY, LocalTime.of(8, 0), LocalTime.of(10, 0))).doesNotContain(driverId);
+        assertThat(availableIds(DayOfWeek.TUESDAY, LocalTime.of(12, 0), LocalTime.of(14, 0))).doesNotContain(driverId);
+    }
+
+    @Test
+    void searchResolvesRowsChangedAfterTheIndexWithLike() {
+        UserSearchIndex index = mock(UserSearchIndex.class);
+        LocalDateTime beforeFixture = LocalDateTime.now().minusHours(1);
+        LocalDateTime afterFixture = LocalDateTime.now().plusHours(1);
+
+        // Índice reconstruido antes de crear al chófer (por ejemplo, en otro nodo): no lo conoce.
+        when(index.match("chofer")).thenReturn(Optional.of(new UserSearchIndex.Match(List.of(), beforeFixture)));
+        assertThat(searchIds(index, "chofer")).contains(driverId);
+
+        // Índice desfasado que aún lo da como coincidencia, pero el chófer cambió después.
+        when(index.match("nadie")).thenReturn(Optional.of(new UserSearchIndex.Match(List.of(driverId), beforeFixture)));
+        assertThat(searchIds(index, "nadie")).doesNotContain(driverId);
+
+        // Con el índice al día, sus IDs se usan tal cual.
+        when(index.match("indexado")).thenReturn(Optional.of(new UserSearchIndex.Match(List.of(driverId), afterFixture)));
+        assertThat(searchIds(index, "indexado")).containsExactly(driverId);
+    }
+
+    @Test
+    void branchDetailReadsAuditUsersById() {
+        BranchDTO dto = branchService().findById(branchId).orElseThrow();
+
+        assertThat(dto.getCreatedByFullName()).isEqualTo("Ana Dev");
+    }
+
+    private List<Long> availableIds(DayOfWeek day, LocalTime from, LocalTime to) {
+        return userService()
+                .findAll(PageRequest.of(0, 200), UserStatus.ALL, null, null, null, day, from, to, false)
+                .getContent().stream()
+                .map(UserSummaryDTO::getId)
+                .toList();
+    }
+
+    private List<Long> searchIds(UserSearchIndex index, String search) {
+        return userService(index)
+                .findAll(PageRequest.of(0, 200), UserStatus.ALL, search, null, null, null, null, null, false)
+                .getContent().stream()
+                .map(UserSummaryDTO::getId)
+                .toList();
+    }
+
+    private UserServiceImpl userService() {
+        return userService(mock(UserSearchIndex.class));
+    }
+
+    private UserServiceImpl userService(UserSearchIndex userSearchIndex) {
+        return new UserServiceImpl(userRepository, branchRepository, mock(PasswordEncoder.class), ruleRepository,
+                userProfileRepository, driverDetailRepository, mock(ApplicationEventPublisher.class),
+                refreshTokenRepository, new ScheduleCompiler(ruleRepository), new ListCountCache(30000, 100), 1000,
+                userSearchIndex, auditNameResolver(), developer());
+    }
+
+    private BranchServiceImpl branchService() {
+        return new BranchServiceImpl(branchRepository, mock(BranchRosterIndex.class), mock(BranchDirectoryIndex.class),
+                auditNameResolver(), new ListCountCache(30000, 100), developer(),
+                mock(ApplicationEventPublisher.class), 1000);
+    }
+
+    private AuditNameResolver auditNameResolver() {
+        return new AuditNameResolver(userRepository, 100, 60000);
+    }
+
+    private CurrentActor developer() {
+        CurrentActor actor = mock(CurrentActor.class);
+        when(actor.getId()).thenReturn(developerId);
+        when(actor.getRole()).thenReturn(Role.DEVELOPER);
+        when(actor.hasRole(Role.DEVELOPER)).thenReturn(true);
+        return actor;
+    }
+
+    private static User user(String username, Role role, User createdBy) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("{noop}secreto");
+        user.setRole(role);
+        user.setCreatedBy(createdBy);
+        user.setUpdatedBy(createdBy);
+        return user;
+    }
+
+    private static UserProfile profile(User user, String firstName, String lastName, User createdBy) {
+        UserProfile profile = new UserProfile();
+        profile.setUser(user);
+        profile.setFirstName(firstName);
+        profile.setLastName(lastName);
+        profile.setCreatedBy(createdBy);
+        profile.setUpdatedBy(createdBy);
+        return profile;
+    }
+}
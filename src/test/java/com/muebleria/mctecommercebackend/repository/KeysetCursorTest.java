@@ -0,0 +1,60 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Token de continuación de los listados por clave: ida y vuelta, claves con el separador dentro y
+ * tokens que no salieron de {@link KeysetCursor#encode()}.
+ */
+class KeysetCursorTest {
+
+    @Test
+    void decodeRoundTripsEncode() {
+        for (KeysetCursor cursor : new KeysetCursor[]{
+                new KeysetCursor("ana.lopez", 42L),
+                new KeysetCursor("", 1L),
+                new KeysetCursor("Sucursal Peñón · Centro", Long.MAX_VALUE),
+                new KeysetCursor("línea 1\nlínea 2\n", 7L),
+                new KeysetCursor("\n", 8L),
+                new KeysetCursor("12\n34", 9L)}) {
+            String token = cursor.encode();
+
+            assertThat(token).doesNotContain("=", "+", "/", "\n");
+            assertThat(KeysetCursor.decode(token)).isEqualTo(cursor);
+        }
+    }
+
+    @Test
+    void emptyTokenIsTheStartOfTheList() {
+        assertThat(KeysetCursor.decode(null)).isNull();
+        assertThat(KeysetCursor.decode("")).isNull();
+        assertThat(KeysetCursor.decode("   ")).isNull();
+    }
+
+    @Test
+    void rejectsTokensThatWereNotIssuedByEncode() {
+        assertInvalid("no es base64!");
+        assertInvalid(token("sin separador"));
+        assertInvalid(token("\nsin id"));
+        assertInvalid(token("abc\nana"));
+        assertInvalid(token("null\nana"));
+        assertInvalid(token("99999999999999999999\nana"));
+    }
+
+    private static void assertInvalid(String token) {
+        assertThatThrownBy(() -> KeysetCursor.decode(token))
+                .as("token %s", token)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("El cursor de paginación no es válido.");
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
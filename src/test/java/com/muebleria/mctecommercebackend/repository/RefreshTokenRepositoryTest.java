@@ -0,0 +1,70 @@
+package com.muebleria.mctecommercebackend.repository;
+
+import com.muebleria.mctecommercebackend.model.RefreshToken;
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Purga de tokens de refresco: solo se borran las familias expiradas por completo, para que la
+ * detección de reutilización siga viendo los tokens rotados de las sesiones vigentes.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+class RefreshTokenRepositoryTest {
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Test
+    void deleteExpiredKeepsFamiliesThatAreStillValid() {
+        LocalDateTime now = LocalDateTime.now();
+        User user = new User();
+        user.setUsername("refresco");
+        user.setPassword("{noop}secreto");
+        user.setRole(Role.VENDEDOR);
+        entityManager.persist(user);
+
+        // Sesión vigente: el token rotado ya expiró, pero su sucesor no.
+        RefreshToken rotated = token(user, "viva", now.minusDays(8), now.minusDays(1), true);
+        RefreshToken current = token(user, "viva", now.minusDays(1), now.plusDays(6), false);
+        // Sesión caducada por completo, con un token rotado y el último sin usar.
+        RefreshToken oldRotated = token(user, "caducada", now.minusDays(20), now.minusDays(13), true);
+        RefreshToken oldLast = token(user, "caducada", now.minusDays(13), now.minusDays(6), false);
+        entityManager.flush();
+
+        int purged = refreshTokenRepository.deleteExpired(now);
+        entityManager.clear();
+
+        assertThat(purged).isEqualTo(2);
+        assertThat(refreshTokenRepository.findById(rotated.getId())).isPresent();
+        assertThat(refreshTokenRepository.findById(current.getId())).isPresent();
+        assertThat(refreshTokenRepository.findById(oldRotated.getId())).isEmpty();
+        assertThat(refreshTokenRepository.findById(oldLast.getId())).isEmpty();
+    }
+
+    private RefreshToken token(User user, String family, LocalDateTime issuedAt, LocalDateTime expiresAt, boolean revoked) {
+        RefreshToken token = new RefreshToken();
+        token.setTokenHash(UUID.randomUUID().toString().replace("-", ""));
+        token.setUser(user);
+        token.setFamilyId(family);
+        token.setAuthTime(issuedAt);
+        token.setExpiresAt(expiresAt);
+        token.setRevokedAt(revoked ? expiresAt.minusDays(6) : null);
+        entityManager.persist(token);
+        return token;
+    }
+}
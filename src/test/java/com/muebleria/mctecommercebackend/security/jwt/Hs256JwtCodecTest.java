@@ -0,0 +1,239 @@
+package com.muebleria.mctecommercebackend.security.jwt;
+
+import com.muebleria.mctecommercebackend.model.Role;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Firma y verificación de {@link Hs256JwtCodec}, contrastadas con jjwt, que sigue siendo el camino
+ * para cualquier cabecera que el codificador no reconozca.
+ */
+class Hs256JwtCodecTest {
+
+    private static final String SECRET = "SuperSecretoParaFirmarTokensJWTDeMuebleriaComercialTabascoEsLargoYSeguroConAlMenos32Caracteres";
+    private static final byte[] SECRET_BYTES = SECRET.getBytes(StandardCharsets.UTF_8);
+    private static final SecretKey KEY = Keys.hmacShaKeyFor(SECRET_BYTES);
+
+    private final Hs256JwtCodec codec = new Hs256JwtCodec(SECRET_BYTES);
+
+    @Test
+    void encodedTokenVerifiesWithBothCodecAndJjwt() {
+        long now = Instant.now().getEpochSecond();
+        String token = codec.encode("jti-1", "ana", 7L, "ADMIN", 3L, true, 4L, now, now + 600);
+
+        VerifiedJwt verified = codec.verify(token);
+        assertThat(verified.getTokenId()).isEqualTo("jti-1");
+        assertThat(verified.getSubject()).isEqualTo("ana");
+        assertThat(verified.getUserId()).isEqualTo(7L);
+        assertThat(verified.getRole()).isEqualTo(Role.ADMIN);
+        assertThat(verified.getManagedBranchId()).isEqualTo(3L);
+        assertThat(verified.getActive()).isTrue();
+        assertThat(verified.getSecurityVersion()).isEqualTo(4L);
+        assertThat(verified.getIssuedAt()).isEqualTo(Instant.ofEpochSecond(now));
+        assertThat(verified.getExpiration()).isEqualTo(Instant.ofEpochSecond(now + 600));
+
+        Claims claims = Jwts.parser().verifyWith(KEY).build().parseSignedClaims(token).getPayload();
+        assertThat(claims.getId()).isEqualTo("jti-1");
+        assertThat(claims.get(JwtUtils.CLAIM_USER_ID, Long.class)).isEqualTo(7L);
+        assertThat(claims.getExpiration().toInstant()).isEqualTo(Instant.ofEpochSecond(now + 600));
+    }
+
+    @Test
+    void nullBranchAndRoleAreOmitted() {
+        long now = Instant.now().getEpochSecond();
+        VerifiedJwt verified = codec.verify(codec.encode("jti-2", "luis", 8L, null, null, false, 0L, now, now + 600));
+
+        assertThat(verified.getRole()).isNull();
+        assertThat(verified.getManagedBranchId()).isNull();
+        assertThat(verified.getActive()).isFalse();
+        assertThat(verified.hasAuthorizationClaims()).isFalse();
+    }
+
+    @Test
+    void legacyJjwtTokenVerifiesWithTheSameClaims() {
+        Instant now = Instant.now();
+        String legacy = Jwts.builder()
+                .id("jti-3")
+                .subject("ana")
+                .claim(JwtUtils.CLAIM_USER_ID, 7L)
+                .claim(JwtUtils.CLAIM_ROLE, "GESTOR_SUCURSAL")
+                .claim(JwtUtils.CLAIM_ACTIVE, true)
+                .claim(JwtUtils.CLAIM_SECURITY_VERSION, 2L)
+                .issuedAt(Date.from(now))
+                .expiration(Date.from(now.plusSeconds(600)))
+                .signWith(KEY, Jwts.SIG.HS256) // Como firmaba JwtUtils antes del codificador
+                .compact();
+        assertThat(legacy).startsWith(base64("{\"alg\":\"HS256\"}") + ".");
+
+        VerifiedJwt verified = codec.verify(legacy);
+        Claims claims = Jwts.parser().verifyWith(KEY).build().parseSignedClaims(legacy).getPayload();
+
+        assertThat(verified).isNotNull();
+        assertThat(verified.getTokenId()).isEqualTo(claims.getId());
+        assertThat(verified.getSubject()).isEqualTo(claims.getSubject());
+        assertThat(verified.getUserId()).isEqualTo(claims.get(JwtUtils.CLAIM_USER_ID, Long.class));
+        assertThat(verified.getRole()).isEqualTo(Role.GESTOR_SUCURSAL);
+        assertThat(verified.getSecurityVersion()).isEqualTo(claims.get(JwtUtils.CLAIM_SECURITY_VERSION, Long.class));
+        assertThat(verified.getExpiration()).isEqualTo(claims.getExpiration().toInstant());
+    }
+
+    @Test
+    void tamperedPayloadFailsTheSignature() {
+        String[] parts = validToken().split("\\.");
+        String forged = parts[0] + "." + base64(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("\"uid\":7", "\"uid\":1")) + "." + parts[2];
+
+        assertThatThrownBy(() -> codec.verify(forged)).isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void tamperedSignatureFails() {
+        String token = validToken();
+        int signatureStart = token.lastIndexOf('.') + 1;
+        char first = token.charAt(signatureStart);
+        String forged = token.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A') + token.substring(signatureStart + 1);
+
+        assertThatThrownBy(() -> codec.verify(forged)).isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void tokenFromAnotherKeyFails() {
+        long now = Instant.now().getEpochSecond();
+        Hs256JwtCodec other = new Hs256JwtCodec("OtroSecretoDistintoConLongitudSuficienteParaHmacSha256!!".getBytes(StandardCharsets.UTF_8));
+        String token = other.encode("jti-4", "ana", 7L, "ADMIN", null, true, 0L, now, now + 600);
+
+        assertThatThrownBy(() -> codec.verify(token)).isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void signatureOfTheWrongLengthFails() {
+        String token = validToken();
+        String signingInput = token.substring(0, token.lastIndexOf('.'));
+        byte[] signature = Base64.getUrlDecoder().decode(token.substring(token.lastIndexOf('.') + 1));
+
+        String truncated = signingInput + "." + base64(Arrays.copyOf(signature, 16));
+        String extended = signingInput + "." + base64(Arrays.copyOf(signature, 33));
+
+        assertThatThrownBy(() -> codec.verify(truncated)).isInstanceOf(SignatureException.class);
+        assertThatThrownBy(() -> codec.verify(extended)).isInstanceOf(SignatureException.class);
+        assertThatThrownBy(() -> codec.verify(signingInput + ".no*es*base64")).isInstanceOf(MalformedJwtException.class);
+    }
+
+    @Test
+    void missingOrExtraSegmentsAreLeftToJjwt() {
+        String token = validToken();
+        String twoSegments = token.substring(0, token.lastIndexOf('.'));
+
+        assertThat(codec.verify(twoSegments)).isNull();
+        assertThat(codec.verify(token + ".extra")).isNull();
+        assertThat(codec.verify("sin-puntos")).isNull();
+
+        JwtUtils jwtUtils = jwtUtils();
+        assertThat(jwtUtils.verifyJwtToken(twoSegments)).isEmpty();
+        assertThat(jwtUtils.verifyJwtToken(token + ".extra")).isEmpty();
+        assertThat(jwtUtils.verifyJwtToken(token)).isPresent();
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        long now = Instant.now().getEpochSecond();
+        String token = codec.encode("jti-5", "ana", 7L, "ADMIN", null, true, 0L, now - 1200, now - 600);
+
+        assertThatThrownBy(() -> codec.verify(token)).isInstanceOf(ExpiredJwtException.class);
+        assertThat(jwtUtils().verifyJwtToken(token)).isEmpty();
+    }
+
+    @Test
+    void tokenWithoutExpirationIsRejected() throws Exception {
+        long now = Instant.now().getEpochSecond();
+        String signingInput = Hs256JwtCodec.HEADER + "." + base64("{\"jti\":\"jti-6\",\"sub\":\"ana\",\"uid\":7,\"iat\":" + now + "}");
+        String token = signingInput + "." + base64(hmac(signingInput));
+
+        assertThatThrownBy(() -> codec.verify(token)).isInstanceOf(MalformedJwtException.class);
+
+        String jjwtToken = Jwts.builder().header().add("typ", "JWT").add("kid", "k1").and()
+                .subject("ana").signWith(KEY).compact();
+        assertThat(jwtUtils().verifyJwtToken(jjwtToken)).isEmpty();
+    }
+
+    @Test
+    void unknownHeadersFallBackToJjwt() {
+        Instant now = Instant.now();
+        String withKeyId = Jwts.builder().header().add("kid", "k1").and()
+                .subject("ana")
+                .expiration(Date.from(now.plusSeconds(600)))
+                .signWith(KEY)
+                .compact();
+        String forgedWithKeyId = withKeyId.substring(0, withKeyId.lastIndexOf('.') + 1) + base64(new byte[32]);
+
+        assertThat(codec.verify(withKeyId)).isNull();
+        JwtUtils jwtUtils = jwtUtils();
+        assertThat(jwtUtils.verifyJwtToken(withKeyId)).get().extracting(VerifiedJwt::getSubject).isEqualTo("ana");
+        assertThat(jwtUtils.verifyJwtToken(forgedWithKeyId)).isEmpty();
+    }
+
+    @Test
+    void unsignedTokenIsRejectedByJjwt() {
+        long now = Instant.now().getEpochSecond();
+        String payload = validToken().split("\\.")[1];
+        String algNone = base64("{\"alg\":\"none\"}") + "." + payload + ".";
+        String algNoneWithTyp = base64("{\"alg\":\"none\",\"typ\":\"JWT\"}") + "." + payload + ".";
+        String unsecured = Jwts.builder().subject("ana").expiration(Date.from(Instant.ofEpochSecond(now + 600))).compact();
+
+        assertThat(codec.verify(algNone)).isNull();
+        assertThat(codec.verify(algNoneWithTyp)).isNull();
+        JwtUtils jwtUtils = jwtUtils();
+        assertThat(jwtUtils.verifyJwtToken(algNone)).isEmpty();
+        assertThat(jwtUtils.verifyJwtToken(algNoneWithTyp)).isEmpty();
+        assertThat(jwtUtils.verifyJwtToken(unsecured)).isEmpty();
+    }
+
+    private String validToken() {
+        long now = Instant.now().getEpochSecond();
+        return codec.encode("jti-ok", "ana", 7L, "ADMIN", 3L, true, 1L, now, now + 600);
+    }
+
+    private static JwtUtils jwtUtils() {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 600_000);
+        ReflectionTestUtils.setField(jwtUtils, "jwtCacheMaxSize", 100L);
+        ReflectionTestUtils.setField(jwtUtils, "jwtRejectedCacheTtlMs", 60_000L);
+        ReflectionTestUtils.setField(jwtUtils, "securityLog", new SecurityLogAggregator(new SimpleMeterRegistry(), 60_000));
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    private static byte[] hmac(String signingInput) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET_BYTES, "HmacSHA256"));
+        return mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String base64(String json) {
+        return base64(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String base64(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,105 @@
+package com.muebleria.mctecommercebackend.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara la firma y verificación de tokens con jjwt (camino anterior de {@link JwtUtils})
+ * frente a {@link Hs256JwtCodec}. No forma parte de la suite de tests; se ejecuta con:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) \
+ *     com.muebleria.mctecommercebackend.security.jwt.JwtCodecBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtCodecBenchmark {
+
+	private static final String SECRET = "SuperSecretoParaFirmarTokensJWTDeMuebleriaComercialTabascoEsLargoYSeguroConAlMenos32Caracteres";
+
+	private SecretKey key;
+	private JwtParser parser;
+	private Hs256JwtCodec codec;
+
+	private String jjwtToken;
+	private String codecToken;
+
+	@Setup
+	public void setUp() {
+		byte[] secret = SECRET.getBytes(StandardCharsets.UTF_8);
+		key = Keys.hmacShaKeyFor(secret);
+		parser = Jwts.parser().verifyWith(key).build();
+		codec = new Hs256JwtCodec(secret);
+
+		jjwtToken = jjwtSign();
+		codecToken = codecSign();
+	}
+
+	@Benchmark
+	public String jjwtSign() {
+		long now = System.currentTimeMillis();
+		return Jwts.builder()
+				.id(UUID.randomUUID().toString())
+				.subject("vendedor.centro")
+				.claim(JwtUtils.CLAIM_USER_ID, 42L)
+				.claim(JwtUtils.CLAIM_ROLE, "VENDEDOR")
+				.claim(JwtUtils.CLAIM_MANAGED_BRANCH_ID, 3L)
+				.claim(JwtUtils.CLAIM_ACTIVE, true)
+				.claim(JwtUtils.CLAIM_SECURITY_VERSION, 7L)
+				.issuedAt(new Date(now))
+				.expiration(new Date(now + 600_000L))
+				.signWith(key, Jwts.SIG.HS256)
+				.compact();
+	}
+
+	@Benchmark
+	public String codecSign() {
+		long now = System.currentTimeMillis() / 1000L;
+		return codec.encode(UUID.randomUUID().toString(), "vendedor.centro", 42L, "VENDEDOR", 3L,
+				true, 7L, now, now + 600L);
+	}
+
+	@Benchmark
+	public Claims jjwtVerify() {
+		return parser.parseSignedClaims(jjwtToken).getPayload();
+	}
+
+	@Benchmark
+	public VerifiedJwt codecVerify() {
+		return codec.verify(codecToken);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(JwtCodecBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
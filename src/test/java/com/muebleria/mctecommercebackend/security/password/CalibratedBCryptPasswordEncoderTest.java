@@ -0,0 +1,44 @@
+package com.muebleria.mctecommercebackend.security.password;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cuándo se pide rehash de un hash guardado: solo si su coste es menor que el del nodo, para que
+ * nodos calibrados a costes distintos no se lo vayan cambiando en cada login.
+ */
+class CalibratedBCryptPasswordEncoderTest {
+
+    private final CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(6);
+
+    @Test
+    void lowerStoredCostIsUpgraded() {
+        assertThat(encoder.upgradeEncoding(BCrypt.hashpw("secreto", BCrypt.gensalt(4)))).isTrue();
+    }
+
+    @Test
+    void sameOrHigherStoredCostIsKept() {
+        String same = encoder.encode("secreto");
+        String higher = BCrypt.hashpw("secreto", BCrypt.gensalt(8));
+
+        assertThat(encoder.upgradeEncoding(same)).isFalse();
+        assertThat(encoder.upgradeEncoding(higher)).isFalse();
+        // Entre un nodo a 6 y otro a 8 no hay vaivén: el hash solo sube de coste, nunca baja.
+        assertThat(new CalibratedBCryptPasswordEncoder(8).upgradeEncoding(higher)).isFalse();
+        assertThat(new CalibratedBCryptPasswordEncoder(8).upgradeEncoding(same)).isTrue();
+        assertThat(encoder.matches("secreto", higher)).isTrue();
+    }
+
+    @Test
+    void malformedBcryptIsUpgradedAndOtherFormatsAreLeftAlone() {
+        String valid = encoder.encode("secreto");
+
+        assertThat(encoder.upgradeEncoding(valid.substring(0, valid.length() - 1))).isTrue();
+        assertThat(encoder.upgradeEncoding("$2a$6$" + valid.substring(7))).isTrue();
+        assertThat(encoder.upgradeEncoding("{noop}secreto")).isFalse();
+        assertThat(encoder.upgradeEncoding("")).isFalse();
+        assertThat(encoder.upgradeEncoding(null)).isFalse();
+    }
+}
@@ -0,0 +1,75 @@
+package com.muebleria.mctecommercebackend.security.revocation;
+
+import com.muebleria.mctecommercebackend.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Revocaciones hechas en otro nodo: deben verse aquí tras la siguiente reconstrucción del filtro,
+ * aunque el jti ya se hubiera consultado antes como falso positivo.
+ */
+class TokenRevocationRegistryTest {
+
+    @Test
+    void revocationOnAnotherNodeIsSeenAfterTheNextRebuild() {
+        RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+        List<String> revokedInDatabase = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            revokedInDatabase.add("revocado-" + i);
+        }
+        Set<String> queried = ConcurrentHashMap.newKeySet();
+        when(repository.findActiveJtis(any())).thenAnswer(invocation -> List.copyOf(revokedInDatabase));
+        when(repository.existsByJtiAndExpiresAtAfter(anyString(), any())).thenAnswer(invocation -> {
+            String jti = invocation.getArgument(0);
+            queried.add(jti);
+            return revokedInDatabase.contains(jti);
+        });
+        // Con un 1 % de falsos positivos, alguno de los jti consultados más abajo lo será. La caché de
+        // resultados tiene sitio de sobra, así que nada se descarta por tamaño.
+        TokenRevocationRegistry registry = new TokenRevocationRegistry(repository, 100, 30_000);
+        registry.init();
+
+        String falsePositive = null;
+        for (int i = 0; falsePositive == null && i < 10_000; i++) {
+            String jti = "jti-" + i;
+            if (!registry.isRevoked(jti) && queried.contains(jti)) {
+                falsePositive = jti;
+            }
+        }
+        assertThat(falsePositive).isNotNull();
+        assertThat(registry.isRevoked("revocado-1")).isTrue();
+
+        // Otro nodo revoca el token: hasta la reconstrucción vale el resultado cacheado.
+        revokedInDatabase.add(falsePositive);
+        assertThat(registry.isRevoked(falsePositive)).isFalse();
+
+        registry.refresh();
+
+        assertThat(registry.isRevoked(falsePositive)).isTrue();
+    }
+
+    @Test
+    void localRevocationIsImmediate() {
+        RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+        when(repository.findActiveJtis(any())).thenReturn(List.of());
+        TokenRevocationRegistry registry = new TokenRevocationRegistry(repository, 1_000, 30_000);
+        registry.init();
+
+        registry.revoke("jti-local", 7L, Instant.now().plusSeconds(600));
+
+        assertThat(registry.isRevoked("jti-local")).isTrue();
+        registry.refresh();
+        assertThat(registry.isRevoked("jti-local")).isTrue();
+    }
+}
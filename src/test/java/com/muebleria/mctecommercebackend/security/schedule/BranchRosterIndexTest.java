@@ -0,0 +1,107 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import com.muebleria.mctecommercebackend.model.Branch;
+import com.muebleria.mctecommercebackend.model.Role;
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserAccessRule;
+import com.muebleria.mctecommercebackend.model.UserProfile;
+import com.muebleria.mctecommercebackend.repository.UserRepository;
+import com.muebleria.mctecommercebackend.security.schedule.BranchRosterIndex.RosterMember;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static com.muebleria.mctecommercebackend.security.schedule.ScheduleCompilerTest.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Índice de personal por sucursal: consultas en varias zonas horarias y en la vuelta de la semana,
+ * y reindexado de un solo usuario.
+ */
+class BranchRosterIndexTest {
+
+    @Test
+    void rosterAnswersAcrossTheWeekWrapAndPerZone() {
+        User sundayNight = staff(1L, "domingo", Role.VENDEDOR, rule(DayOfWeek.SUNDAY, "22:00", "23:59", "UTC"));
+        User mondayMorning = staff(2L, "lunes", Role.VENDEDOR, rule(DayOfWeek.MONDAY, "00:00", "06:00", "UTC"));
+        // Lunes 00:00-01:00 en Tokio es el domingo de 15:00 a 16:00 UTC.
+        User tokyo = staff(3L, "tokio", Role.DRIVER, rule(DayOfWeek.MONDAY, "00:00", "01:00", "Asia/Tokyo"));
+        // Domingo 17:00-18:00 en Ciudad de México (UTC-6) es el domingo de 23:00 a 24:00 UTC.
+        User mexico = staff(4L, "mexico", Role.DRIVER, rule(DayOfWeek.SUNDAY, "17:00", "18:00", "America/Mexico_City"));
+        User bypass = staff(5L, "libre", Role.AGENT);
+        bypass.setBypassAccessRules(true);
+        BranchRosterIndex index = index(List.of(sundayNight, mondayMorning, tokyo, mexico, bypass));
+
+        assertThat(names(index, "2024-03-10T15:30:00Z")).containsExactly("libre", "tokio");
+        assertThat(names(index, "2024-03-10T23:59:30Z")).containsExactly("domingo", "libre", "mexico");
+        assertThat(names(index, "2024-03-11T00:00:00Z")).containsExactly("libre", "lunes");
+        assertThat(index.allowedAt(10L, List.of(Role.DRIVER), Instant.parse("2024-03-10T23:30:00Z")))
+                .extracting(RosterMember::username).containsExactly("mexico");
+        assertThat(index.allowedAt(99L, BranchRosterIndex.ROSTER_ROLES, Instant.parse("2024-03-10T23:30:00Z"))).isEmpty();
+    }
+
+    @Test
+    void rosterReindexesOnlyTheChangedUser() {
+        User seller = staff(1L, "vendedor", Role.VENDEDOR, rule(DayOfWeek.MONDAY, "09:00", "10:00", "UTC"));
+        User driver = staff(2L, "chofer", Role.DRIVER, rule(DayOfWeek.MONDAY, "09:00", "10:00", "UTC"));
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findRosterStaff(any())).thenReturn(List.of(seller, driver));
+        BranchRosterIndex index = new BranchRosterIndex(repository, new SimpleMeterRegistry());
+        index.init();
+        assertThat(names(index, "2024-03-04T09:30:00Z")).containsExactly("chofer", "vendedor");
+
+        // El vendedor pasa a la tarde y el chófer deja de estar en la lista (por ejemplo, se elimina).
+        User movedSeller = staff(1L, "vendedor", Role.VENDEDOR, rule(DayOfWeek.MONDAY, "15:00", "16:00", "UTC"));
+        when(repository.findStaffById(anyLong())).thenAnswer(invocation ->
+                invocation.<Long>getArgument(0) == 1L ? Optional.of(movedSeller) : Optional.empty());
+        index.onUserChanged(new UserChangedEvent(1L));
+        index.onUserChanged(new UserChangedEvent(2L));
+
+        assertThat(names(index, "2024-03-04T09:30:00Z")).isEmpty();
+        assertThat(names(index, "2024-03-04T15:30:00Z")).containsExactly("vendedor");
+    }
+
+    private static BranchRosterIndex index(List<User> staff) {
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findRosterStaff(any())).thenReturn(staff);
+        BranchRosterIndex index = new BranchRosterIndex(repository, new SimpleMeterRegistry());
+        index.init();
+        return index;
+    }
+
+    private static List<String> names(BranchRosterIndex index, String instant) {
+        return index.allowedAt(10L, BranchRosterIndex.ROSTER_ROLES, Instant.parse(instant)).stream()
+                .map(RosterMember::username)
+                .toList();
+    }
+
+    private static User staff(Long id, String username, Role role, UserAccessRule... rules) {
+        Branch branch = new Branch();
+        branch.setId(10L);
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setRole(role);
+        user.setManagedBranch(branch);
+        UserProfile profile = new UserProfile();
+        profile.setFirstName(username);
+        profile.setLastName("");
+        user.setProfile(profile);
+        long ruleId = id * 100;
+        for (UserAccessRule rule : rules) {
+            rule.setId(ruleId++);
+            rule.setUser(user);
+            user.getAccessRules().add(rule);
+        }
+        return user;
+    }
+}
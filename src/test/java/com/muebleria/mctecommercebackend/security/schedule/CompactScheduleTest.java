@@ -0,0 +1,149 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.model.User;
+import com.muebleria.mctecommercebackend.model.UserAccessRule;
+import com.muebleria.mctecommercebackend.repository.UserAccessRuleRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.muebleria.mctecommercebackend.security.schedule.ScheduleCompilerTest.epoch;
+import static com.muebleria.mctecommercebackend.security.schedule.ScheduleCompilerTest.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Formato compacto del horario que se guarda en la fila del usuario: ida y vuelta, disposición de
+ * los bits, máscaras del filtro de disponibilidad y el respaldo a las reglas con varias zonas.
+ */
+class CompactScheduleTest {
+
+    private final UserAccessRuleRepository ruleRepository = mock(UserAccessRuleRepository.class);
+    private final ScheduleCompiler compiler = new ScheduleCompiler(ruleRepository);
+
+    @Test
+    void bitmapUsesOneBitPerMinuteLowBitFirst() {
+        // Lunes 00:00-00:01 (minuto 0) y domingo 23:59 (último minuto de la semana).
+        CompactSchedule compact = compiler.encode(List.of(
+                rule(DayOfWeek.MONDAY, "00:00", "00:01", "UTC"),
+                rule(DayOfWeek.SUNDAY, "23:59", "23:59", "UTC")));
+
+        assertThat(compact.compact()).isTrue();
+        assertThat(compact.accessRulesAssigned()).isTrue();
+        assertThat(compact.timezone()).isEqualTo("UTC");
+        assertThat(compact.bitmap()).hasSize(CompactSchedule.BITMAP_BYTES);
+        assertThat(compact.bitmap()[0]).isEqualTo((byte) 0x01);
+        assertThat(compact.bitmap()[CompactSchedule.BITMAP_BYTES - 1]).isEqualTo((byte) 0x80);
+        for (int i = 1; i < CompactSchedule.BITMAP_BYTES - 1; i++) {
+            assertThat(compact.bitmap()[i]).as("byte %d", i).isZero();
+        }
+    }
+
+    @Test
+    void decodeRoundTripsEncode() {
+        Random random = new Random(11);
+        String[] zones = {"UTC", "America/Mexico_City", "Europe/Madrid", "Asia/Kathmandu"};
+        for (int round = 0; round < 30; round++) {
+            String zone = zones[round % zones.length];
+            List<UserAccessRule> rules = new ArrayList<>();
+            for (int r = 0; r < 1 + random.nextInt(5); r++) {
+                int start = random.nextInt(24 * 60);
+                int end = start + random.nextInt(24 * 60 - start);
+                rules.add(rule(DayOfWeek.of(1 + random.nextInt(7)),
+                        LocalTime.of(start / 60, start % 60).toString(),
+                        LocalTime.of(end / 60, end % 60).toString(), zone));
+            }
+            CompiledSchedule original = compiler.compile(rules);
+            CompactSchedule compact = compiler.encode(rules);
+            CompiledSchedule decoded = compiler.decode(compact.timezone(), compact.bitmap());
+
+            if (original.isEmpty()) {
+                assertThat(compact.bitmap()).isNull();
+                continue;
+            }
+            assertThat(decoded.zoneCount()).isEqualTo(1);
+            assertThat(decoded.zone(0).getZoneId()).isEqualTo(zone);
+            assertThat(decoded.bitmap(0)).isEqualTo(original.bitmap(0));
+            assertThat(compiler.encode(rules).bitmap()).isEqualTo(compact.bitmap());
+            long instant = epoch("2024-03-04T00:00:00Z") + random.nextInt(14 * 24 * 60) * 60L;
+            assertThat(decoded.isAllowedAt(instant)).isEqualTo(original.isAllowedAt(instant));
+        }
+    }
+
+    @Test
+    void noRulesOrOnlyInactiveRulesEncodeAsEmpty() {
+        UserAccessRule inactive = rule(DayOfWeek.MONDAY, "09:00", "18:00", "UTC");
+        inactive.setActive(false);
+
+        assertThat(compiler.encode(List.of())).isEqualTo(new CompactSchedule(null, null, false, true));
+        CompactSchedule onlyInactive = compiler.encode(List.of(inactive));
+        assertThat(onlyInactive.accessRulesAssigned()).isTrue();
+        assertThat(onlyInactive.compact()).isTrue();
+        assertThat(onlyInactive.bitmap()).isNull();
+        assertThat(compiler.decode(null, null)).isSameAs(CompiledSchedule.EMPTY);
+    }
+
+    @Test
+    void malformedColumnsDecodeAsEmpty() {
+        byte[] full = new byte[CompactSchedule.BITMAP_BYTES];
+        Arrays.fill(full, (byte) 0xFF);
+
+        assertThat(compiler.decode("UTC", new byte[CompactSchedule.BITMAP_BYTES - 1])).isSameAs(CompiledSchedule.EMPTY);
+        assertThat(compiler.decode("Mars/Olympus_Mons", full)).isSameAs(CompiledSchedule.EMPTY);
+        assertThat(compiler.decode(null, full)).isSameAs(CompiledSchedule.EMPTY);
+        assertThat(compiler.decode("UTC", full).isAllowedAt(epoch("2024-03-06T12:00:00Z"))).isTrue();
+    }
+
+    @Test
+    void severalZonesAreNotCompactAndCompileFromTheRules() {
+        List<UserAccessRule> rules = List.of(
+                rule(DayOfWeek.MONDAY, "09:00", "12:00", "UTC"),
+                rule(DayOfWeek.MONDAY, "09:00", "12:00", "Asia/Tokyo"));
+        CompactSchedule compact = compiler.encode(rules);
+        assertThat(compact).isEqualTo(new CompactSchedule(null, null, true, false));
+
+        User user = new User();
+        user.setId(5L);
+        user.setScheduleCompact(compact.compact());
+        when(ruleRepository.findByUserId(5L)).thenReturn(rules);
+
+        CompiledSchedule schedule = compiler.scheduleOf(user);
+
+        // 2024-03-04 fue lunes: 09:00 en Tokio son las 00:00 UTC.
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T00:30:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T10:00:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T06:00:00Z"))).isFalse();
+    }
+
+    @Test
+    void compactUsersNeverReadTheirRules() {
+        CompactSchedule compact = compiler.encode(List.of(rule(DayOfWeek.FRIDAY, "09:00", "18:00", "America/Mexico_City")));
+        User user = new User();
+        user.setId(6L);
+        user.setScheduleCompact(true);
+        user.setScheduleTimezone(compact.timezone());
+        user.setScheduleBitmap(compact.bitmap());
+
+        // Viernes 2024-03-08, 10:00 en Ciudad de México (UTC-6).
+        assertThat(compiler.scheduleOf(user).isAllowedAt(epoch("2024-03-08T16:00:00Z"))).isTrue();
+        verify(ruleRepository, never()).findByUserId(6L);
+    }
+
+    @Test
+    void maskMatchesTheBitmapOfTheSameSlot() {
+        byte[] mask = CompactSchedule.mask(DayOfWeek.WEDNESDAY, LocalTime.of(10, 0), LocalTime.of(23, 59));
+        CompactSchedule compact = compiler.encode(List.of(rule(DayOfWeek.WEDNESDAY, "10:00", "23:59", "UTC")));
+
+        assertThat(mask).isEqualTo(compact.bitmap());
+        // Una franja que termina con LocalTime.MAX cubre también el último minuto del día.
+        assertThat(CompactSchedule.mask(DayOfWeek.WEDNESDAY, LocalTime.of(10, 0), LocalTime.MAX)).isEqualTo(mask);
+    }
+}
@@ -0,0 +1,151 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.model.UserAccessRule;
+import com.muebleria.mctecommercebackend.repository.UserAccessRuleRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.muebleria.mctecommercebackend.security.schedule.ScheduleCompilerTest.epoch;
+import static com.muebleria.mctecommercebackend.security.schedule.ScheduleCompilerTest.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Búsqueda del siguiente cambio de acceso sobre el mapa de bits, comparada con la evaluación minuto
+ * a minuto que sustituye.
+ */
+class CompiledScheduleTest {
+
+    private static final long HORIZON = 8L * 24 * 60 * 60;
+
+    private final ScheduleCompiler compiler = new ScheduleCompiler(mock(UserAccessRuleRepository.class));
+
+    @Test
+    void findsOpeningAndClosingOfTheSameDay() {
+        CompiledSchedule schedule = compiler.compile(List.of(rule(DayOfWeek.MONDAY, "09:00", "18:00", "UTC")));
+
+        assertThat(schedule.nextTransitionAfter(epoch("2024-03-04T08:15:20Z"), HORIZON)).isEqualTo(epoch("2024-03-04T09:00:00Z"));
+        assertThat(schedule.nextTransitionAfter(epoch("2024-03-04T09:00:00Z"), HORIZON)).isEqualTo(epoch("2024-03-04T18:00:00Z"));
+        // Tras el cierre, la siguiente apertura es el lunes siguiente, dando la vuelta a la semana.
+        assertThat(schedule.nextTransitionAfter(epoch("2024-03-04T18:00:00Z"), HORIZON)).isEqualTo(epoch("2024-03-11T09:00:00Z"));
+        assertThat(schedule.nextTransitionAfter(epoch("2024-03-04T18:00:00Z"), 60 * 60)).isEqualTo(-1L);
+    }
+
+    @Test
+    void emptyOrAlwaysOpenScheduleHasNoTransition() {
+        List<UserAccessRule> everyDay = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            everyDay.add(rule(day, "00:00", "23:59", "America/New_York"));
+        }
+
+        assertThat(CompiledSchedule.EMPTY.nextTransitionAfter(epoch("2024-03-04T00:00:00Z"), HORIZON)).isEqualTo(-1L);
+        assertThat(compiler.compile(everyDay).nextTransitionAfter(epoch("2024-03-09T12:00:00Z"), HORIZON)).isEqualTo(-1L);
+    }
+
+    @Test
+    void clampsToTheDaylightSavingChange() {
+        // Domingo 2024-03-10: 01:00-04:00 en Nueva York; a las 07:00 UTC el reloj salta de 02:00 a 03:00.
+        CompiledSchedule schedule = compiler.compile(List.of(rule(DayOfWeek.SUNDAY, "01:00", "04:00", "America/New_York")));
+
+        assertThat(schedule.nextTransitionAfter(epoch("2024-03-10T06:30:00Z"), HORIZON)).isEqualTo(epoch("2024-03-10T08:00:00Z"));
+        // Una franja que el cambio de hora se salta entera no produce ningún cambio ese día.
+        CompiledSchedule skipped = compiler.compile(List.of(rule(DayOfWeek.SUNDAY, "02:10", "02:50", "America/New_York")));
+        assertThat(skipped.nextTransitionAfter(epoch("2024-03-10T06:00:00Z"), 24 * 60 * 60)).isEqualTo(-1L);
+    }
+
+    @Test
+    void ignoresChangesHiddenByAnotherZone() {
+        // 09:00-12:00 UTC; 05:00-07:00 en Ciudad de México (11:00-13:00 UTC), que se solapa con la anterior
+        // y tapa su cierre de las 12:00; y 09:00-10:00 en Ciudad de México (15:00-16:00 UTC).
+        CompiledSchedule schedule = compiler.compile(List.of(
+                rule(DayOfWeek.MONDAY, "09:00", "12:00", "UTC"),
+                rule(DayOfWeek.MONDAY, "09:00", "10:00", "America/Mexico_City"),
+                rule(DayOfWeek.MONDAY, "05:00", "07:00", "America/Mexico_City")));
+
+        assertThat(schedule.nextTransitionAfter(epoch("2024-03-04T09:30:00Z"), HORIZON)).isEqualTo(epoch("2024-03-04T13:00:00Z"));
+        assertThat(schedule.nextTransitionAfter(epoch("2024-03-04T13:00:00Z"), HORIZON)).isEqualTo(epoch("2024-03-04T15:00:00Z"));
+    }
+
+    @Test
+    void matchesMinuteByMinuteEvaluation() {
+        Random random = new Random(42);
+        String[] zones = {"UTC", "America/New_York", "Europe/Madrid", "Asia/Kathmandu", "Australia/Lord_Howe"};
+        // Alrededor de los cambios de hora de marzo y octubre/noviembre de 2024.
+        long[] starts = {epoch("2024-03-08T00:00:00Z"), epoch("2024-03-29T00:00:00Z"), epoch("2024-04-05T00:00:00Z"),
+                epoch("2024-10-25T00:00:00Z"), epoch("2024-11-01T00:00:00Z")};
+
+        for (int round = 0; round < 60; round++) {
+            List<UserAccessRule> rules = new ArrayList<>();
+            int ruleCount = 1 + random.nextInt(4);
+            for (int r = 0; r < ruleCount; r++) {
+                int startMinute = random.nextInt(24 * 60);
+                int endMinute = startMinute + random.nextInt(24 * 60 - startMinute);
+                rules.add(rule(DayOfWeek.of(1 + random.nextInt(7)),
+                        LocalTime.of(startMinute / 60, startMinute % 60).toString(),
+                        LocalTime.of(endMinute / 60, endMinute % 60).toString(),
+                        zones[random.nextInt(round % 3 == 0 ? 1 : zones.length)]));
+            }
+            CompiledSchedule schedule = compiler.compile(rules);
+            long from = starts[random.nextInt(starts.length)] + random.nextInt(7 * 24 * 60 * 60);
+            for (int step = 0; step < 6; step++) {
+                long expected = minuteByMinute(schedule, from, HORIZON);
+                assertThat(schedule.nextTransitionAfter(from, HORIZON)).as("reglas %s desde %d", describe(rules), from).isEqualTo(expected);
+                if (expected < 0) {
+                    break;
+                }
+                from = expected;
+            }
+        }
+    }
+
+    @Test
+    void findDifferentStopsAtTheRangeEnd() {
+        long[] bitmap = new long[CompiledSchedule.WORDS];
+        ScheduleCompiler.setRange(bitmap, 100, 200);
+
+        assertThat(CompiledSchedule.findDifferent(bitmap, 0, CompiledSchedule.MINUTES_PER_WEEK, false)).isEqualTo(100);
+        assertThat(CompiledSchedule.findDifferent(bitmap, 100, CompiledSchedule.MINUTES_PER_WEEK, true)).isEqualTo(200);
+        assertThat(CompiledSchedule.findDifferent(bitmap, 201, CompiledSchedule.MINUTES_PER_WEEK, false)).isEqualTo(-1);
+        assertThat(CompiledSchedule.findDifferent(bitmap, 0, 100, false)).isEqualTo(-1);
+        // Los bits que sobran en la última palabra no cuentan como minutos.
+        ScheduleCompiler.setRange(bitmap, 0, CompiledSchedule.MINUTES_PER_WEEK);
+        assertThat(CompiledSchedule.findDifferent(bitmap, 0, CompiledSchedule.MINUTES_PER_WEEK, true)).isEqualTo(-1);
+    }
+
+    @Test
+    void coversLocalSlotUsesEachRuleLocalTime() {
+        CompiledSchedule schedule = compiler.compile(List.of(
+                rule(DayOfWeek.MONDAY, "09:00", "12:00", "UTC"),
+                rule(DayOfWeek.MONDAY, "12:00", "14:00", "Asia/Tokyo")));
+
+        // Dos reglas contiguas en zonas distintas cubren juntas la franja, cada una en su hora local.
+        assertThat(schedule.coversLocalSlot(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(14, 0))).isTrue();
+        assertThat(schedule.coversLocalSlot(DayOfWeek.MONDAY, LocalTime.of(8, 59), LocalTime.of(10, 0))).isFalse();
+        assertThat(schedule.coversLocalSlot(DayOfWeek.MONDAY, LocalTime.of(13, 0), LocalTime.of(14, 1))).isFalse();
+        assertThat(schedule.coversLocalSlot(DayOfWeek.TUESDAY, LocalTime.of(9, 0), LocalTime.of(10, 0))).isFalse();
+        assertThat(CompiledSchedule.EMPTY.coversLocalSlot(DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 0))).isFalse();
+    }
+
+    /** El algoritmo anterior: evaluar el horario al empezar cada minuto. */
+    private static long minuteByMinute(CompiledSchedule schedule, long epochSecond, long horizonSeconds) {
+        boolean current = schedule.isAllowedAt(epochSecond);
+        for (long t = (Math.floorDiv(epochSecond, 60L) + 1) * 60L; t <= epochSecond + horizonSeconds; t += 60L) {
+            if (schedule.isAllowedAt(t) != current) {
+                return t;
+            }
+        }
+        return -1L;
+    }
+
+    private static String describe(List<UserAccessRule> rules) {
+        return rules.stream()
+                .map(r -> r.getDayOfWeek() + " " + r.getStartTime() + "-" + r.getEndTime() + " " + r.getAccessTimezone())
+                .toList()
+                .toString();
+    }
+}
@@ -0,0 +1,208 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.event.AccessWindowClosedEvent;
+import com.muebleria.mctecommercebackend.event.UserChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.muebleria.mctecommercebackend.security.schedule.ScheduleCompilerTest.rule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Rueda de tiempo avanzada a mano con un reloj simulado, y el planificador de ventanas de acceso
+ * cuando la rueda va por detrás del reloj.
+ */
+class HashedTimingWheelTest {
+
+    private static final long TICK_MILLIS = 100;
+
+    private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+    private final HashedTimingWheel wheel = new HashedTimingWheel("test-wheel", TICK_MILLIS, 8, nanos::get, false);
+
+    @Test
+    void rejectsSizesThatAreNotPowersOfTwo() {
+        assertThatThrownBy(() -> new HashedTimingWheel("test", TICK_MILLIS, 6, nanos::get, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void firesOnTheDeadlineTickRoundedUp() {
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(() -> fired.add("0,5 s"), 500);
+        wheel.schedule(() -> fired.add("0,25 s"), 250);
+
+        advance(2);
+        assertThat(fired).isEmpty();
+        advance(1);
+        assertThat(fired).containsExactly("0,25 s");
+        advance(1);
+        assertThat(fired).containsExactly("0,25 s");
+        advance(1);
+        assertThat(fired).containsExactly("0,25 s", "0,5 s");
+    }
+
+    @Test
+    void delaysLongerThanOneTurnWaitTheirRounds() {
+        // 8 cubetas de 100 ms: 2,5 s son tres vueltas y una cubeta más.
+        List<Long> firedAt = new ArrayList<>();
+        AtomicLong ticks = new AtomicLong();
+        wheel.schedule(() -> firedAt.add(ticks.get()), 2_500);
+        wheel.schedule(() -> firedAt.add(ticks.get()), 800);
+
+        for (int i = 1; i <= 40; i++) {
+            ticks.set(i);
+            wheel.advance();
+        }
+
+        assertThat(firedAt).containsExactly(8L, 25L);
+    }
+
+    @Test
+    void deadlineAlreadyBehindTheWheelFiresOnTheNextTick() {
+        // La rueda va 10 ticks (1 s) por delante del reloj con el que se calculó el vencimiento.
+        advance(10);
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(fired::countDown, 100);
+
+        advance(1);
+
+        assertThat(fired.getCount()).isZero();
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFire() {
+        List<String> fired = new ArrayList<>();
+        HashedTimingWheel.Timeout beforeTransfer = wheel.schedule(() -> fired.add("antes"), 300);
+        HashedTimingWheel.Timeout afterTransfer = wheel.schedule(() -> fired.add("después"), 300);
+        wheel.schedule(() -> fired.add("vigente"), 300);
+
+        beforeTransfer.cancel();
+        advance(1);
+        afterTransfer.cancel();
+        advance(20);
+
+        assertThat(fired).containsExactly("vigente");
+    }
+
+    @Test
+    void aFailingTaskDoesNotStopTheOthers() {
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(() -> {
+            throw new IllegalStateException("fallo de prueba");
+        }, 100);
+        wheel.schedule(() -> fired.add("siguiente"), 100);
+
+        advance(1);
+
+        assertThat(fired).containsExactly("siguiente");
+    }
+
+    @Test
+    void workerThreadAdvancesOnItsOwn() throws InterruptedException {
+        try (HashedTimingWheel real = new HashedTimingWheel("test-real-wheel", 10, 64)) {
+            CountDownLatch fired = new CountDownLatch(1);
+            real.schedule(fired::countDown, 30);
+
+            assertThat(fired.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    void schedulerAnswersFromTheScheduleWhileTheWheelLags() {
+        // Lunes 2024-03-04, ventana 09:00-10:00 UTC.
+        MutableClock clock = new MutableClock(Instant.parse("2024-03-04T09:59:00Z"));
+        ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+        HashedTimingWheel schedulerWheel = new HashedTimingWheel("test-window-wheel", 250, 512, nanos::get, false);
+        AccessWindowScheduler scheduler = new AccessWindowScheduler(publisher, new SimpleMeterRegistry(), 86_400_000L, clock, schedulerWheel);
+        CompiledSchedule schedule = new ScheduleCompiler(null).compile(List.of(rule(DayOfWeek.MONDAY, "09:00", "10:00", "UTC")));
+
+        assertThat(scheduler.isAllowed(7L, "luis", schedule)).isTrue();
+
+        // La ventana se cierra a las 10:00, pero la rueda todavía no ha llegado a ese tick.
+        clock.set(Instant.parse("2024-03-04T10:00:30Z"));
+        assertThat(scheduler.isAllowed(7L, "luis", schedule)).isFalse();
+        verify(publisher, never()).publishEvent(any(Object.class));
+
+        // Al llegar la rueda al cierre (60 s = 240 ticks de 250 ms) se actualiza el estado y se avisa.
+        for (int i = 0; i < 240; i++) {
+            schedulerWheel.advance();
+        }
+        ArgumentCaptor<Object> event = ArgumentCaptor.forClass(Object.class);
+        verify(publisher).publishEvent(event.capture());
+        assertThat(event.getValue()).isInstanceOfSatisfying(AccessWindowClosedEvent.class, closed -> {
+            assertThat(closed.getUserId()).isEqualTo(7L);
+            assertThat(closed.getUsername()).isEqualTo("luis");
+        });
+        assertThat(scheduler.isAllowed(7L, "luis", schedule)).isFalse();
+    }
+
+    @Test
+    void changedUserCancelsItsPendingTransition() {
+        MutableClock clock = new MutableClock(Instant.parse("2024-03-04T09:59:00Z"));
+        ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+        HashedTimingWheel schedulerWheel = new HashedTimingWheel("test-window-wheel", 250, 512, nanos::get, false);
+        AccessWindowScheduler scheduler = new AccessWindowScheduler(publisher, new SimpleMeterRegistry(), 86_400_000L, clock, schedulerWheel);
+        CompiledSchedule schedule = new ScheduleCompiler(null).compile(List.of(rule(DayOfWeek.MONDAY, "09:00", "10:00", "UTC")));
+        scheduler.isAllowed(7L, "luis", schedule);
+
+        scheduler.onUserChanged(new UserChangedEvent(7L));
+        clock.set(Instant.parse("2024-03-04T10:00:30Z"));
+        for (int i = 0; i < 300; i++) {
+            schedulerWheel.advance();
+        }
+
+        verify(publisher, never()).publishEvent(any(Object.class));
+    }
+
+    private void advance(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            wheel.advance();
+        }
+    }
+
+    /** Reloj que solo avanza cuando la prueba lo indica. */
+    private static final class MutableClock extends Clock {
+        private volatile Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void set(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Árbol de intervalos por minuto de la semana frente a una comprobación por fuerza bruta.
+ */
+class MinuteIntervalTreeTest {
+
+    private static final int WEEK = CompiledSchedule.MINUTES_PER_WEEK;
+
+    @Test
+    void stabMatchesBruteForceIncludingTheWeekEdges() {
+        Random random = new Random(7);
+        MinuteIntervalTree tree = new MinuteIntervalTree();
+        List<int[]> intervals = new ArrayList<>();
+        intervals.add(new int[]{0, 1});
+        intervals.add(new int[]{WEEK - 1, WEEK});
+        intervals.add(new int[]{0, WEEK});
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(WEEK);
+            intervals.add(new int[]{from, from + 1 + random.nextInt(WEEK - from)});
+        }
+        for (int id = 0; id < intervals.size(); id++) {
+            tree.insert(intervals.get(id)[0], intervals.get(id)[1], id);
+        }
+        // Quita uno de cada tres para comprobar que el borrado deja el resto intacto.
+        for (int id = 0; id < intervals.size(); id += 3) {
+            tree.remove(intervals.get(id)[0], intervals.get(id)[1], id);
+        }
+
+        for (int minute : new int[]{0, 1, 63, 64, 5000, WEEK - 2, WEEK - 1}) {
+            assertThat(stab(tree, minute)).as("minuto %d", minute).isEqualTo(bruteForce(intervals, minute));
+        }
+        for (int i = 0; i < 500; i++) {
+            int minute = random.nextInt(WEEK);
+            assertThat(stab(tree, minute)).as("minuto %d", minute).isEqualTo(bruteForce(intervals, minute));
+        }
+        assertThat(tree.size()).isEqualTo(intervals.size() - (intervals.size() + 2) / 3);
+    }
+
+    @Test
+    void emptyIntervalsAreIgnoredAndRemovalEmptiesTheTree() {
+        MinuteIntervalTree tree = new MinuteIntervalTree();
+        tree.insert(100, 100, 1L);
+        tree.insert(200, 150, 2L);
+        assertThat(tree.isEmpty()).isTrue();
+
+        tree.insert(100, 200, 3L);
+        assertThat(stab(tree, 99)).isEmpty();
+        assertThat(stab(tree, 100)).containsExactly(3L);
+        assertThat(stab(tree, 199)).containsExactly(3L);
+        assertThat(stab(tree, 200)).isEmpty();
+
+        tree.remove(100, 200, 3L);
+        assertThat(tree.isEmpty()).isTrue();
+        assertThat(stab(tree, 150)).isEmpty();
+    }
+
+    private static Set<Long> stab(MinuteIntervalTree tree, int minute) {
+        Set<Long> ids = new HashSet<>();
+        tree.stab(minute, ids::add);
+        return ids;
+    }
+
+    private static Set<Long> bruteForce(List<int[]> intervals, int minute) {
+        Set<Long> ids = new HashSet<>();
+        for (int id = 0; id < intervals.size(); id++) {
+            if (id % 3 != 0 && intervals.get(id)[0] <= minute && minute < intervals.get(id)[1]) {
+                ids.add((long) id);
+            }
+        }
+        return ids;
+    }
+}
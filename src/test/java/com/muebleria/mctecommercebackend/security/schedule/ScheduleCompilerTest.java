@@ -0,0 +1,154 @@
+package com.muebleria.mctecommercebackend.security.schedule;
+
+import com.muebleria.mctecommercebackend.model.UserAccessRule;
+import com.muebleria.mctecommercebackend.repository.UserAccessRuleRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Reglas de acceso compiladas a mapa de bits frente a la comprobación por horas que sustituyen:
+ * límites de cada franja, redondeo de segundos, cambios de horario y vuelta de la semana.
+ */
+class ScheduleCompilerTest {
+
+    private final ScheduleCompiler compiler = new ScheduleCompiler(mock(UserAccessRuleRepository.class));
+
+    @Test
+    void endIsExclusive() {
+        CompiledSchedule schedule = compiler.compile(List.of(rule(DayOfWeek.MONDAY, "09:00", "18:00", "UTC")));
+
+        // 2024-03-04 fue lunes.
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T08:59:59Z"))).isFalse();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T09:00:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T17:59:59Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T18:00:00Z"))).isFalse();
+    }
+
+    @Test
+    void endAt2359CoversTheWholeLastMinute() {
+        CompiledSchedule schedule = compiler.compile(List.of(rule(DayOfWeek.MONDAY, "20:00", "23:59", "UTC")));
+
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T23:59:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T23:59:59Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-05T00:00:00Z"))).isFalse();
+    }
+
+    @Test
+    void startWithSecondsRoundsUpToTheNextMinute() {
+        CompiledSchedule schedule = compiler.compile(List.of(rule(DayOfWeek.MONDAY, "09:00:30", "10:00", "UTC")));
+
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T09:00:45Z"))).isFalse();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T09:01:00Z"))).isTrue();
+        assertThat(CompiledSchedule.startMinute(DayOfWeek.MONDAY, LocalTime.of(9, 0, 0, 1))).isEqualTo(9 * 60 + 1);
+        assertThat(CompiledSchedule.startMinute(DayOfWeek.TUESDAY, LocalTime.of(9, 0))).isEqualTo(1440 + 9 * 60);
+    }
+
+    @Test
+    void followsTheLocalClockAcrossDaylightSavingChanges() {
+        // Nueva York adelanta la hora el domingo 2024-03-10 a las 02:00 (07:00 UTC).
+        CompiledSchedule schedule = compiler.compile(List.of(
+                rule(DayOfWeek.MONDAY, "09:00", "10:00", "America/New_York"),
+                rule(DayOfWeek.SUNDAY, "01:00", "04:00", "America/New_York")));
+
+        // Lunes antes del cambio: 09:30 EST son las 14:30 UTC.
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T14:30:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T13:30:00Z"))).isFalse();
+        // El domingo del cambio la franja dura dos horas reales: de 06:00 a 08:00 UTC.
+        assertThat(schedule.isAllowedAt(epoch("2024-03-10T05:59:59Z"))).isFalse();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-10T06:59:59Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-10T07:00:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-10T08:00:00Z"))).isFalse();
+        // Lunes después del cambio: 09:30 EDT son las 13:30 UTC.
+        assertThat(schedule.isAllowedAt(epoch("2024-03-11T13:30:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-11T14:30:00Z"))).isFalse();
+        // Consultar hacia atrás recalcula el desfase cacheado de la zona.
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T14:30:00Z"))).isTrue();
+    }
+
+    @Test
+    void ruleEndingBeforeItStartsGrantsNothing() {
+        // Igual que la comparación de horas original: una franja 22:00-02:00 no cruza la medianoche.
+        CompiledSchedule schedule = compiler.compile(List.of(rule(DayOfWeek.MONDAY, "22:00", "02:00", "UTC")));
+
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T23:00:00Z"))).isFalse();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-05T01:00:00Z"))).isFalse();
+    }
+
+    @Test
+    void sundayNightAndMondayMorningMeetAtTheWeekWrap() {
+        CompiledSchedule schedule = compiler.compile(List.of(
+                rule(DayOfWeek.SUNDAY, "20:00", "23:59", "UTC"),
+                rule(DayOfWeek.MONDAY, "00:00", "08:00", "UTC")));
+
+        assertThat(CompiledSchedule.minuteOfWeek(epoch("2024-03-10T23:59:00Z"), 0)).isEqualTo(CompiledSchedule.MINUTES_PER_WEEK - 1);
+        assertThat(CompiledSchedule.minuteOfWeek(epoch("2024-03-11T00:00:00Z"), 0)).isZero();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-10T23:59:30Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-11T00:00:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-11T08:00:00Z"))).isFalse();
+    }
+
+    @Test
+    void localMondayCanStillBeSundayInUtc() {
+        // Lunes 00:00-01:00 en Tokio (UTC+9) es el domingo de 15:00 a 16:00 UTC.
+        CompiledSchedule schedule = compiler.compile(List.of(rule(DayOfWeek.MONDAY, "00:00", "01:00", "Asia/Tokyo")));
+
+        assertThat(schedule.isAllowedAt(epoch("2024-03-10T15:30:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-11T00:30:00Z"))).isFalse();
+    }
+
+    @Test
+    void eachZoneKeepsItsOwnBitmap() {
+        CompiledSchedule schedule = compiler.compile(List.of(
+                rule(DayOfWeek.MONDAY, "09:00", "10:00", "UTC"),
+                rule(DayOfWeek.MONDAY, "09:00", "10:00", "America/Mexico_City")));
+
+        assertThat(schedule.zoneCount()).isEqualTo(2);
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T09:30:00Z"))).isTrue();
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T12:00:00Z"))).isFalse();
+        // 09:30 en Ciudad de México (UTC-6).
+        assertThat(schedule.isAllowedAt(epoch("2024-03-04T15:30:00Z"))).isTrue();
+    }
+
+    @Test
+    void invalidZonesAndInactiveRulesAreIgnored() {
+        UserAccessRule inactive = rule(DayOfWeek.MONDAY, "09:00", "10:00", "UTC");
+        inactive.setActive(false);
+
+        assertThat(compiler.compile(List.of(inactive))).isSameAs(CompiledSchedule.EMPTY);
+        assertThat(compiler.compile(List.of(rule(DayOfWeek.MONDAY, "09:00", "10:00", "Marte/Olympus")))).isSameAs(CompiledSchedule.EMPTY);
+
+        CompiledSchedule mixed = compiler.compile(List.of(
+                rule(DayOfWeek.MONDAY, "09:00", "10:00", "Marte/Olympus"),
+                rule(DayOfWeek.MONDAY, "11:00", "12:00", "UTC")));
+        assertThat(mixed.zoneCount()).isEqualTo(1);
+        assertThat(mixed.isAllowedAt(epoch("2024-03-04T11:30:00Z"))).isTrue();
+    }
+
+    @Test
+    void sameRulesShareOneInstanceWhateverTheirOrder() {
+        UserAccessRule monday = rule(DayOfWeek.MONDAY, "09:00", "10:00", "UTC");
+        UserAccessRule friday = rule(DayOfWeek.FRIDAY, "09:00", "10:00", "UTC");
+
+        assertThat(compiler.compile(List.of(monday, friday))).isSameAs(compiler.compile(List.of(friday, monday)));
+    }
+
+    static UserAccessRule rule(DayOfWeek day, String start, String end, String timezone) {
+        UserAccessRule rule = new UserAccessRule();
+        rule.setDayOfWeek(day);
+        rule.setStartTime(LocalTime.parse(start));
+        rule.setEndTime(LocalTime.parse(end));
+        rule.setAccessTimezone(timezone);
+        return rule;
+    }
+
+    static long epoch(String instant) {
+        return Instant.parse(instant).getEpochSecond();
+    }
+}
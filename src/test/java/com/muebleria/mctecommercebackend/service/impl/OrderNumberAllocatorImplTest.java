@@ -0,0 +1,294 @@
+package com.muebleria.mctecommercebackend.service.impl;
+
+import com.muebleria.mctecommercebackend.model.Branch;
+import com.muebleria.mctecommercebackend.repository.BranchRepository;
+import com.muebleria.mctecommercebackend.repository.OrderSequenceState;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Prueba de contención del asignador de números de pedido sin base de datos. {@link FakeBranchTable}
+ * imita lo que importa de MySQL: el UPDATE bloquea la fila hasta el commit y el rollback lo deshace.
+ */
+class OrderNumberAllocatorImplTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    void concurrentAllocationsNeverRepeatANumber() throws Exception {
+        FakeBranchTable table = new FakeBranchTable(Map.of(1L, "VHSA", 2L, "CARD", 3L, "MID"));
+        OrderNumberAllocatorImpl allocator = table.allocator(25, Set.of());
+        int perThread = 5_000;
+
+        List<String> numbers = runConcurrently(THREADS, perThread, i -> allocator.nextOrderNumber(1L + i % 3));
+
+        assertThat(numbers).hasSize(THREADS * perThread);
+        assertThat(new HashSet<>(numbers)).hasSize(numbers.size());
+        for (Long branchId : table.prefixes.keySet()) {
+            String prefix = table.prefixes.get(branchId);
+            long highWaterMark = table.committed(branchId);
+            List<Long> issued = numbers.stream()
+                    .filter(n -> n.startsWith(prefix))
+                    .map(n -> Long.parseLong(n.substring(prefix.length())))
+                    .toList();
+            // Nada por encima de la marca de agua, y como mucho un bloque sin usar por hilo.
+            assertThat(issued).allMatch(n -> n >= 1 && n <= highWaterMark);
+            assertThat(highWaterMark - issued.size()).isLessThanOrEqualTo((long) THREADS * 25);
+        }
+    }
+
+    @Test
+    void restartContinuesAboveTheHighWaterMark() {
+        FakeBranchTable table = new FakeBranchTable(Map.of(1L, "VHSA"));
+
+        OrderNumberAllocatorImpl beforeRestart = table.allocator(50, Set.of());
+        assertThat(beforeRestart.nextOrderNumber(1L)).isEqualTo("VHSA000001");
+        assertThat(beforeRestart.nextOrderNumber(1L)).isEqualTo("VHSA000002");
+
+        OrderNumberAllocatorImpl afterRestart = table.allocator(50, Set.of());
+        assertThat(afterRestart.nextOrderNumber(1L)).isEqualTo("VHSA000051");
+    }
+
+    @Test
+    void evictsOnlyTheAdvancedBranchOncePerBlock() {
+        FakeBranchTable table = new FakeBranchTable(Map.of(1L, "VHSA", 2L, "CARD"));
+        OrderNumberAllocatorImpl allocator = table.allocator(50, Set.of());
+
+        for (int i = 0; i < 120; i++) {
+            allocator.nextOrderNumber(1L);
+        }
+
+        // 120 números en bloques de 50: tres reservas, cada una desaloja solo su sucursal.
+        verify(table.cache, times(3)).evict(Branch.class, 1L);
+        verify(table.cache, never()).evict(Branch.class, 2L);
+        verify(table.cache, never()).evict(Branch.class);
+        verify(table.cache, never()).evictAll();
+    }
+
+    @Test
+    void gaplessBranchIssuesAContiguousSequenceUnderContention() throws Exception {
+        FakeBranchTable table = new FakeBranchTable(Map.of(7L, "FISC"));
+        OrderNumberAllocatorImpl allocator = table.allocator(50, Set.of(7L));
+        int perThread = 500;
+
+        List<String> numbers = runConcurrently(THREADS, perThread, i -> {
+            table.begin();
+            try {
+                return allocator.nextOrderNumber(7L);
+            } finally {
+                table.commit();
+            }
+        });
+
+        List<Long> issued = new ArrayList<>(numbers.stream().map(n -> Long.parseLong(n.substring(4))).toList());
+        Collections.sort(issued);
+        for (int i = 0; i < issued.size(); i++) {
+            assertThat(issued.get(i)).isEqualTo(i + 1L);
+        }
+        assertThat(table.committed(7L)).isEqualTo(issued.size());
+    }
+
+    @Test
+    void gaplessNumberIsReleasedWhenTheOrderRollsBack() {
+        FakeBranchTable table = new FakeBranchTable(Map.of(7L, "FISC"));
+        OrderNumberAllocatorImpl allocator = table.allocator(50, Set.of(7L));
+
+        table.begin();
+        assertThat(allocator.nextOrderNumber(7L)).isEqualTo("FISC000001");
+        table.rollback();
+
+        table.begin();
+        assertThat(allocator.nextOrderNumber(7L)).isEqualTo("FISC000001");
+        table.commit();
+    }
+
+    @Test
+    void gaplessModeRequiresTheCallersTransaction() {
+        FakeBranchTable table = new FakeBranchTable(Map.of(7L, "FISC"));
+        OrderNumberAllocatorImpl allocator = table.allocator(50, Set.of(7L));
+
+        assertThatThrownBy(() -> allocator.nextOrderNumber(7L))
+                .isInstanceOf(IllegalTransactionStateException.class);
+    }
+
+    private interface Call {
+        String run(int iteration) throws Exception;
+    }
+
+    private static List<String> runConcurrently(int threads, int perThread, Call call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                List<String> local = new ArrayList<>(perThread);
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    local.add(call.run(i));
+                }
+                return local;
+            }));
+        }
+        start.countDown();
+        List<String> all = new ArrayList<>(threads * perThread);
+        for (Future<List<String>> future : futures) {
+            all.addAll(future.get(60, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        return all;
+    }
+
+    /**
+     * Tabla de sucursales en memoria que hace a la vez de gestor de transacciones.
+     */
+    private static final class FakeBranchTable implements PlatformTransactionManager {
+
+        private static final class Tx {
+            final Map<Long, Integer> undo = new HashMap<>();
+        }
+
+        final Map<Long, String> prefixes;
+        final Cache cache = mock(Cache.class);
+        private final Map<Long, Long> values = new ConcurrentHashMap<>();
+        private final Map<Long, ReentrantLock> rowLocks = new ConcurrentHashMap<>();
+        private final ThreadLocal<Deque<Tx>> transactions = ThreadLocal.withInitial(ArrayDeque::new);
+
+        FakeBranchTable(Map<Long, String> prefixes) {
+            this.prefixes = prefixes;
+            prefixes.keySet().forEach(id -> {
+                values.put(id, 0L);
+                rowLocks.put(id, new ReentrantLock());
+            });
+        }
+
+        OrderNumberAllocatorImpl allocator(int blockSize, Set<Long> gaplessBranches) {
+            BranchRepository repository = mock(BranchRepository.class);
+            when(repository.advanceOrderSequence(anyLong(), anyInt()))
+                    .thenAnswer(inv -> advance(inv.getArgument(0), inv.getArgument(1)));
+            when(repository.findOrderSequenceState(anyLong()))
+                    .thenAnswer(inv -> read(inv.getArgument(0)));
+            EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+            when(entityManagerFactory.getCache()).thenReturn(cache);
+            return new OrderNumberAllocatorImpl(repository, entityManagerFactory, this, blockSize, 6, gaplessBranches);
+        }
+
+        long committed(Long branchId) {
+            return values.get(branchId);
+        }
+
+        void begin() {
+            getTransaction(new DefaultTransactionDefinition());
+        }
+
+        void commit() {
+            commit(new SimpleTransactionStatus(true));
+        }
+
+        void rollback() {
+            rollback(new SimpleTransactionStatus(true));
+        }
+
+        private int advance(Long branchId, int count) {
+            Tx tx = transactions.get().peek();
+            if (tx == null || !prefixes.containsKey(branchId)) {
+                return 0;
+            }
+            ReentrantLock lock = rowLocks.get(branchId);
+            if (!lock.isHeldByCurrentThread()) {
+                lock.lock();
+            }
+            values.merge(branchId, (long) count, Long::sum);
+            tx.undo.merge(branchId, count, Integer::sum);
+            return 1;
+        }
+
+        private Optional<OrderSequenceState> read(Long branchId) {
+            return Optional.ofNullable(prefixes.get(branchId))
+                    .map(prefix -> new OrderSequenceState(prefix, values.get(branchId).intValue()));
+        }
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            Deque<Tx> stack = transactions.get();
+            switch (definition.getPropagationBehavior()) {
+                case TransactionDefinition.PROPAGATION_MANDATORY -> {
+                    if (stack.isEmpty()) {
+                        throw new IllegalTransactionStateException("No existing transaction");
+                    }
+                    return new SimpleTransactionStatus(false);
+                }
+                case TransactionDefinition.PROPAGATION_REQUIRES_NEW -> {
+                    stack.push(new Tx());
+                    return new SimpleTransactionStatus(true);
+                }
+                default -> {
+                    if (!stack.isEmpty()) {
+                        return new SimpleTransactionStatus(false);
+                    }
+                    stack.push(new Tx());
+                    return new SimpleTransactionStatus(true);
+                }
+            }
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            if (status.isNewTransaction()) {
+                release(transactions.get().pop());
+            }
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+            if (status.isNewTransaction()) {
+                Tx tx = transactions.get().pop();
+                tx.undo.forEach((branchId, count) -> values.merge(branchId, (long) -count, Long::sum));
+                release(tx);
+            }
+        }
+
+        private void release(Tx tx) {
+            for (Long branchId : tx.undo.keySet()) {
+                ReentrantLock lock = rowLocks.get(branchId);
+                while (lock.isHeldByCurrentThread()) {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}